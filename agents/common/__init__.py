@@ -0,0 +1 @@
+"""Code shared by the server and desktop agents. Each agent's main.py puts agents/ on sys.path to import it."""
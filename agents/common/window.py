@@ -0,0 +1,69 @@
+"""
+Windowed sampling, shared by both agents.
+
+A poll every few seconds of an instantaneous value misses everything in between, so a background
+thread samples every SAMPLE_INTERVAL_SECONDS into ring buffers and /stats reports min/avg/max/p95
+over the window since the caller's previous poll: ?window_ms= (the backend sends it), otherwise
+since the last /stats request. The buffers hold WINDOW_MAX_SECONDS, which caps the window.
+"""
+import math
+import os
+import threading
+import time
+from collections import deque
+
+from flask import request
+
+SAMPLE_INTERVAL_SECONDS = float(os.environ.get("SAMPLE_INTERVAL_SECONDS", "0.25"))
+WINDOW_MAX_SECONDS = float(os.environ.get("WINDOW_MAX_SECONDS", "300"))
+
+
+class Ring:
+    """(monotonic time, value) samples; the oldest fall off once WINDOW_MAX_SECONDS is full."""
+
+    def __init__(self, interval):
+        self._samples = deque(maxlen=int(WINDOW_MAX_SECONDS / interval) + 1)
+        self._lock = threading.Lock()
+
+    def add(self, value):
+        if value is None:
+            return
+        with self._lock:
+            self._samples.append((time.monotonic(), value))
+
+    def since(self, start):
+        """Values sampled at or after start; the latest one alone if none were (polls closer than a sample)."""
+        with self._lock:
+            values = [v for t, v in self._samples if t >= start]
+            if not values and self._samples:
+                values = [self._samples[-1][1]]
+        return values
+
+
+def summary(values):
+    if not values:
+        return None
+    ordered = sorted(values)
+    p95 = ordered[max(0, math.ceil(0.95 * len(ordered)) - 1)]
+    return {
+        "min": round(ordered[0], 1),
+        "avg": round(sum(ordered) / len(ordered), 1),
+        "max": round(ordered[-1], 1),
+        "p95": round(p95, 1),
+        "samples": len(ordered),
+    }
+
+
+_last_stats_at = time.monotonic()
+_last_stats_lock = threading.Lock()
+
+
+def window_start():
+    """Start of this request's window (monotonic seconds)."""
+    global _last_stats_at
+    now = time.monotonic()
+    with _last_stats_lock:
+        previous, _last_stats_at = _last_stats_at, now
+    window_ms = request.args.get("window_ms", type=int)
+    start = now - window_ms / 1000 if window_ms and window_ms > 0 else previous
+    return max(start, now - WINDOW_MAX_SECONDS)
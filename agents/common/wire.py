@@ -0,0 +1,64 @@
+"""
+Wire format of /stats, shared by both agents.
+
+The backend asks for CBOR (Accept: application/cbor) and sends the version of the last payload it
+has in X-Stats-Since. If we still remember that version, only the difference is sent:
+{"set": {changed or added keys, nested dicts recursively}, "unset": [[path, to, removed key], ...]}
+with X-Stats-Delta-Base naming the base. Plain clients (curl, browsers) keep getting full JSON.
+"""
+import hashlib
+import json
+import threading
+from collections import OrderedDict
+
+from flask import Response, jsonify, request
+
+try:
+    import cbor2
+except ImportError:
+    cbor2 = None
+
+VERSIONS_KEEP = 8
+_versions = OrderedDict()
+_versions_lock = threading.Lock()
+
+
+def diff(old, new):
+    """Keys of new that are added or changed vs old (recursing into dicts), and paths removed from old."""
+    changed, removed = {}, []
+    for k, v in new.items():
+        if k not in old:
+            changed[k] = v
+        elif isinstance(v, dict) and isinstance(old[k], dict):
+            c, r = diff(old[k], v)
+            if c:
+                changed[k] = c
+            removed.extend([k] + p for p in r)
+        elif old[k] != v:
+            changed[k] = v
+    removed.extend([k] for k in old if k not in new)
+    return changed, removed
+
+
+def respond(payload):
+    """Full or delta response for payload, in CBOR when asked for and cbor2 is installed, else JSON."""
+    version = hashlib.sha1(json.dumps(payload, sort_keys=True, default=str).encode()).hexdigest()[:16]
+    since = request.headers.get("X-Stats-Since")
+    with _versions_lock:
+        base = _versions.get(since) if since else None
+        _versions[version] = payload
+        _versions.move_to_end(version)
+        while len(_versions) > VERSIONS_KEEP:
+            _versions.popitem(last=False)
+    headers = {"X-Stats-Version": version}
+    body = payload
+    if base is not None:
+        changed, removed = diff(base, payload)
+        body = {"set": changed, "unset": removed}
+        headers["X-Stats-Delta-Base"] = since
+    # JSON wins a tie (*/*, or both at the same q), so browsers and curl get JSON; the backend ranks CBOR higher
+    if cbor2 and request.accept_mimetypes.best_match(["application/json", "application/cbor"]) == "application/cbor":
+        return Response(cbor2.dumps(body), mimetype="application/cbor", headers=headers)
+    resp = jsonify(body)
+    resp.headers.update(headers)
+    return resp
@@ -2,8 +2,12 @@
 Desktop agent – runs on Bazzite desktop.
 Exposes real system stats (and optionally GPU) over HTTP for the backend to poll.
 """
+import os
 import subprocess
+import sys
+import threading
 import time
+
 from flask import Flask, jsonify
 
 try:
@@ -11,9 +15,59 @@ try:
 except ImportError:
     psutil = None
 
+# agents/common is shared with the other agent
+sys.path.insert(0, os.path.dirname(os.path.dirname(os.path.abspath(__file__))))
+from common.window import SAMPLE_INTERVAL_SECONDS, Ring, summary, window_start  # noqa: E402
+from common.wire import respond  # noqa: E402
+
 app = Flask(__name__)
 
 
+# --- Samplers (window and summaries in agents/common/window.py) --------------------------------
+_cpu_ring = Ring(SAMPLE_INTERVAL_SECONDS)
+
+
+def _cpu_sample_loop():
+    # cpu_percent(interval=None) is utilisation since the previous call, i.e. over one sample interval
+    psutil.cpu_percent(interval=None)
+    while True:
+        time.sleep(SAMPLE_INTERVAL_SECONDS)
+        try:
+            _cpu_ring.add(psutil.cpu_percent(interval=None))
+        except Exception:
+            pass
+
+
+GPU_SAMPLE_INTERVAL_SECONDS = float(os.environ.get("GPU_SAMPLE_INTERVAL_SECONDS", "1"))
+_gpu_ring = Ring(min(SAMPLE_INTERVAL_SECONDS, GPU_SAMPLE_INTERVAL_SECONDS))
+
+
+def _gpu_sample_loop():
+    """NVIDIA: one nvidia-smi in loop mode streams a value per sample interval. Otherwise poll
+    _get_gpu_util every GPU_SAMPLE_INTERVAL_SECONDS (one process each), and only once a minute while
+    no GPU tool answers."""
+    try:
+        proc = subprocess.Popen(
+            ["nvidia-smi", "-i", "0", "--query-gpu=utilization.gpu", "--format=csv,noheader,nounits",
+             "--loop-ms=%d" % max(100, int(SAMPLE_INTERVAL_SECONDS * 1000))],
+            stdout=subprocess.PIPE,
+            stderr=subprocess.DEVNULL,
+            text=True,
+        )
+        for line in proc.stdout:
+            try:
+                _gpu_ring.add(int(line.strip()))
+            except ValueError:
+                pass
+        proc.wait()
+    except (FileNotFoundError, OSError):
+        pass
+    while True:
+        util = _get_gpu_util()
+        _gpu_ring.add(util)
+        time.sleep(GPU_SAMPLE_INTERVAL_SECONDS if util is not None else 60)
+
+
 def _get_gpu_util():
     """Try nvidia-smi, then rocm-smi (AMD), for GPU utilisation; return None if not available."""
     # NVIDIA
@@ -74,6 +128,7 @@ def _get_current_activity():
 
 @app.route("/stats")
 def stats():
+    """cpu_percent and gpu_util_percent are averages over the window, whose min/avg/max/p95 are under "window"."""
     if not psutil:
         return jsonify({
             "hostname": "bazzite-desktop",
@@ -85,10 +140,9 @@ def stats():
             "error": "psutil not installed",
         }), 200
 
-    try:
-        cpu = psutil.cpu_percent(interval=0.1)
-    except Exception:
-        cpu = None
+    start = window_start()
+    cpu = summary(_cpu_ring.since(start))
+    gpu = summary(_gpu_ring.since(start))
     try:
         mem = psutil.virtual_memory()
         memory_percent = round(mem.percent, 1)
@@ -97,12 +151,13 @@ def stats():
 
     hostname = psutil.os.uname().nodename if hasattr(psutil.os, "uname") else "bazzite-desktop"
 
-    return jsonify({
+    return respond({
         "hostname": hostname,
-        "cpu_percent": round(cpu, 1) if cpu is not None else None,
+        "cpu_percent": cpu["avg"] if cpu else None,
         "memory_percent": memory_percent,
-        "gpu_util_percent": _get_gpu_util(),
+        "gpu_util_percent": round(gpu["avg"]) if gpu else None,
         "current_activity": _get_current_activity(),
+        "window": {"cpu_percent": cpu, "gpu_util_percent": gpu},
         "timestamp": int(time.time() * 1000),
     })
 
@@ -112,5 +167,9 @@ def health():
     return jsonify({"status": "ok"})
 
 
+if psutil:
+    threading.Thread(target=_cpu_sample_loop, name="cpu-sampler", daemon=True).start()
+threading.Thread(target=_gpu_sample_loop, name="gpu-sampler", daemon=True).start()
+
 if __name__ == "__main__":
     app.run(host="0.0.0.0", port=5001, debug=False)
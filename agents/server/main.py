@@ -2,19 +2,43 @@
 Server agent – runs on Ubuntu server.
 Exposes real system stats and security monitoring over HTTP for the backend to poll.
 """
+import os
 import re
 import subprocess
+import sys
+import threading
 import time
-from flask import Flask, jsonify
+
+from flask import Flask, jsonify, request
 
 try:
     import psutil
 except ImportError:
     psutil = None
 
+# agents/common is shared with the other agent
+sys.path.insert(0, os.path.dirname(os.path.dirname(os.path.abspath(__file__))))
+from common.window import SAMPLE_INTERVAL_SECONDS, Ring, summary, window_start  # noqa: E402
+from common.wire import respond  # noqa: E402
+
 app = Flask(__name__)
 
 
+# --- Samplers (window and summaries in agents/common/window.py) --------------------------------
+_cpu_ring = Ring(SAMPLE_INTERVAL_SECONDS)
+
+
+def _cpu_sample_loop():
+    # cpu_percent(interval=None) is utilisation since the previous call, i.e. over one sample interval
+    psutil.cpu_percent(interval=None)
+    while True:
+        time.sleep(SAMPLE_INTERVAL_SECONDS)
+        try:
+            _cpu_ring.add(psutil.cpu_percent(interval=None))
+        except Exception:
+            pass
+
+
 def _security_failed_ssh_24h():
     """Count failed SSH login attempts in the last 24 hours (journalctl or auth.log)."""
     try:
@@ -151,7 +175,6 @@ def _security_unattended_upgrades():
             capture_output=True, text=True, timeout=2,
         )
         if r2.returncode == 0 and r2.stdout.strip():
-            import os
             path = r2.stdout.strip()
             try:
                 mtime = os.path.getmtime(path)
@@ -199,38 +222,8 @@ def _get_uptime_seconds():
         return None
 
 
-@app.route("/stats")
-def stats():
-    if not psutil:
-        return jsonify({
-            "hostname": "ubuntu-server",
-            "uptime_seconds": 0,
-            "cpu_percent": 0,
-            "memory_percent": 0,
-            "disk_used_percent": 0,
-            "timestamp": int(time.time() * 1000),
-            "error": "psutil not installed",
-        }), 200
-
-    try:
-        cpu = psutil.cpu_percent(interval=0.1)
-    except Exception:
-        cpu = None
-    try:
-        mem = psutil.virtual_memory()
-        memory_percent = round(mem.percent, 1)
-    except Exception:
-        memory_percent = None
-
-    payload = {
-        "hostname": psutil.os.uname().nodename if hasattr(psutil.os, "uname") else "ubuntu-server",
-        "uptime_seconds": _get_uptime_seconds(),
-        "cpu_percent": round(cpu, 1) if cpu is not None else None,
-        "memory_percent": memory_percent,
-        "disk_used_percent": _get_disk_usage(),
-        "timestamp": int(time.time() * 1000),
-    }
-    # Security monitoring (best-effort; may be None if no access)
+def _collect_security():
+    """Security/posture block (best-effort; fields are omitted when a source is not readable). Slow: runs several CLIs."""
     failed_ssh = _security_failed_ssh_24h()
     listening = _security_listening_ports()
     ufw = _security_ufw_status()
@@ -254,9 +247,84 @@ def stats():
         security["unattended_upgrades"] = unattended
     if apparmor is not None:
         security["apparmor"] = apparmor
-    if security:
-        payload["security"] = security
-    return jsonify(payload)
+    return security
+
+
+# --- Slow tier ---------------------------------------------------------------------------------
+# The security probes take seconds (apt-get -s alone can take several), so they run on a background
+# thread every SECURITY_INTERVAL_SECONDS and requests only read the cached result.
+SECURITY_INTERVAL_SECONDS = int(os.environ.get("SECURITY_INTERVAL_SECONDS", "300"))
+_security_cache = {"security": None, "collected_at": None}
+_security_lock = threading.Lock()
+
+
+def _security_loop():
+    while True:
+        started = time.time()
+        try:
+            security = _collect_security()
+        except Exception:
+            security = None
+        if security is not None:
+            with _security_lock:
+                _security_cache["security"] = security
+                _security_cache["collected_at"] = int(time.time() * 1000)
+        time.sleep(max(1.0, SECURITY_INTERVAL_SECONDS - (time.time() - started)))
+
+
+def _cached_security():
+    with _security_lock:
+        return _security_cache["security"], _security_cache["collected_at"]
+
+
+def _fast_stats():
+    cpu = summary(_cpu_ring.since(window_start()))
+    try:
+        mem = psutil.virtual_memory()
+        memory_percent = round(mem.percent, 1)
+    except Exception:
+        memory_percent = None
+
+    return {
+        "hostname": psutil.os.uname().nodename if hasattr(psutil.os, "uname") else "ubuntu-server",
+        "uptime_seconds": _get_uptime_seconds(),
+        "cpu_percent": cpu["avg"] if cpu else None,
+        "memory_percent": memory_percent,
+        "disk_used_percent": _get_disk_usage(),
+        "window": {"cpu_percent": cpu},
+        "timestamp": int(time.time() * 1000),
+    }
+
+
+@app.route("/stats")
+def stats():
+    """Fast metrics plus the cached security block; ?tier=fast leaves the security block out.
+    cpu_percent is the average over the window, whose min/avg/max/p95 are under "window"."""
+    if not psutil:
+        return jsonify({
+            "hostname": "ubuntu-server",
+            "uptime_seconds": 0,
+            "cpu_percent": 0,
+            "memory_percent": 0,
+            "disk_used_percent": 0,
+            "timestamp": int(time.time() * 1000),
+            "error": "psutil not installed",
+        }), 200
+
+    payload = _fast_stats()
+    if request.args.get("tier") != "fast":
+        security, collected_at = _cached_security()
+        if security:
+            payload["security"] = security
+            payload["security_timestamp"] = collected_at
+    return respond(payload)
+
+
+@app.route("/stats/security")
+def stats_security():
+    """Cached security block and when it was collected (null until the first collection finishes)."""
+    security, collected_at = _cached_security()
+    return respond({"security": security or {}, "timestamp": collected_at})
 
 
 @app.route("/health")
@@ -264,5 +332,9 @@ def health():
     return jsonify({"status": "ok"})
 
 
+if psutil:
+    threading.Thread(target=_cpu_sample_loop, name="cpu-sampler", daemon=True).start()
+threading.Thread(target=_security_loop, name="security-tier", daemon=True).start()
+
 if __name__ == "__main__":
     app.run(host="0.0.0.0", port=5000, debug=False)
@@ -0,0 +1,132 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Build step (bound to {@code process-classes}): splits the inline {@code <style>} and {@code <script>} of the
+ * built {@code static/index.html} into content-hashed {@code static/assets/app.<hash>.css|js}, rewrites the page
+ * to reference them, and writes precompressed {@code .gz} (always) and {@code .br} (when the {@code brotli} CLI
+ * is installed) variants next to every file. The source {@code index.html} stays a single editable file.
+ * <p>
+ * Usage: {@code java AssetBundler.java <static-dir>}. Re-running on an already bundled page only refreshes the variants.
+ * <p>
+ * Runs from source with the JDK's single-file launcher, so it is neither compiled into the application nor on its
+ * classpath; it may only use the JDK.
+ */
+public final class AssetBundler {
+
+    private static final Pattern INLINE_STYLE = Pattern.compile("<style>(.*?)</style>", Pattern.DOTALL);
+    private static final Pattern INLINE_SCRIPT = Pattern.compile("<script>(.*?)</script>", Pattern.DOTALL);
+    private static final int BROTLI_TIMEOUT_SEC = 30;
+
+    private AssetBundler() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("usage: AssetBundler <static-dir>");
+            System.exit(2);
+        }
+        Path staticDir = Path.of(args[0]);
+        Path index = staticDir.resolve("index.html");
+        if (!Files.exists(index)) {
+            System.out.println("AssetBundler: no " + index + ", nothing to do");
+            return;
+        }
+        Path assets = staticDir.resolve("assets");
+        Files.createDirectories(assets);
+        boolean brotli = brotliAvailable();
+
+        String html = Files.readString(index, StandardCharsets.UTF_8);
+        Matcher style = INLINE_STYLE.matcher(html);
+        Matcher script = INLINE_SCRIPT.matcher(html);
+        if (style.find() && script.find()) {
+            deleteOldAssets(assets);
+            String cssName = writeHashed(assets, "app", "css", style.group(1));
+            String jsName = writeHashed(assets, "app", "js", script.group(1));
+            html = html.substring(0, style.start())
+                    + "<link rel=\"stylesheet\" href=\"/assets/" + cssName + "\">"
+                    + html.substring(style.end(), script.start())
+                    + "<script src=\"/assets/" + jsName + "\"></script>"
+                    + html.substring(script.end());
+            Files.writeString(index, html, StandardCharsets.UTF_8);
+            System.out.println("AssetBundler: index.html -> assets/" + cssName + ", assets/" + jsName);
+        }
+
+        compress(index, brotli);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(assets, "app.*.{css,js}")) {
+            for (Path f : files) compress(f, brotli);
+        }
+        if (!brotli) System.out.println("AssetBundler: brotli CLI not found, only .gz variants written");
+    }
+
+    private static String writeHashed(Path dir, String base, String ext, String content) throws IOException {
+        byte[] bytes = content.strip().getBytes(StandardCharsets.UTF_8);
+        String name = base + "." + sha256Prefix(bytes) + "." + ext;
+        Files.write(dir.resolve(name), bytes);
+        return name;
+    }
+
+    private static void deleteOldAssets(Path assets) throws IOException {
+        try (DirectoryStream<Path> old = Files.newDirectoryStream(assets, "app.*")) {
+            for (Path p : old) Files.delete(p);
+        }
+    }
+
+    private static void compress(Path file, boolean brotli) throws IOException {
+        Path gz = file.resolveSibling(file.getFileName() + ".gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(gz)) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            Files.copy(file, out);
+        }
+        Path br = file.resolveSibling(file.getFileName() + ".br");
+        if (brotli) {
+            run("brotli", "-f", "-q", "11", "-o", br.toString(), file.toString());
+        } else {
+            Files.deleteIfExists(br);
+        }
+    }
+
+    private static boolean brotliAvailable() {
+        return run("brotli", "--version");
+    }
+
+    private static boolean run(String... command) {
+        try {
+            Process p = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+            if (!p.waitFor(BROTLI_TIMEOUT_SEC, TimeUnit.SECONDS)) {
+                p.destroyForcibly();
+                return false;
+            }
+            return p.exitValue() == 0;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static String sha256Prefix(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            return HexFormat.of().formatHex(digest, 0, 5);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.homelab.loadtest;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.homelab.store.DeviceTable;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Allocation-rate benchmark for building device snapshots: a UniFi client list is parsed and turned into the
+ * dashboard's device list over and over, once the way every poll used to do it (a fresh map per device) and once
+ * through {@link DeviceTable} (unchanged devices reuse last poll's map). A fraction of the clients change between
+ * polls. Reports bytes allocated per poll on the polling thread, for the build step alone and including the JSON
+ * parse that both share, and how many distinct device maps a run of polls leaves behind.
+ * <p>
+ * Run from {@code backend/}:
+ * <pre>
+ * mvn -Ploadtest test-compile exec:java -Dloadtest.main=com.homelab.loadtest.AllocationBenchmark -Dexec.args="clients=2000 changed=0.05"
+ * </pre>
+ */
+public final class AllocationBenchmark {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new LinkedHashMap<>();
+        for (String arg : args) {
+            for (String part : arg.trim().split("\\s+")) {
+                int eq = part.indexOf('=');
+                if (eq > 0) opts.put(part.substring(0, eq), part.substring(eq + 1));
+            }
+        }
+        int clients = Integer.parseInt(opts.getOrDefault("clients", "2000"));
+        double changed = Double.parseDouble(opts.getOrDefault("changed", "0.05"));
+        int polls = Integer.parseInt(opts.getOrDefault("polls", "2000"));
+
+        byte[][] payloads = variants(clients, changed);
+        System.out.printf("%d clients, %.0f%% changing between polls, %d polls per run%n%n", clients, changed * 100, polls);
+        System.out.printf("%-14s %16s %16s %14s%n", "", "build B/poll", "parse+build B/poll", "maps retained");
+
+        DeviceTable table = new DeviceTable();
+        for (int round = 0; round < 3; round++) {
+            boolean report = round == 2; // first two rounds are JIT warm-up
+            run("per-poll maps", payloads, polls, report, AllocationBenchmark::buildFresh);
+            run("DeviceTable", payloads, polls, report, raw -> buildShared(table, raw));
+        }
+    }
+
+    private interface Builder {
+        List<Map<String, Object>> build(List<Map<String, Object>> raw);
+    }
+
+    private static void run(String name, byte[][] payloads, int polls, boolean report, Builder builder) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().getId();
+        long buildBytes = 0;
+        long totalBytes = 0;
+        // Device maps referenced by the last 20 snapshots, counted by identity: what a history of snapshots pins
+        List<List<Map<String, Object>>> kept = new ArrayList<>();
+        for (int i = 0; i < polls; i++) {
+            long t0 = threads.getThreadAllocatedBytes(tid);
+            List<Map<String, Object>> raw = clientsOf(MAPPER.readValue(payloads[i % payloads.length], MAP_TYPE));
+            long t1 = threads.getThreadAllocatedBytes(tid);
+            List<Map<String, Object>> devices = builder.build(raw);
+            long t2 = threads.getThreadAllocatedBytes(tid);
+            buildBytes += t2 - t1;
+            totalBytes += t2 - t0;
+            kept.add(devices);
+            if (kept.size() > 20) kept.remove(0);
+        }
+        if (!report) return;
+        Map<Object, Boolean> distinct = new IdentityHashMap<>();
+        for (List<Map<String, Object>> snapshot : kept) {
+            for (Map<String, Object> d : snapshot) distinct.put(d, Boolean.TRUE);
+        }
+        System.out.printf("%-14s %16d %16d %14d%n", name, buildBytes / polls, totalBytes / polls, distinct.size());
+    }
+
+    /** What UnifiService did before: a new map for every client on every poll. */
+    private static List<Map<String, Object>> buildFresh(List<Map<String, Object>> raw) {
+        List<Map<String, Object>> out = new ArrayList<>(raw.size());
+        for (Map<String, Object> r : raw) {
+            String mac = String.valueOf(r.get("mac"));
+            out.add(Map.of("name", String.valueOf(r.get("hostname")), "ip", String.valueOf(r.get("ip")), "mac", mac,
+                    "status", status(r), "site", "default", "controller", "default"));
+        }
+        return out;
+    }
+
+    private static List<Map<String, Object>> buildShared(DeviceTable table, List<Map<String, Object>> raw) {
+        DeviceTable.Builder b = table.builder();
+        for (Map<String, Object> r : raw) {
+            String mac = String.valueOf(r.get("mac"));
+            b.begin(mac).put("name", String.valueOf(r.get("hostname"))).put("ip", String.valueOf(r.get("ip"))).put("mac", mac)
+                    .put("status", status(r)).put("site", "default").put("controller", "default").end();
+        }
+        return b.build();
+    }
+
+    private static String status(Map<String, Object> r) {
+        return r.get("last_seen") instanceof Number n && System.currentTimeMillis() / 1000 - n.longValue() < 300 ? "online" : "offline";
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> clientsOf(Map<String, Object> body) {
+        return (List<Map<String, Object>>) body.get("data");
+    }
+
+    /** Two payloads that differ in the IP of {@code changed} of the clients, so alternating polls see that many changes. */
+    private static byte[][] variants(int clients, double changed) throws Exception {
+        byte[] a = StubUpstream.unifiClients(clients);
+        Map<String, Object> body = MAPPER.readValue(a, MAP_TYPE);
+        List<Map<String, Object>> list = clientsOf(body);
+        int every = changed > 0 ? Math.max(1, (int) Math.round(1 / changed)) : Integer.MAX_VALUE;
+        for (int i = 0; changed > 0 && i < list.size(); i += every) {
+            list.get(i).put("ip", "192.168.250." + (i % 250));
+        }
+        return new byte[][]{a, MAPPER.writeValueAsBytes(body)};
+    }
+}
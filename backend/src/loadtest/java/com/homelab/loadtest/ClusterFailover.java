@@ -0,0 +1,188 @@
+package com.homelab.loadtest;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.homelab.HomeLabApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cluster check on localhost: boots {@code nodes} backends with clustering enabled against the stub upstreams,
+ * waits for one leader, verifies that followers serve replicated snapshots while only the leader's polling
+ * reaches the upstreams, then stops the leader and measures how long until another node leads and followers
+ * receive fresh snapshots again. Exits non-zero if any step does not happen.
+ * <p>
+ * Run from {@code backend/}:
+ * <pre>
+ * mvn -Ploadtest test-compile exec:java -Dloadtest.main=com.homelab.loadtest.ClusterFailover -Dexec.args="nodes=3 failoverMs=1500"
+ * </pre>
+ */
+public final class ClusterFailover {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final HttpClient CLIENT = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new LinkedHashMap<>();
+        for (String arg : args) {
+            for (String part : arg.trim().split("\\s+")) {
+                int eq = part.indexOf('=');
+                if (eq > 0) opts.put(part.substring(0, eq), part.substring(eq + 1));
+            }
+        }
+        int nodes = Integer.parseInt(opts.getOrDefault("nodes", "3"));
+        long heartbeatMs = Long.parseLong(opts.getOrDefault("heartbeatMs", "250"));
+        long failoverMs = Long.parseLong(opts.getOrDefault("failoverMs", "1500"));
+
+        try (StubUpstream unifi = StubUpstream.unifi(200, 0, 0, Map.of()).start();
+             StubUpstream server = StubUpstream.agent("cluster-server", 0, 0).start();
+             StubUpstream desktop = StubUpstream.agent("cluster-desktop", 0, 0).start()) {
+            int[] clusterPorts = new int[nodes];
+            for (int i = 0; i < nodes; i++) clusterPorts[i] = freePort();
+
+            List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+            List<String> bases = new ArrayList<>();
+            for (int i = 0; i < nodes; i++) {
+                List<String> peers = new ArrayList<>();
+                for (int j = 0; j < nodes; j++) if (j != i) peers.add("127.0.0.1:" + clusterPorts[j]);
+                Path dataDir = Files.createTempDirectory("homelab-cluster");
+                String[] backendArgs = {
+                        "--server.port=0",
+                        "--logging.level.com.homelab=" + opts.getOrDefault("log", "WARN"),
+                        "--logging.level.com.homelab.cluster=INFO",
+                        "--homelab.data-dir=" + dataDir,
+                        "--homelab.persistence.enabled=false",
+                        "--homelab.server-agent-url=" + server.baseUrl(),
+                        "--homelab.desktop-agent-url=" + desktop.baseUrl(),
+                        "--homelab.unifi.enabled=true",
+                        "--homelab.unifi.base-url=" + unifi.baseUrl(),
+                        "--homelab.unifi.username=cluster",
+                        "--homelab.unifi.password=cluster",
+                        "--homelab.govee.enabled=false",
+                        "--homelab.cluster.enabled=true",
+                        "--homelab.cluster.node-id=node-" + i,
+                        "--homelab.cluster.bind-host=127.0.0.1",
+                        "--homelab.cluster.port=" + clusterPorts[i],
+                        "--homelab.cluster.peers=" + String.join(",", peers),
+                        "--homelab.cluster.secret=cluster-test",
+                        "--homelab.cluster.heartbeat-ms=" + heartbeatMs,
+                        "--homelab.cluster.failover-ms=" + failoverMs,
+                        "--homelab.cluster.poll-interval-seconds=1"
+                };
+                ConfigurableApplicationContext ctx = new SpringApplicationBuilder(HomeLabApplication.class).run(backendArgs);
+                contexts.add(ctx);
+                bases.add("http://127.0.0.1:" + ctx.getEnvironment().getProperty("local.server.port"));
+            }
+            boolean ok = true;
+            try {
+                long t0 = System.currentTimeMillis();
+                int leader = awaitSingleLeader(bases, -1, 10_000);
+                if (leader < 0) {
+                    System.out.println("FAIL: no single leader elected");
+                    System.exit(1);
+                }
+                System.out.printf("Leader node-%d elected after %d ms%n", leader, System.currentTimeMillis() - t0);
+
+                Thread.sleep(3000);
+                long before = unifi.counters().get("requests");
+                Thread.sleep(5000);
+                long polled = unifi.counters().get("requests") - before;
+                for (int i = 0; i < nodes; i++) {
+                    if (i == leader) continue;
+                    Map<String, Object> devices = get(bases.get(i) + "/api/devices");
+                    boolean replica = Boolean.TRUE.equals(devices.get("replica"));
+                    System.out.printf("  node-%d /api/devices: replica=%s, %s devices%n", i, replica, devices.get("total"));
+                    ok &= replica;
+                }
+                System.out.printf("  UniFi requests in 5 s with %d nodes and a 1 s poll interval: %d (one poller would make ~5)%n", nodes, polled);
+                ok &= polled > 0 && polled <= 7;
+
+                long[] savedBefore = new long[nodes];
+                for (int i = 0; i < nodes; i++) savedBefore[i] = savedAt(bases.get(i));
+                System.out.printf("Stopping leader node-%d%n", leader);
+                long t1 = System.currentTimeMillis();
+                contexts.get(leader).close();
+                int next = awaitSingleLeader(bases, leader, 10_000);
+                long elected = System.currentTimeMillis() - t1;
+                if (next < 0) {
+                    System.out.println("FAIL: no new leader");
+                    System.exit(1);
+                }
+                // A node that is neither the old nor the new leader must start receiving the new leader's snapshots
+                int follower = -1;
+                for (int i = 0; i < nodes; i++) if (i != leader && i != next) follower = i;
+                long fresh = follower < 0 ? 0 : -1;
+                while (fresh < 0 && System.currentTimeMillis() - t1 < 15_000) {
+                    if (savedAt(bases.get(follower)) > savedBefore[follower]) fresh = System.currentTimeMillis() - t1;
+                    Thread.sleep(50);
+                }
+                System.out.printf("  node-%d took over after %d ms; followers had fresh snapshots after %d ms%n", next, elected, fresh);
+                ok &= fresh >= 0;
+            } finally {
+                for (ConfigurableApplicationContext ctx : contexts) {
+                    if (ctx.isActive()) ctx.close();
+                }
+            }
+            System.out.println(ok ? "OK" : "FAIL");
+            if (!ok) System.exit(1);
+        }
+    }
+
+    /** Index of the node every live node agrees is leader, or -1 on timeout. {@code skip} is a stopped node. */
+    private static int awaitSingleLeader(List<String> bases, int skip, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (System.currentTimeMillis() < deadline) {
+            int leader = -1;
+            int leaders = 0;
+            String agreed = null;
+            boolean agree = true;
+            for (int i = 0; i < bases.size(); i++) {
+                if (i == skip) continue;
+                Map<String, Object> status = get(bases.get(i) + "/api/cluster");
+                if ("leader".equals(status.get("role"))) {
+                    leader = i;
+                    leaders++;
+                }
+                Object id = status.get("leader");
+                if (id == null || agreed != null && !agreed.equals(id)) agree = false;
+                agreed = (String) id;
+            }
+            if (leaders == 1 && agree) return leader;
+            Thread.sleep(50);
+        }
+        return -1;
+    }
+
+    private static long savedAt(String base) {
+        return get(base + "/api/devices").get("savedAt") instanceof Number n ? n.longValue() : 0;
+    }
+
+    private static Map<String, Object> get(String url) {
+        try {
+            HttpResponse<byte[]> r = CLIENT.send(HttpRequest.newBuilder(URI.create(url)).timeout(Duration.ofSeconds(5)).GET().build(),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            return MAPPER.readValue(r.body(), new TypeReference<>() {});
+        } catch (Exception e) {
+            return Map.of();
+        }
+    }
+
+    private static int freePort() throws Exception {
+        try (ServerSocket s = new ServerSocket(0)) {
+            return s.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.homelab.loadtest;
+
+import com.homelab.HomeLabApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Load-test harness: starts stub upstreams (UniFi, Govee cloud, both agents), boots the backend against them
+ * on a random port, then drives the {@code /api/*} endpoints from N concurrent clients and reports throughput
+ * and p50/p95/p99 per endpoint.
+ * <p>
+ * Run from {@code backend/}:
+ * <pre>
+ * mvn -Ploadtest test-compile exec:java -Dexec.args="concurrency=32 duration=30 unifi.clients=2000 unifi.latency=300"
+ * </pre>
+ * Options (key=value): {@code concurrency}, {@code duration} and {@code warmup} (seconds), {@code endpoints}
+ * (comma-separated paths), {@code unifi.clients}, {@code unifi.sites} (comma-separated), {@code unifi.siteLatency}
+ * ({@code site:ms,...} extra delay per site), {@code govee.devices}, and per upstream
+ * ({@code unifi}, {@code govee}, {@code server}, {@code desktop}) {@code .latency} (ms) and {@code .failure} (0..1).
+ * {@code agents.cbor} / {@code agents.delta} ({@code true|false}) toggle the agent wire negotiation.
+ * {@code maxP95Ms} makes the run exit non-zero when any endpoint's p95 exceeds it, for use as a regression gate.
+ * Speed test and Tailscale shell out to local CLIs and are not part of the default endpoint set.
+ */
+public final class LoadTest {
+
+    private static final List<String> DEFAULT_ENDPOINTS = List.of(
+            "/api/server-stats", "/api/desktop-stats", "/api/devices", "/api/govee-devices");
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = parseArgs(args);
+        int concurrency = intOpt(opts, "concurrency", 16);
+        int durationSec = intOpt(opts, "duration", 30);
+        int warmupSec = intOpt(opts, "warmup", 5);
+        List<String> endpoints = opts.containsKey("endpoints")
+                ? Arrays.asList(opts.get("endpoints").split(","))
+                : DEFAULT_ENDPOINTS;
+
+        try (StubUpstream unifi = StubUpstream.unifi(intOpt(opts, "unifi.clients", 200), longOpt(opts, "unifi.latency"), doubleOpt(opts, "unifi.failure"),
+                     siteLatency(opts.getOrDefault("unifi.siteLatency", ""))).start();
+             StubUpstream govee = StubUpstream.govee(intOpt(opts, "govee.devices", 20), longOpt(opts, "govee.latency"), doubleOpt(opts, "govee.failure")).start();
+             StubUpstream server = StubUpstream.agent("loadtest-server", longOpt(opts, "server.latency"), doubleOpt(opts, "server.failure")).start();
+             StubUpstream desktop = StubUpstream.agent("loadtest-desktop", longOpt(opts, "desktop.latency"), doubleOpt(opts, "desktop.failure")).start()) {
+
+            Path dataDir = Files.createTempDirectory("homelab-loadtest");
+            // Command-line arguments so they override application.yml / application-local.yml
+            String[] backendArgs = {
+                    "--server.port=0",
+                    "--logging.level.com.homelab=" + opts.getOrDefault("log", "ERROR"),
+                    "--homelab.data-dir=" + dataDir,
+                    "--homelab.persistence.enabled=false",
+                    "--homelab.server-agent-url=" + server.baseUrl(),
+                    "--homelab.desktop-agent-url=" + desktop.baseUrl(),
+                    "--homelab.unifi.enabled=true",
+                    "--homelab.unifi.base-url=" + unifi.baseUrl(),
+                    "--homelab.unifi.username=loadtest",
+                    "--homelab.unifi.password=loadtest",
+                    "--homelab.unifi.use-unifi-os=false",
+                    "--homelab.unifi.sites=" + opts.getOrDefault("unifi.sites", "default"),
+                    "--homelab.govee.enabled=true",
+                    "--homelab.govee.api-key=loadtest",
+                    "--homelab.govee.lan-discovery-enabled=false",
+                    "--homelab.govee.open-api-base-url=" + govee.baseUrl(),
+                    "--homelab.govee.legacy-base-url=" + govee.baseUrl(),
+                    "--homelab.agents.cbor=" + opts.getOrDefault("agents.cbor", "true"),
+                    "--homelab.agents.delta=" + opts.getOrDefault("agents.delta", "true")
+            };
+            ConfigurableApplicationContext ctx = new SpringApplicationBuilder(HomeLabApplication.class).run(backendArgs);
+            try {
+                String base = "http://127.0.0.1:" + ctx.getEnvironment().getProperty("local.server.port");
+                System.out.printf("Backend at %s; %d clients, %ds warmup, %ds measured%n", base, concurrency, warmupSec, durationSec);
+                if (warmupSec > 0) drive(base, endpoints, concurrency, warmupSec);
+                Map<String, Stats> results = drive(base, endpoints, concurrency, durationSec);
+                boolean ok = report(results, durationSec, opts.containsKey("maxP95Ms") ? Double.parseDouble(opts.get("maxP95Ms")) : -1);
+                for (StubUpstream s : List.of(unifi, govee, server, desktop)) {
+                    System.out.printf("  upstream %-22s %s%n", s.name(), s.counters());
+                }
+                System.out.println("  agent wire " + fetch(base + "/api/agents/wire-stats"));
+                if (!ok) System.exit(1);
+            } finally {
+                ctx.close();
+            }
+        }
+    }
+
+    private static Map<String, Stats> drive(String base, List<String> endpoints, int concurrency, int seconds) throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        List<Map<String, Stats>> perThread = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            Map<String, Stats> mine = new LinkedHashMap<>();
+            for (String e : endpoints) mine.put(e, new Stats());
+            perThread.add(mine);
+            int offset = i;
+            Thread t = new Thread(() -> {
+                try {
+                    int n = offset;
+                    while (System.nanoTime() < deadline) {
+                        String path = endpoints.get(n++ % endpoints.size());
+                        HttpRequest req = HttpRequest.newBuilder(URI.create(base + path)).timeout(Duration.ofSeconds(30)).GET().build();
+                        long start = System.nanoTime();
+                        boolean error;
+                        try {
+                            HttpResponse<String> resp = client.send(req, HttpResponse.BodyHandlers.ofString());
+                            error = resp.statusCode() != 200 || resp.body().contains("\"error\":true");
+                        } catch (Exception e) {
+                            error = true;
+                        }
+                        mine.get(path).record(System.nanoTime() - start, error);
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }, "loadtest-client-" + i);
+            t.setDaemon(true);
+            t.start();
+        }
+        done.await();
+        Map<String, Stats> merged = new LinkedHashMap<>();
+        for (String e : endpoints) {
+            Stats s = new Stats();
+            for (Map<String, Stats> m : perThread) s.merge(m.get(e));
+            merged.put(e, s);
+        }
+        return merged;
+    }
+
+    private static String fetch(String url) {
+        try {
+            return HttpClient.newHttpClient().send(HttpRequest.newBuilder(URI.create(url)).GET().build(),
+                    HttpResponse.BodyHandlers.ofString()).body();
+        } catch (Exception e) {
+            return e.toString();
+        }
+    }
+
+    private static boolean report(Map<String, Stats> results, int seconds, double maxP95Ms) {
+        boolean ok = true;
+        Stats all = new Stats();
+        System.out.printf("%n%-22s %9s %8s %9s %9s %9s %9s %9s%n", "endpoint", "requests", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms");
+        for (Map.Entry<String, Stats> e : results.entrySet()) {
+            Stats s = e.getValue();
+            all.merge(s);
+            print(e.getKey(), s, seconds);
+            if (maxP95Ms > 0 && s.percentileMs(0.95) > maxP95Ms) {
+                System.out.printf("  REGRESSION: %s p95 %.1f ms > %.1f ms%n", e.getKey(), s.percentileMs(0.95), maxP95Ms);
+                ok = false;
+            }
+        }
+        print("total", all, seconds);
+        System.out.println();
+        return ok;
+    }
+
+    private static void print(String name, Stats s, int seconds) {
+        System.out.printf("%-22s %9d %8d %9.1f %9.2f %9.2f %9.2f %9.2f%n", name, s.count, s.errors,
+                s.count / (double) seconds, s.percentileMs(0.50), s.percentileMs(0.95), s.percentileMs(0.99), s.percentileMs(1.0));
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> opts = new LinkedHashMap<>();
+        for (String arg : args) {
+            for (String part : arg.trim().split("\\s+")) {
+                int eq = part.indexOf('=');
+                if (eq > 0) opts.put(part.substring(0, eq), part.substring(eq + 1));
+            }
+        }
+        return opts;
+    }
+
+    /** {@code site:ms,site:ms} */
+    private static Map<String, Long> siteLatency(String spec) {
+        Map<String, Long> out = new LinkedHashMap<>();
+        for (String part : spec.split(",")) {
+            int colon = part.indexOf(':');
+            if (colon > 0) out.put(part.substring(0, colon), Long.parseLong(part.substring(colon + 1)));
+        }
+        return out;
+    }
+
+    private static int intOpt(Map<String, String> opts, String key, int defaultVal) {
+        return opts.containsKey(key) ? Integer.parseInt(opts.get(key)) : defaultVal;
+    }
+
+    private static long longOpt(Map<String, String> opts, String key) {
+        return opts.containsKey(key) ? Long.parseLong(opts.get(key)) : 0;
+    }
+
+    private static double doubleOpt(Map<String, String> opts, String key) {
+        return opts.containsKey(key) ? Double.parseDouble(opts.get(key)) : 0;
+    }
+
+    /** Raw latency samples for one endpoint; single-writer while driving, merged afterwards. */
+    private static final class Stats {
+        private long[] samples = new long[1024];
+        private int count;
+        private int errors;
+        private boolean sorted;
+
+        void record(long nanos, boolean error) {
+            if (count == samples.length) samples = Arrays.copyOf(samples, count * 2);
+            samples[count++] = nanos;
+            if (error) errors++;
+            sorted = false;
+        }
+
+        void merge(Stats other) {
+            if (count + other.count > samples.length) samples = Arrays.copyOf(samples, count + other.count);
+            System.arraycopy(other.samples, 0, samples, count, other.count);
+            count += other.count;
+            errors += other.errors;
+            sorted = false;
+        }
+
+        double percentileMs(double p) {
+            if (count == 0) return 0;
+            if (!sorted) {
+                Arrays.sort(samples, 0, count);
+                sorted = true;
+            }
+            int idx = (int) Math.min(count - 1, Math.max(0, Math.ceil(p * count) - 1));
+            return samples[idx] / 1_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.homelab.loadtest;
+
+import com.homelab.probe.ProbeEngine;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Throughput of {@link ProbeEngine} against local targets: {@code hosts} loopback addresses (127.1.x.y), of which
+ * {@code listening} have a listener on the probe port (answered as tcp-open) and the rest refuse (tcp-refused,
+ * i.e. up). {@code dead} TEST-NET-1 addresses (192.0.2.x) never answer, so they cost the full timeout. Prints
+ * hosts per second, the outcome per host and RTT percentiles of reachable hosts.
+ * <p>
+ * Run from {@code backend/}:
+ * <pre>
+ * mvn -Ploadtest test-compile exec:java -Dloadtest.main=com.homelab.loadtest.ProbeBenchmark -Dexec.args="hosts=5000 listening=500 dead=20 maxSockets=1024"
+ * </pre>
+ */
+public final class ProbeBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new LinkedHashMap<>();
+        for (String arg : args) {
+            for (String part : arg.trim().split("\\s+")) {
+                int eq = part.indexOf('=');
+                if (eq > 0) opts.put(part.substring(0, eq), part.substring(eq + 1));
+            }
+        }
+        int hosts = Integer.parseInt(opts.getOrDefault("hosts", "5000"));
+        int listening = Integer.parseInt(opts.getOrDefault("listening", "500"));
+        int dead = Integer.parseInt(opts.getOrDefault("dead", "20"));
+        int maxSockets = Integer.parseInt(opts.getOrDefault("maxSockets", "1024"));
+        long timeoutMs = Long.parseLong(opts.getOrDefault("timeoutMs", "1000"));
+        int rounds = Integer.parseInt(opts.getOrDefault("rounds", "3"));
+
+        List<InetAddress> targets = new ArrayList<>(hosts + dead);
+        for (int i = 0; i < hosts; i++) {
+            targets.add(InetAddress.getByAddress(new byte[]{127, 1, (byte) (i / 250), (byte) (1 + i % 250)}));
+        }
+        for (int i = 0; i < dead; i++) {
+            targets.add(InetAddress.getByAddress(new byte[]{(byte) 192, 0, 2, (byte) (1 + i % 254)}));
+        }
+
+        // Listeners on a port picked by the first bind; every listening host uses the same port
+        Selector acceptor = Selector.open();
+        int port = 0;
+        for (int i = 0; i < Math.min(listening, hosts); i++) {
+            ServerSocketChannel server = ServerSocketChannel.open();
+            server.bind(new InetSocketAddress(targets.get(i), port), 4096);
+            port = ((InetSocketAddress) server.getLocalAddress()).getPort();
+            server.configureBlocking(false);
+            server.register(acceptor, SelectionKey.OP_ACCEPT);
+        }
+        if (port == 0) port = 1; // nothing listens: everything refuses
+        Thread accepting = new Thread(() -> acceptLoop(acceptor), "probe-bench-accept");
+        accepting.setDaemon(true);
+        accepting.start();
+
+        System.out.printf("%d loopback hosts (%d listening on %d), %d dead, maxSockets=%d, timeout=%d ms%n%n",
+                hosts, Math.min(listening, hosts), port, dead, maxSockets, timeoutMs);
+        ProbeEngine engine = new ProbeEngine(new int[]{port}, timeoutMs, maxSockets, false);
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            List<ProbeEngine.Result> results = engine.probe(targets);
+            double elapsedMs = (System.nanoTime() - start) / 1e6;
+            Map<String, Integer> byVia = new TreeMap<>();
+            List<Double> rtts = new ArrayList<>();
+            for (ProbeEngine.Result r : results) {
+                byVia.merge(r.via(), 1, Integer::sum);
+                if (r.reachable()) rtts.add(r.rttMs());
+            }
+            double[] sorted = rtts.stream().mapToDouble(Double::doubleValue).toArray();
+            Arrays.sort(sorted);
+            System.out.printf("round %d: %.0f ms, %.0f hosts/s  %s  rtt p50 %.2f p95 %.2f p99 %.2f ms%n", round + 1,
+                    elapsedMs, results.size() * 1000 / elapsedMs, byVia,
+                    percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99));
+        }
+        // Loopback-only throughput, without the dead hosts' timeout
+        long start = System.nanoTime();
+        engine.probe(targets.subList(0, hosts));
+        double elapsedMs = (System.nanoTime() - start) / 1e6;
+        System.out.printf("%nlive hosts only: %.0f ms, %.0f hosts/s%n", elapsedMs, hosts * 1000 / elapsedMs);
+        acceptor.close();
+    }
+
+    private static void acceptLoop(Selector acceptor) {
+        try {
+            while (acceptor.isOpen()) {
+                acceptor.select();
+                Iterator<SelectionKey> it = acceptor.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    SocketChannel ch;
+                    while ((ch = ((ServerSocketChannel) key.channel()).accept()) != null) ch.close();
+                }
+            }
+        } catch (Exception ignored) {
+            // selector closed at the end of the run
+        }
+    }
+
+    private static double percentile(double[] sorted, int p) {
+        if (sorted.length == 0) return 0;
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p / 100.0 * sorted.length) - 1)];
+    }
+}
@@ -0,0 +1,328 @@
+package com.homelab.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local HTTP server imitating one upstream (UniFi controller, Govee cloud or a Python agent).
+ * Every response can be delayed by a fixed latency and replaced by a 503 with a given probability,
+ * so the harness can measure how the backend behaves when a source is slow or down.
+ */
+final class StubUpstream implements AutoCloseable {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final ObjectMapper CBOR = new ObjectMapper(new CBORFactory());
+
+    private final String name;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "stub-upstream");
+        t.setDaemon(true);
+        return t;
+    });
+    private final long latencyMs;
+    private final double failureRate;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    private StubUpstream(String name, long latencyMs, double failureRate) throws IOException {
+        this.name = name;
+        this.latencyMs = latencyMs;
+        this.failureRate = failureRate;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 256);
+        this.server.setExecutor(executor);
+    }
+
+    /**
+     * UniFi Network Application: {@code POST /api/login} sets a session cookie, {@code GET /api/s/<site>/stat/sta} lists
+     * clients for any site. {@code siteLatencyMs} adds extra delay for named sites, to check one slow site doesn't hold up the rest.
+     */
+    static StubUpstream unifi(int clients, long latencyMs, double failureRate, Map<String, Long> siteLatencyMs) throws IOException {
+        StubUpstream stub = new StubUpstream("unifi", latencyMs, failureRate);
+        byte[] clientList = unifiClients(clients);
+        stub.route("/api/login", ex -> {
+            ex.getResponseHeaders().add("Set-Cookie", "unifises=loadtest-session; Path=/; HttpOnly");
+            ex.getResponseHeaders().add("Set-Cookie", "csrf_token=loadtest-csrf; Path=/");
+            ex.getResponseHeaders().add("X-CSRF-Token", "loadtest-csrf");
+            return json("{\"meta\":{\"rc\":\"ok\"},\"data\":[]}");
+        });
+        stub.route("/api/s/", ex -> {
+            String site = ex.getRequestURI().getPath().split("/")[3];
+            long extra = siteLatencyMs.getOrDefault(site, 0L);
+            if (extra > 0) {
+                try {
+                    Thread.sleep(extra);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return clientList;
+        });
+        return stub;
+    }
+
+    /** Govee Open API device list plus the two legacy list endpoints and both control endpoints. */
+    static StubUpstream govee(int devices, long latencyMs, double failureRate) throws IOException {
+        StubUpstream stub = new StubUpstream("govee", latencyMs, failureRate);
+        StringBuilder open = new StringBuilder("{\"code\":200,\"message\":\"success\",\"data\":[");
+        StringBuilder legacy = new StringBuilder("{\"code\":200,\"message\":\"Success\",\"data\":{\"devices\":[");
+        for (int i = 0; i < devices; i++) {
+            String mac = mac(0x10, i);
+            if (i > 0) {
+                open.append(',');
+                legacy.append(',');
+            }
+            open.append("{\"sku\":\"H6008\",\"device\":\"").append(mac).append("\",\"deviceName\":\"Lamp ").append(i)
+                    .append("\",\"type\":\"devices.types.light\",\"capabilities\":[{\"type\":\"devices.capabilities.on_off\",\"instance\":\"powerSwitch\"}]}");
+            legacy.append("{\"device\":\"").append(mac).append("\",\"model\":\"H6008\",\"deviceName\":\"Lamp ").append(i)
+                    .append("\",\"controllable\":true,\"retrievable\":true,\"supportCmds\":[\"turn\",\"brightness\",\"color\"]}");
+        }
+        byte[] openBody = json(open.append("]}").toString());
+        byte[] legacyBody = json(legacy.append("]}}").toString());
+        byte[] ok = json("{\"code\":200,\"message\":\"success\"}");
+        stub.route("/router/api/v1/user/devices", ex -> openBody);
+        stub.route("/router/api/v1/device/control", ex -> ok);
+        stub.route("/v1/devices", ex -> legacyBody);
+        stub.route("/v1/appliance/devices", ex -> json("{\"code\":200,\"message\":\"Success\",\"data\":{\"devices\":[]}}"));
+        stub.route("/v1/devices/control", ex -> ok);
+        return stub;
+    }
+
+    /**
+     * Python agent {@code GET /stats} with a server-agent sized payload (including the security block). Speaks the
+     * agents' wire negotiation: CBOR when accepted, and a {@code set}/{@code unset} delta against the version in
+     * {@code X-Stats-Since}. Like a real host, cpu/memory/uptime/timestamp change on every poll and the rest rarely;
+     * {@code ?tier=fast} leaves the security block out, {@code /stats/security} serves it on its own.
+     */
+    static StubUpstream agent(String hostname, long latencyMs, double failureRate) throws IOException {
+        StubUpstream stub = new StubUpstream("agent-" + hostname, latencyMs, failureRate);
+        List<Map<String, Object>> ports = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            ports.add(Map.of("port", 8000 + i, "process", "svc" + i));
+        }
+        Map<String, Object> security = new LinkedHashMap<>();
+        security.put("failed_ssh_logins_24h", 3);
+        security.put("listening_ports", ports);
+        security.put("ufw_status", "active");
+        security.put("updates_pending", 4);
+        security.put("security_updates_pending", 1);
+        Map<String, Map<String, Object>> versions = new LinkedHashMap<>();
+        AtomicLong seq = new AtomicLong();
+        long securityCollectedAt = System.currentTimeMillis();
+        stub.route("/stats", ex -> {
+            long n = seq.get();
+            Map<String, Object> payload = new LinkedHashMap<>();
+            payload.put("hostname", hostname);
+            payload.put("uptime_seconds", 123456 + n);
+            payload.put("cpu_percent", Math.round(ThreadLocalRandom.current().nextDouble(100) * 10) / 10.0);
+            payload.put("memory_percent", 41.2 + (n % 7) / 10.0);
+            payload.put("disk_used_percent", 63.0);
+            payload.put("timestamp", System.currentTimeMillis());
+            String query = ex.getRequestURI().getQuery();
+            if (query == null || !query.contains("tier=fast")) {
+                payload.put("security", security);
+                payload.put("security_timestamp", securityCollectedAt);
+            }
+            return agentResponse(ex, payload, versions, seq);
+        });
+        stub.route("/stats/security", ex -> {
+            Map<String, Object> payload = new LinkedHashMap<>();
+            payload.put("security", security);
+            payload.put("timestamp", securityCollectedAt);
+            return agentResponse(ex, payload, versions, seq);
+        });
+        stub.route("/health", ex -> json("{\"status\":\"ok\"}"));
+        return stub;
+    }
+
+    /** Same as the agents' {@code _respond}: full or delta body, CBOR when accepted. */
+    private static byte[] agentResponse(HttpExchange ex, Map<String, Object> payload, Map<String, Map<String, Object>> versions,
+                                        AtomicLong seq) throws IOException {
+        String version = Long.toString(seq.incrementAndGet());
+        String since = ex.getRequestHeaders().getFirst("X-Stats-Since");
+        Map<String, Object> base;
+        synchronized (versions) {
+            base = since != null ? versions.get(since) : null;
+            versions.put(version, payload);
+            if (versions.size() > 8) versions.remove(versions.keySet().iterator().next());
+        }
+        Object body = payload;
+        ex.getResponseHeaders().set("X-Stats-Version", version);
+        if (base != null) {
+            Map<String, Object> set = new LinkedHashMap<>();
+            List<List<String>> unset = new ArrayList<>();
+            diff(base, payload, set, unset, List.of());
+            body = Map.of("set", set, "unset", unset);
+            ex.getResponseHeaders().set("X-Stats-Delta-Base", since);
+        }
+        if (prefersCbor(ex.getRequestHeaders().getFirst("Accept"))) {
+            ex.getResponseHeaders().set("Content-Type", "application/cbor");
+            return CBOR.writeValueAsBytes(body);
+        }
+        return JSON.writeValueAsBytes(body);
+    }
+
+    /**
+     * Negotiates like the agents' {@code best_match(["application/json", "application/cbor"])}: CBOR only when it
+     * has a higher quality than JSON, counting wildcards, so a tie (or no Accept header) gets JSON.
+     */
+    static boolean prefersCbor(String accept) {
+        if (accept == null || accept.isBlank()) return false;
+        double cbor = 0, json = 0;
+        int cborSpecificity = -1, jsonSpecificity = -1;
+        for (String part : accept.split(",")) {
+            String[] fields = part.trim().split(";");
+            String type = fields[0].trim().toLowerCase();
+            double q = 1;
+            for (int i = 1; i < fields.length; i++) {
+                String param = fields[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            // The most specific matching range sets a type's quality
+            int forCbor = specificity(type, "application/cbor");
+            if (forCbor > cborSpecificity) {
+                cborSpecificity = forCbor;
+                cbor = q;
+            }
+            int forJson = specificity(type, "application/json");
+            if (forJson > jsonSpecificity) {
+                jsonSpecificity = forJson;
+                json = q;
+            }
+        }
+        return cbor > json;
+    }
+
+    /** 2 for an exact match, 1 for {@code application/*}, 0 for {@code *}{@code /*}, -1 if the range does not match. */
+    private static int specificity(String range, String type) {
+        if (range.equals(type)) return 2;
+        if (range.equals("application/*")) return 1;
+        if (range.equals("*/*")) return 0;
+        return -1;
+    }
+
+    /** Same shape as the agents' {@code _diff}: changed/added keys (recursing into maps) and removed paths. */
+    @SuppressWarnings("unchecked")
+    private static void diff(Map<String, Object> old, Map<String, Object> now, Map<String, Object> set, List<List<String>> unset, List<String> path) {
+        for (Map.Entry<String, Object> e : now.entrySet()) {
+            Object prev = old.get(e.getKey());
+            if (!old.containsKey(e.getKey())) {
+                set.put(e.getKey(), e.getValue());
+            } else if (e.getValue() instanceof Map<?, ?> m && prev instanceof Map<?, ?> pm) {
+                Map<String, Object> child = new LinkedHashMap<>();
+                List<String> childPath = new ArrayList<>(path);
+                childPath.add(e.getKey());
+                diff((Map<String, Object>) pm, (Map<String, Object>) m, child, unset, childPath);
+                if (!child.isEmpty()) set.put(e.getKey(), child);
+            } else if (!Objects.equals(prev, e.getValue())) {
+                set.put(e.getKey(), e.getValue());
+            }
+        }
+        for (String k : old.keySet()) {
+            if (!now.containsKey(k)) {
+                List<String> removed = new ArrayList<>(path);
+                removed.add(k);
+                unset.add(removed);
+            }
+        }
+    }
+
+    StubUpstream start() {
+        server.start();
+        return this;
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    String name() {
+        return name;
+    }
+
+    Map<String, Long> counters() {
+        return Map.of("requests", requests.get(), "failures", failures.get());
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void route(String path, Handler handler) {
+        server.createContext(path, ex -> {
+            try {
+                requests.incrementAndGet();
+                if (latencyMs > 0) Thread.sleep(latencyMs);
+                if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+                    failures.incrementAndGet();
+                    ex.sendResponseHeaders(503, -1);
+                    return;
+                }
+                byte[] body = handler.handle(ex);
+                if (!ex.getResponseHeaders().containsKey("Content-Type")) {
+                    ex.getResponseHeaders().set("Content-Type", "application/json");
+                }
+                ex.sendResponseHeaders(200, body.length);
+                try (OutputStream out = ex.getResponseBody()) {
+                    out.write(body);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                ex.close();
+            }
+        });
+    }
+
+    static byte[] unifiClients(int count) {
+        long nowSec = System.currentTimeMillis() / 1000;
+        StringBuilder sb = new StringBuilder("{\"meta\":{\"rc\":\"ok\"},\"data\":[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"mac\":\"").append(mac(0x20, i)).append("\",\"ip\":\"10.").append((i >> 16) & 0xff).append('.')
+                    .append((i >> 8) & 0xff).append('.').append(i & 0xff).append("\",\"hostname\":\"client-").append(i)
+                    .append("\",\"oui\":\"Loadtest\",\"essid\":\"homelab\",\"is_wired\":").append(i % 3 == 0)
+                    .append(",\"rx_bytes\":").append(1_000_000L * i).append(",\"tx_bytes\":").append(500_000L * i)
+                    .append(",\"last_seen\":").append(i % 10 == 0 ? nowSec - 3600 : nowSec).append('}');
+        }
+        return json(sb.append("]}").toString());
+    }
+
+    private static String mac(int prefix, int i) {
+        return String.format("%02x:00:00:%02x:%02x:%02x", prefix, (i >> 16) & 0xff, (i >> 8) & 0xff, i & 0xff);
+    }
+
+    private static byte[] json(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        byte[] handle(HttpExchange exchange) throws IOException;
+    }
+}
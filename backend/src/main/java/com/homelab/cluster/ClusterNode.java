@@ -0,0 +1,581 @@
+package com.homelab.cluster;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.homelab.config.HomelabProperties;
+import com.homelab.store.SnapshotStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Leader election and snapshot replication between backend instances ({@code homelab.cluster}).
+ * <p>
+ * Every node keeps an outgoing TCP connection per peer and sends a heartbeat on it every {@code heartbeat-ms}
+ * (frames are a 4-byte length plus a JSON object; the first frame on a connection is a {@code hello} carrying the
+ * shared {@code secret}, which is therefore required). Snapshots go over a second connection, so a large one never
+ * delays a heartbeat, and each connection has a writer thread of its own: a slow or stopped peer holds up nothing
+ * but its own writers, and a write blocked for longer than its timeout is cut off by closing the socket.
+ * <p>
+ * Election is "lowest live node id, but keep a live leader": a node follows any peer that claims leadership (the
+ * lowest id if several do, which also ends a split brain), and only claims it itself when nobody has for
+ * {@code failover-ms} and no live peer has a lower id. A node shutting down sends {@code leave} so the others fail
+ * over at once instead of waiting for the timeout.
+ * <p>
+ * The leader pushes every {@link SnapshotStore#put} to the followers (coalesced per key, both before and while
+ * queued for a peer) and sends all entries to a follower when its snapshot connection is made. Followers store them
+ * with {@link SnapshotStore#putReplica} and serve them instead of calling upstreams ({@link #shouldPoll()},
+ * {@link #replica(String)}). UniFi session entries are never replicated: they hold this node's controller login.
+ */
+@Component
+public class ClusterNode {
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterNode.class);
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
+    private static final int MAX_FRAME_BYTES = 64 * 1024 * 1024;
+    private static final int CONNECT_TIMEOUT_MS = 1000;
+    /** A snapshot write may take this long (a full sync to a slow follower) before the connection is dropped. */
+    private static final long DATA_WRITE_TIMEOUT_MS = 30_000;
+    private static final long LEAVE_FLUSH_MS = 500;
+    private static final String HEARTBEAT_SLOT = "hb";
+    private static final String LEAVE_SLOT = "leave";
+    private static final String SNAPSHOT_SLOT = "snapshot:";
+    /** Store keys kept on this node: {@code unifi-session:<controller>} (and the older {@code unifi-session}). */
+    private static final String LOCAL_KEY_PREFIX = "unifi-session";
+
+    private final HomelabProperties properties;
+    private final SnapshotStore snapshotStore;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, Peer> peers = new LinkedHashMap<>();
+    private final Map<String, Member> members = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Object>> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final List<Runnable> leadershipListeners = new CopyOnWriteArrayList<>();
+    private final List<Socket> inbound = new CopyOnWriteArrayList<>();
+
+    private String nodeId;
+    private volatile boolean leader;
+    private volatile String leaderId;
+    private volatile long leaderSince;
+    private volatile long startedAt;
+    private ServerSocket serverSocket;
+    private ScheduledExecutorService ticker;
+    private ExecutorService readers;
+    private ExecutorService replicator;
+
+    public ClusterNode(HomelabProperties properties, SnapshotStore snapshotStore) {
+        this.properties = properties;
+        this.snapshotStore = snapshotStore;
+    }
+
+    @PostConstruct
+    void start() throws IOException {
+        HomelabProperties.Cluster cfg = properties.getCluster();
+        if (!cfg.isEnabled()) return;
+        if (cfg.getSecret().isBlank()) {
+            // Without it any host that reaches the port can claim leadership and push snapshots followers serve
+            throw new IllegalStateException("homelab.cluster.secret must be set when homelab.cluster.enabled is true");
+        }
+        nodeId = cfg.getNodeId() != null && !cfg.getNodeId().isBlank()
+                ? cfg.getNodeId() : InetAddress.getLocalHost().getHostName() + ":" + cfg.getPort();
+        for (String address : cfg.getPeers()) peers.put(address, new Peer(address));
+        for (Peer peer : peers.values()) peer.start();
+        startedAt = System.currentTimeMillis();
+
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(cfg.getBindHost(), cfg.getPort()));
+        readers = Executors.newCachedThreadPool(daemon("cluster-peer"));
+        replicator = Executors.newSingleThreadExecutor(daemon("cluster-replicate"));
+        ticker = Executors.newSingleThreadScheduledExecutor(daemon("cluster-heartbeat"));
+        readers.execute(this::acceptLoop);
+        snapshotStore.addListener(this::replicate);
+        ticker.scheduleWithFixedDelay(this::tick, 0, cfg.getHeartbeatMs(), TimeUnit.MILLISECONDS);
+        log.info("Cluster: node {} listening on {}:{}, peers {}", nodeId, cfg.getBindHost(), cfg.getPort(), cfg.getPeers());
+    }
+
+    @PreDestroy
+    void stop() {
+        if (ticker == null) return;
+        ticker.shutdownNow();
+        replicator.shutdownNow();
+        byte[] leave = frame(Map.of("type", "leave", "id", nodeId));
+        for (Peer peer : peers.values()) {
+            peer.data.close(0);
+            peer.control.offer(LEAVE_SLOT, leave);
+        }
+        for (Peer peer : peers.values()) peer.control.close(LEAVE_FLUSH_MS);
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) { }
+        for (Socket s : inbound) closeQuietly(s);
+        readers.shutdownNow();
+    }
+
+    /** True when this instance should call upstreams itself: clustering is off, or it is the leader. */
+    public boolean shouldPoll() {
+        return !properties.getCluster().isEnabled() || leader;
+    }
+
+    public boolean isLeader() {
+        return properties.getCluster().isEnabled() && leader;
+    }
+
+    /** Run when this node becomes leader (on the heartbeat thread; keep it short). */
+    public void onLeadership(Runnable listener) {
+        leadershipListeners.add(listener);
+    }
+
+    /**
+     * A follower's answer for a source: the leader's last snapshot with {@code replica: true}, its {@code savedAt}
+     * and the leader's id; null when nothing has been replicated yet.
+     */
+    public Map<String, Object> replica(String key) {
+        Map<String, Object> data = snapshotStore.get(key);
+        if (data == null) return null;
+        Map<String, Object> out = new LinkedHashMap<>(data);
+        out.put("replica", true);
+        out.put("savedAt", snapshotStore.savedAt(key));
+        out.put("leader", leaderId);
+        return out;
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        boolean enabled = properties.getCluster().isEnabled();
+        out.put("enabled", enabled);
+        if (!enabled) return out;
+        long now = System.currentTimeMillis();
+        out.put("nodeId", nodeId);
+        out.put("role", leader ? "leader" : leaderId != null ? "follower" : "electing");
+        out.put("leader", leaderId);
+        if (leader) out.put("leaderSince", leaderSince);
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (Peer peer : peers.values()) {
+            Map<String, Object> p = new LinkedHashMap<>();
+            p.put("address", peer.address);
+            p.put("connected", peer.control.isConnected());
+            p.put("replicating", peer.data.isConnected());
+            p.put("queuedFrames", peer.data.queued());
+            list.add(p);
+        }
+        out.put("peers", list);
+        List<Map<String, Object>> seen = new ArrayList<>();
+        members.forEach((id, m) -> {
+            Map<String, Object> e = new LinkedHashMap<>();
+            e.put("nodeId", id);
+            e.put("claimsLeader", m.claimsLeader);
+            e.put("lastHeartbeatMsAgo", now - m.lastSeen);
+            e.put("live", now - m.lastSeen <= properties.getCluster().getFailoverMs());
+            seen.add(e);
+        });
+        out.put("members", seen);
+        return out;
+    }
+
+    /** Election and heartbeats; only queues frames, so no peer can hold it up. */
+    private void tick() {
+        try {
+            long now = System.currentTimeMillis();
+            elect(now);
+            byte[] heartbeat = frame(Map.of("type", "hb", "id", nodeId, "leader", leader));
+            for (Peer peer : peers.values()) {
+                peer.control.cutOffBlockedWrite(now);
+                peer.data.cutOffBlockedWrite(now);
+                peer.control.offer(HEARTBEAT_SLOT, heartbeat);
+                // The snapshot connection is only kept while leading; heartbeats on it keep it from idling out on the
+                // follower's side and (re)connect it, which triggers the full sync
+                if (leader) peer.data.offer(HEARTBEAT_SLOT, heartbeat);
+                else peer.data.disconnect();
+            }
+        } catch (Exception e) {
+            log.warn("Cluster: heartbeat failed: {}", e.getMessage());
+        }
+    }
+
+    private void elect(long now) {
+        long failoverMs = properties.getCluster().getFailoverMs();
+        String lowestClaimant = null;
+        String lowestLive = nodeId;
+        for (Map.Entry<String, Member> e : members.entrySet()) {
+            if (now - e.getValue().lastSeen > failoverMs) continue;
+            String id = e.getKey();
+            if (id.compareTo(lowestLive) < 0) lowestLive = id;
+            if (e.getValue().claimsLeader && (lowestClaimant == null || id.compareTo(lowestClaimant) < 0)) lowestClaimant = id;
+        }
+        if (leader) {
+            if (lowestClaimant != null && lowestClaimant.compareTo(nodeId) < 0) {
+                leader = false;
+                leaderId = lowestClaimant;
+                log.info("Cluster: {} also claims leadership and has the lower id; stepping down", lowestClaimant);
+            }
+        } else if (lowestClaimant != null) {
+            if (!lowestClaimant.equals(leaderId)) log.info("Cluster: following leader {}", lowestClaimant);
+            leaderId = lowestClaimant;
+        } else if (now - startedAt >= failoverMs && lowestLive.equals(nodeId)) {
+            leader = true;
+            leaderId = nodeId;
+            leaderSince = now;
+            log.info("Cluster: no live leader, {} takes over", nodeId);
+            for (Runnable r : leadershipListeners) {
+                try {
+                    r.run();
+                } catch (Exception e) {
+                    log.warn("Cluster: leadership listener failed: {}", e.getMessage());
+                }
+            }
+        } else {
+            leaderId = null;
+        }
+    }
+
+    /** SnapshotStore listener: queue the entry for the followers; the latest entry per key wins. */
+    private void replicate(String key, Map<String, Object> entry) {
+        if (!leader || peers.isEmpty() || !replicated(key)) return;
+        pending.put(key, entry);
+        if (draining.compareAndSet(false, true)) {
+            try {
+                replicator.execute(this::drain);
+            } catch (Exception e) {
+                draining.set(false);
+            }
+        }
+    }
+
+    private void drain() {
+        do {
+            for (String key : pending.keySet()) {
+                Map<String, Object> entry = pending.remove(key);
+                if (entry == null) continue;
+                byte[] frame = snapshotFrame(key, entry);
+                for (Peer peer : peers.values()) peer.data.offer(SNAPSHOT_SLOT + key, frame);
+            }
+            draining.set(false);
+        } while (!pending.isEmpty() && draining.compareAndSet(false, true));
+    }
+
+    /** Queue every entry on a new snapshot connection; runs on that connection's writer thread. */
+    private void fullSync(Link link) {
+        if (!leader) return;
+        int queued = 0;
+        for (Map.Entry<String, Map<String, Object>> e : snapshotStore.entries().entrySet()) {
+            if (!replicated(e.getKey())) continue;
+            link.offer(SNAPSHOT_SLOT + e.getKey(), snapshotFrame(e.getKey(), e.getValue()));
+            queued++;
+        }
+        log.info("Cluster: queued {} snapshot(s) for {}", queued, link.peer.address);
+    }
+
+    /** Session cookies are credentials for this node's own login, and followers log in themselves once they lead. */
+    private static boolean replicated(String key) {
+        return !key.startsWith(LOCAL_KEY_PREFIX);
+    }
+
+    private byte[] snapshotFrame(String key, Map<String, Object> entry) {
+        Map<String, Object> msg = new LinkedHashMap<>();
+        msg.put("type", "snapshot");
+        msg.put("id", nodeId);
+        msg.put("key", key);
+        msg.put("savedAt", entry.get("savedAt"));
+        msg.put("data", entry.get("data"));
+        return frame(msg);
+    }
+
+    private byte[] frame(Map<String, Object> msg) {
+        try {
+            return objectMapper.writeValueAsBytes(msg);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                inbound.add(socket);
+                readers.execute(() -> read(socket));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) log.debug("Cluster: accept failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void read(Socket socket) {
+        String remote = socket.getRemoteSocketAddress().toString();
+        try (DataInputStream in = new DataInputStream(socket.getInputStream())) {
+            socket.setSoTimeout((int) Math.max(properties.getCluster().getFailoverMs() * 2, 5000));
+            Map<String, Object> hello = readFrame(in);
+            byte[] expected = properties.getCluster().getSecret().getBytes(StandardCharsets.UTF_8);
+            byte[] given = String.valueOf(hello.get("secret")).getBytes(StandardCharsets.UTF_8);
+            if (!"hello".equals(hello.get("type")) || !MessageDigest.isEqual(expected, given)) {
+                log.warn("Cluster: rejected connection from {} (bad hello or secret)", remote);
+                return;
+            }
+            while (!socket.isClosed()) {
+                handle(readFrame(in));
+            }
+        } catch (IOException e) {
+            log.debug("Cluster: connection from {} closed: {}", remote, e.getMessage());
+        } finally {
+            inbound.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    private Map<String, Object> readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_FRAME_BYTES) throw new IOException("Bad frame length " + length);
+        byte[] body = new byte[length];
+        in.readFully(body);
+        return objectMapper.readValue(body, MAP_TYPE);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void handle(Map<String, Object> msg) {
+        if (!(msg.get("id") instanceof String id) || id.equals(nodeId)) return;
+        switch (String.valueOf(msg.get("type"))) {
+            case "hb" -> {
+                Member m = members.computeIfAbsent(id, k -> new Member());
+                m.lastSeen = System.currentTimeMillis();
+                m.claimsLeader = Boolean.TRUE.equals(msg.get("leader"));
+            }
+            case "leave" -> {
+                members.remove(id);
+                if (id.equals(leaderId)) {
+                    log.info("Cluster: leader {} left", id);
+                    leaderId = null;
+                    // Take over on the next tick rather than waiting for failover-ms since start
+                    startedAt = 0;
+                }
+            }
+            case "snapshot" -> {
+                // Only the node we follow may write our snapshots; a stale claimant is ignored
+                if (leader || !id.equals(leaderId) && !claimsLeadership(id)) return;
+                if (msg.get("key") instanceof String key && msg.get("data") instanceof Map<?, ?> data) {
+                    long savedAt = msg.get("savedAt") instanceof Number n ? n.longValue() : System.currentTimeMillis();
+                    snapshotStore.putReplica(key, savedAt, (Map<String, Object>) data);
+                }
+            }
+            default -> log.debug("Cluster: unknown message type {} from {}", msg.get("type"), id);
+        }
+    }
+
+    private boolean claimsLeadership(String id) {
+        Member m = members.get(id);
+        return m != null && m.claimsLeader;
+    }
+
+    private static void closeQuietly(Socket s) {
+        try {
+            s.close();
+        } catch (IOException ignored) { }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /** What we last heard from another node. */
+    private static final class Member {
+        private volatile long lastSeen;
+        private volatile boolean claimsLeader;
+    }
+
+    /** One configured peer: a connection for heartbeats and one for snapshots. */
+    private final class Peer {
+        private final String address;
+        private final String host;
+        private final int port;
+        private final Link control;
+        private final Link data;
+
+        Peer(String address) {
+            this.address = address;
+            int colon = address.lastIndexOf(':');
+            this.host = colon > 0 ? address.substring(0, colon) : address;
+            this.port = colon > 0 ? Integer.parseInt(address.substring(colon + 1)) : properties.getCluster().getPort();
+            this.control = new Link(this, "control", properties.getCluster().getFailoverMs(), null);
+            this.data = new Link(this, "data", DATA_WRITE_TIMEOUT_MS, ClusterNode.this::fullSync);
+        }
+
+        void start() {
+            control.writer.start();
+            data.writer.start();
+        }
+    }
+
+    /**
+     * An outgoing connection with a writer thread of its own, which connects on demand. Frames wait in an outbox
+     * keyed by slot (the heartbeat, the leave message or one snapshot key): a newer frame replaces an unsent one in
+     * its slot, so the outbox never holds more than one frame per snapshot key. While the peer is unreachable the
+     * outbox is dropped; the next connection starts with a full sync instead. The heartbeat tick closes the socket
+     * of a write that has been blocked for longer than {@code writeTimeoutMs}.
+     */
+    private final class Link {
+        private final Peer peer;
+        private final long writeTimeoutMs;
+        private final Consumer<Link> onConnect;
+        private final LinkedHashMap<String, byte[]> outbox = new LinkedHashMap<>();
+        private final Thread writer;
+        private boolean closing;
+        private volatile Socket socket;
+        private volatile long writingSince;
+        /** Writer thread only. */
+        private DataOutputStream out;
+
+        Link(Peer peer, String channel, long writeTimeoutMs, Consumer<Link> onConnect) {
+            this.peer = peer;
+            this.writeTimeoutMs = writeTimeoutMs;
+            this.onConnect = onConnect;
+            this.writer = daemon("cluster-" + channel + "-" + peer.address).newThread(this::run);
+        }
+
+        synchronized void offer(String slot, byte[] frame) {
+            if (closing) return;
+            outbox.put(slot, frame);
+            notifyAll();
+        }
+
+        boolean isConnected() {
+            return socket != null;
+        }
+
+        synchronized int queued() {
+            return outbox.size();
+        }
+
+        void cutOffBlockedWrite(long now) {
+            long since = writingSince;
+            Socket s = socket;
+            if (since != 0 && s != null && now - since > writeTimeoutMs) {
+                log.warn("Cluster: write to {} blocked for {} ms, dropping the connection", peer.address, now - since);
+                closeQuietly(s);
+            }
+        }
+
+        /** Close the connection and drop what is queued for it. */
+        void disconnect() {
+            if (socket == null) return;
+            synchronized (this) {
+                outbox.clear();
+            }
+            dropSocket();
+        }
+
+        /** Stop after sending what is queued, waiting at most {@code flushMs} for that. */
+        void close(long flushMs) {
+            synchronized (this) {
+                closing = true;
+                notifyAll();
+            }
+            try {
+                writer.join(Math.max(1, flushMs));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            dropSocket();
+            writer.interrupt();
+        }
+
+        private void run() {
+            while (true) {
+                byte[] frame;
+                synchronized (this) {
+                    while (outbox.isEmpty() && !closing) {
+                        try {
+                            wait();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                    if (outbox.isEmpty()) return;
+                    Iterator<byte[]> it = outbox.values().iterator();
+                    frame = it.next();
+                    it.remove();
+                }
+                if (socket == null && !connect()) {
+                    synchronized (this) {
+                        outbox.clear();
+                    }
+                    continue;
+                }
+                write(frame);
+            }
+        }
+
+        private boolean connect() {
+            Socket s = new Socket();
+            try {
+                s.setTcpNoDelay(true);
+                s.connect(new InetSocketAddress(peer.host, peer.port), CONNECT_TIMEOUT_MS);
+                out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+                socket = s;
+            } catch (IOException e) {
+                closeQuietly(s);
+                return false;
+            }
+            Map<String, Object> hello = new LinkedHashMap<>();
+            hello.put("type", "hello");
+            hello.put("id", nodeId);
+            hello.put("secret", properties.getCluster().getSecret());
+            if (!write(frame(hello))) return false;
+            if (onConnect != null) onConnect.accept(this);
+            return true;
+        }
+
+        private boolean write(byte[] frame) {
+            if (socket == null) return false;
+            writingSince = System.currentTimeMillis();
+            try {
+                out.writeInt(frame.length);
+                out.write(frame);
+                out.flush();
+                return true;
+            } catch (IOException e) {
+                log.debug("Cluster: lost connection to {}: {}", peer.address, e.getMessage());
+                dropSocket();
+                return false;
+            } finally {
+                writingSince = 0;
+            }
+        }
+
+        private void dropSocket() {
+            Socket s = socket;
+            socket = null;
+            if (s != null) closeQuietly(s);
+        }
+    }
+}
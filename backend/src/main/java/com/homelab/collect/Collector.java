@@ -0,0 +1,52 @@
+package com.homelab.collect;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * One data source behind the dashboard (an agent, UniFi, Tailscale, Govee, the speed test, ...).
+ * <p>
+ * A collector only knows how to fetch; {@link CollectorRegistry} decides when. {@link #collect} runs on a thread
+ * of the collector's own (never a request thread), at most one at a time, and a non-null result becomes the
+ * snapshot under {@link #name} unless it carries an {@code error} key. Snapshots are JSON-shaped maps because
+ * that is how they are persisted and replicated.
+ */
+public interface Collector {
+
+    /** Snapshot key; also the collector's name in {@code /api/collectors}. */
+    String name();
+
+    /**
+     * Fetch from the upstream. Null when there is nothing to show (not configured, upstream failed); the
+     * previous snapshot is kept in that case.
+     */
+    Map<String, Object> collect() throws Exception;
+
+    /** False when not configured; requests then get null and nothing is scheduled. */
+    default boolean enabled() {
+        return true;
+    }
+
+    /** How long a collected snapshot is served as is before a request or the schedule collects again. */
+    default Duration maxAge() {
+        return Duration.ZERO;
+    }
+
+    /**
+     * Interval for collecting in the background on the polling node; zero collects on demand only (or at
+     * {@code homelab.cluster.poll-interval-seconds} when clustering is on, so followers stay fresh).
+     */
+    default Duration refreshInterval() {
+        return Duration.ZERO;
+    }
+
+    /** How long a request waits for a collect before it is answered with the last snapshot (marked stale) or null. */
+    default Duration timeout() {
+        return Duration.ofSeconds(10);
+    }
+
+    /** Collector-specific state for {@code /api/collectors} (sessions, endpoint choice, ...); empty if there is none. */
+    default Map<String, Object> details() {
+        return Map.of();
+    }
+}
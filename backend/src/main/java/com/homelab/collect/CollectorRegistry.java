@@ -0,0 +1,279 @@
+package com.homelab.collect;
+
+import com.homelab.cluster.ClusterNode;
+import com.homelab.config.HomelabProperties;
+import com.homelab.store.SnapshotStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs every {@link Collector} on an executor of its own with exactly one thread, so a hanging upstream can
+ * only ever hold that one thread: request threads wait at most {@link Collector#timeout()} and the other
+ * sources are unaffected. Concurrent requests for a source share the collect in flight instead of each
+ * starting one. Also owns the background schedule (see {@link Collector#refreshInterval()}) and keeps
+ * per-collector health for {@code /api/collectors}.
+ * <p>
+ * On a cluster follower nothing is collected; {@link #get} answers from the replicated snapshot.
+ */
+@Component
+public class CollectorRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(CollectorRegistry.class);
+
+    private final HomelabProperties properties;
+    private final SnapshotStore snapshotStore;
+    private final ClusterNode cluster;
+    private final Map<String, Source> sources = new LinkedHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    public CollectorRegistry(List<Collector> collectors, HomelabProperties properties, SnapshotStore snapshotStore, ClusterNode cluster) {
+        this.properties = properties;
+        this.snapshotStore = snapshotStore;
+        this.cluster = cluster;
+        for (Collector c : collectors) {
+            if (sources.putIfAbsent(c.name(), new Source(c)) != null) {
+                throw new IllegalStateException("Two collectors named " + c.name());
+            }
+        }
+    }
+
+    @PostConstruct
+    void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "collect-schedule");
+            t.setDaemon(true);
+            return t;
+        });
+        long clusterIntervalMs = properties.getCluster().isEnabled() ? properties.getCluster().getPollIntervalSeconds() * 1000L : 0;
+        for (Source s : sources.values()) {
+            long intervalMs = s.collector.refreshInterval().toMillis();
+            if (intervalMs <= 0) intervalMs = clusterIntervalMs;
+            if (intervalMs <= 0) continue;
+            scheduler.scheduleWithFixedDelay(() -> refreshIfDue(s), intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        }
+        // A new leader's snapshots may be as old as the previous leader's last replication
+        cluster.onLeadership(() -> scheduler.execute(this::refreshAll));
+    }
+
+    @PreDestroy
+    void stop() {
+        if (scheduler != null) scheduler.shutdownNow();
+        for (Source s : sources.values()) s.executor.shutdownNow();
+    }
+
+    /**
+     * Latest data for a source: the current snapshot while it is younger than {@link Collector#maxAge()},
+     * otherwise the result of a collect (started now or already running). A collect that outlasts the
+     * collector's timeout keeps running; the request gets the last snapshot marked {@code stale: true}, or null.
+     * Null for an unknown or disabled collector.
+     */
+    public Map<String, Object> get(String name) {
+        Source s = sources.get(name);
+        if (s == null || !s.collector.enabled()) return null;
+        if (!cluster.shouldPoll()) return cluster.replica(name);
+        Map<String, Object> stale = snapshotStore.staleSnapshot(name, () -> s.await(s.trigger()));
+        if (stale != null) return stale;
+        Map<String, Object> fresh = s.fresh();
+        if (fresh != null) return fresh;
+        return s.await(s.trigger());
+    }
+
+    /** Start a collect for every enabled source whose snapshot is due, without waiting for any of them. */
+    public void refreshAll() {
+        for (Source s : sources.values()) refreshIfDue(s);
+    }
+
+    /**
+     * Start a collect for one source unless its snapshot is still fresh, without waiting; a collect already running
+     * is joined. True if a collect is now in flight, false when there is nothing to wait for (fresh, unknown,
+     * disabled, or not the polling node).
+     */
+    public boolean refresh(String name) {
+        Source s = sources.get(name);
+        if (s == null || !s.collector.enabled() || !cluster.shouldPoll()) return false;
+        if (s.fresh() != null) return false;
+        return !s.trigger().isDone();
+    }
+
+    /**
+     * True when {@link #get} would not start a collect: the snapshot is fresh, a collect is already running (it
+     * would be joined), this node is a follower, or the source is unknown or disabled.
+     */
+    public boolean cached(String name) {
+        Source s = sources.get(name);
+        if (s == null || !s.collector.enabled() || !cluster.shouldPoll()) return true;
+        return s.fresh() != null || s.collecting();
+    }
+
+    /**
+     * Per collector: state, schedule, timeout, counters of collects, failures, timed-out requests and rejections,
+     * and the collector's own {@link Collector#details}.
+     */
+    public Map<String, Object> health() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        for (Source s : sources.values()) out.put(s.collector.name(), s.health());
+        return out;
+    }
+
+    private void refreshIfDue(Source s) {
+        if (!s.collector.enabled() || !cluster.shouldPoll() || s.fresh() != null) return;
+        s.trigger();
+    }
+
+    /** Last stored snapshot for a source, marked stale, for a request that gave up waiting. */
+    private Map<String, Object> lastKnown(String name) {
+        Map<String, Object> data = snapshotStore.get(name);
+        if (data == null) return null;
+        Map<String, Object> out = new LinkedHashMap<>(data);
+        out.put("stale", true);
+        out.put("savedAt", snapshotStore.savedAt(name));
+        return out;
+    }
+
+    private final class Source {
+        private final Collector collector;
+        private final ThreadPoolExecutor executor;
+        private CompletableFuture<Map<String, Object>> inFlight;
+        private long inFlightSince;
+        private volatile Map<String, Object> last;
+        private volatile long collectedAt;
+        private long collects;
+        private long failures;
+        private long consecutiveFailures;
+        private long timeouts;
+        private long rejected;
+        private long lastDurationMs = -1;
+        private long lastSuccessAt;
+        private long lastFailureAt;
+        private String lastError;
+
+        Source(Collector collector) {
+            this.collector = collector;
+            // One thread; a second collect joins the one in flight (see trigger), so the queue only ever holds the
+            // next collect for the moment between a finished one handing back its thread and the thread being idle
+            this.executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1), r -> {
+                Thread t = new Thread(r, "collect-" + collector.name());
+                t.setDaemon(true);
+                return t;
+            });
+            executor.allowCoreThreadTimeOut(true);
+        }
+
+        Map<String, Object> fresh() {
+            Map<String, Object> data = last;
+            long maxAgeMs = collector.maxAge().toMillis();
+            return data != null && maxAgeMs > 0 && System.currentTimeMillis() - collectedAt < maxAgeMs ? data : null;
+        }
+
+        synchronized boolean collecting() {
+            return inFlight != null;
+        }
+
+        synchronized CompletableFuture<Map<String, Object>> trigger() {
+            if (inFlight != null) return inFlight;
+            CompletableFuture<Map<String, Object>> f = new CompletableFuture<>();
+            try {
+                executor.execute(() -> run(f));
+            } catch (RejectedExecutionException e) {
+                // Only while shutting down
+                rejected++;
+                return CompletableFuture.completedFuture(null);
+            }
+            inFlight = f;
+            inFlightSince = System.currentTimeMillis();
+            return f;
+        }
+
+        private void run(CompletableFuture<Map<String, Object>> f) {
+            long start = System.nanoTime();
+            Map<String, Object> result = null;
+            String error = null;
+            try {
+                result = collector.collect();
+                if (result == null) error = "no data";
+            } catch (Exception e) {
+                error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+                log.debug("Collector {} failed: {}", collector.name(), error);
+            }
+            if (result != null && !result.containsKey("error")) {
+                snapshotStore.put(collector.name(), result);
+                last = result;
+                collectedAt = System.currentTimeMillis();
+            }
+            synchronized (this) {
+                collects++;
+                lastDurationMs = (System.nanoTime() - start) / 1_000_000;
+                if (error == null) {
+                    consecutiveFailures = 0;
+                    lastSuccessAt = System.currentTimeMillis();
+                } else {
+                    failures++;
+                    consecutiveFailures++;
+                    lastFailureAt = System.currentTimeMillis();
+                    lastError = error;
+                }
+                inFlight = null;
+            }
+            f.complete(result);
+        }
+
+        Map<String, Object> await(CompletableFuture<Map<String, Object>> f) {
+            try {
+                return f.get(collector.timeout().toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                synchronized (this) {
+                    timeouts++;
+                }
+                return lastKnown(collector.name());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return lastKnown(collector.name());
+            } catch (ExecutionException e) {
+                return null;
+            }
+        }
+
+        synchronized Map<String, Object> health() {
+            long now = System.currentTimeMillis();
+            Map<String, Object> out = new LinkedHashMap<>();
+            String state;
+            if (!collector.enabled()) state = "disabled";
+            else if (inFlight != null) state = "collecting";
+            else if (collects == 0) state = "idle";
+            else state = consecutiveFailures == 0 ? "ok" : "failing";
+            out.put("state", state);
+            if (inFlight != null) out.put("collectingForMs", now - inFlightSince);
+            out.put("collects", collects);
+            out.put("failures", failures);
+            out.put("consecutiveFailures", consecutiveFailures);
+            out.put("timeouts", timeouts);
+            out.put("rejected", rejected);
+            out.put("lastDurationMs", lastDurationMs);
+            out.put("lastSuccessAt", lastSuccessAt);
+            out.put("lastFailureAt", lastFailureAt);
+            if (lastError != null) out.put("lastError", lastError);
+            out.put("timeoutMs", collector.timeout().toMillis());
+            out.put("maxAgeSeconds", collector.maxAge().toSeconds());
+            out.put("refreshSeconds", collector.refreshInterval().toSeconds());
+            Map<String, Object> details = collector.details();
+            if (!details.isEmpty()) out.put("details", details);
+            return out;
+        }
+    }
+}
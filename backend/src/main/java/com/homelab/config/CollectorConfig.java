@@ -0,0 +1,24 @@
+package com.homelab.config;
+
+import com.homelab.collect.Collector;
+import com.homelab.service.AgentService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Collectors that are not beans themselves: one per agent, both backed by {@link AgentService}. Services with a
+ * single source implement {@link Collector} directly.
+ */
+@Configuration
+public class CollectorConfig {
+
+    @Bean
+    public Collector serverStatsCollector(AgentService agents) {
+        return agents.serverStats();
+    }
+
+    @Bean
+    public Collector desktopStatsCollector(AgentService agents) {
+        return agents.desktopStats();
+    }
+}
@@ -3,14 +3,28 @@ package com.homelab.config;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 @Component
 @ConfigurationProperties(prefix = "homelab")
 public class HomelabProperties {
 
     private String serverAgentUrl;
     private String desktopAgentUrl;
+    private String dataDir = "data";
     private Unifi unifi = new Unifi();
     private Govee govee = new Govee();
+    private Persistence persistence = new Persistence();
+    private Agents agents = new Agents();
+    private Jfr jfr = new Jfr();
+    private Cluster cluster = new Cluster();
+    private Probe probe = new Probe();
+    private Neighbors neighbors = new Neighbors();
+    private RateLimit rateLimit = new RateLimit();
+    private Audit audit = new Audit();
 
     public String getServerAgentUrl() {
         return serverAgentUrl;
@@ -28,6 +42,14 @@ public class HomelabProperties {
         this.desktopAgentUrl = desktopAgentUrl;
     }
 
+    public String getDataDir() {
+        return dataDir;
+    }
+
+    public void setDataDir(String dataDir) {
+        this.dataDir = dataDir;
+    }
+
     public Unifi getUnifi() {
         return unifi;
     }
@@ -44,10 +66,529 @@ public class HomelabProperties {
         this.govee = govee;
     }
 
+    public Persistence getPersistence() {
+        return persistence;
+    }
+
+    public void setPersistence(Persistence persistence) {
+        this.persistence = persistence;
+    }
+
+    public Agents getAgents() {
+        return agents;
+    }
+
+    public void setAgents(Agents agents) {
+        this.agents = agents;
+    }
+
+    public Jfr getJfr() {
+        return jfr;
+    }
+
+    public void setJfr(Jfr jfr) {
+        this.jfr = jfr;
+    }
+
+    public Cluster getCluster() {
+        return cluster;
+    }
+
+    public void setCluster(Cluster cluster) {
+        this.cluster = cluster;
+    }
+
+    public Probe getProbe() {
+        return probe;
+    }
+
+    public void setProbe(Probe probe) {
+        this.probe = probe;
+    }
+
+    public Neighbors getNeighbors() {
+        return neighbors;
+    }
+
+    public void setNeighbors(Neighbors neighbors) {
+        this.neighbors = neighbors;
+    }
+
+    public RateLimit getRateLimit() {
+        return rateLimit;
+    }
+
+    public void setRateLimit(RateLimit rateLimit) {
+        this.rateLimit = rateLimit;
+    }
+
+    public Audit getAudit() {
+        return audit;
+    }
+
+    public void setAudit(Audit audit) {
+        this.audit = audit;
+    }
+
+    /** Wire format for polling the Python agents; both fall back to plain JSON with agents that don't support them. */
+    public static class Agents {
+        private boolean cbor = true;
+        private boolean delta = true;
+        private int securityRefreshSeconds = 60;
+
+        public boolean isCbor() {
+            return cbor;
+        }
+
+        public void setCbor(boolean cbor) {
+            this.cbor = cbor;
+        }
+
+        public boolean isDelta() {
+            return delta;
+        }
+
+        public void setDelta(boolean delta) {
+            this.delta = delta;
+        }
+
+        public int getSecurityRefreshSeconds() {
+            return securityRefreshSeconds;
+        }
+
+        public void setSecurityRefreshSeconds(int securityRefreshSeconds) {
+            this.securityRefreshSeconds = securityRefreshSeconds;
+        }
+    }
+
+    /**
+     * Several backend instances: one elected leader polls the upstreams and replicates its snapshots to the others
+     * over TCP ({@code peers} are the other instances' {@code host:port}).
+     */
+    public static class Cluster {
+        private boolean enabled;
+        private String nodeId;
+        private String bindHost = "0.0.0.0";
+        private int port = 7946;
+        private List<String> peers = new ArrayList<>();
+        private String secret = "";
+        private long heartbeatMs = 1000;
+        private long failoverMs = 4000;
+        private int pollIntervalSeconds = 10;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getNodeId() {
+            return nodeId;
+        }
+
+        public void setNodeId(String nodeId) {
+            this.nodeId = nodeId;
+        }
+
+        public String getBindHost() {
+            return bindHost;
+        }
+
+        public void setBindHost(String bindHost) {
+            this.bindHost = bindHost;
+        }
+
+        public int getPort() {
+            return port;
+        }
+
+        public void setPort(int port) {
+            this.port = port;
+        }
+
+        public List<String> getPeers() {
+            return peers;
+        }
+
+        public void setPeers(List<String> peers) {
+            this.peers = peers;
+        }
+
+        public String getSecret() {
+            return secret;
+        }
+
+        public void setSecret(String secret) {
+            this.secret = secret;
+        }
+
+        public long getHeartbeatMs() {
+            return heartbeatMs;
+        }
+
+        public void setHeartbeatMs(long heartbeatMs) {
+            this.heartbeatMs = heartbeatMs;
+        }
+
+        public long getFailoverMs() {
+            return failoverMs;
+        }
+
+        public void setFailoverMs(long failoverMs) {
+            this.failoverMs = failoverMs;
+        }
+
+        public int getPollIntervalSeconds() {
+            return pollIntervalSeconds;
+        }
+
+        public void setPollIntervalSeconds(int pollIntervalSeconds) {
+            this.pollIntervalSeconds = pollIntervalSeconds;
+        }
+    }
+
+    /** In-process Flight Recorder recording with the upstream-call and API-request events, see /api/jfr. */
+    public static class Jfr {
+        private boolean startOnBoot;
+        private String settings = "default";
+        private int maxAgeMinutes = 60;
+        private int maxSizeMb = 64;
+        private long thresholdMs;
+        private int keepDumps = 10;
+
+        public boolean isStartOnBoot() {
+            return startOnBoot;
+        }
+
+        public void setStartOnBoot(boolean startOnBoot) {
+            this.startOnBoot = startOnBoot;
+        }
+
+        public String getSettings() {
+            return settings;
+        }
+
+        public void setSettings(String settings) {
+            this.settings = settings;
+        }
+
+        public int getMaxAgeMinutes() {
+            return maxAgeMinutes;
+        }
+
+        public void setMaxAgeMinutes(int maxAgeMinutes) {
+            this.maxAgeMinutes = maxAgeMinutes;
+        }
+
+        public int getMaxSizeMb() {
+            return maxSizeMb;
+        }
+
+        public void setMaxSizeMb(int maxSizeMb) {
+            this.maxSizeMb = maxSizeMb;
+        }
+
+        public long getThresholdMs() {
+            return thresholdMs;
+        }
+
+        public void setThresholdMs(long thresholdMs) {
+            this.thresholdMs = thresholdMs;
+        }
+
+        public int getKeepDumps() {
+            return keepDumps;
+        }
+
+        public void setKeepDumps(int keepDumps) {
+            this.keepDumps = keepDumps;
+        }
+    }
+
+    /** Reachability sweep over every device IP the sources report; a host is up if any of {@code ports} answers. */
+    public static class Probe {
+        private boolean enabled;
+        private int intervalSeconds = 30;
+        private long timeoutMs = 1000;
+        private int maxSockets = 1024;
+        private boolean icmp = true;
+        private List<Integer> ports = new ArrayList<>(List.of(80, 443, 22, 53, 445, 8080, 62078));
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getIntervalSeconds() {
+            return intervalSeconds;
+        }
+
+        public void setIntervalSeconds(int intervalSeconds) {
+            this.intervalSeconds = intervalSeconds;
+        }
+
+        public long getTimeoutMs() {
+            return timeoutMs;
+        }
+
+        public void setTimeoutMs(long timeoutMs) {
+            this.timeoutMs = timeoutMs;
+        }
+
+        public int getMaxSockets() {
+            return maxSockets;
+        }
+
+        public void setMaxSockets(int maxSockets) {
+            this.maxSockets = maxSockets;
+        }
+
+        public boolean isIcmp() {
+            return icmp;
+        }
+
+        public void setIcmp(boolean icmp) {
+            this.icmp = icmp;
+        }
+
+        public List<Integer> getPorts() {
+            return ports;
+        }
+
+        public void setPorts(List<Integer> ports) {
+            this.ports = ports;
+        }
+    }
+
+    /** Log of device control commands in {@code <data-dir>/audit}, written in batches off the request path. */
+    public static class Audit {
+        private boolean enabled = true;
+        private long flushIntervalMs = 1000;
+        private int segmentBytes = 4 * 1024 * 1024;
+        private int maxSegments = 16;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getFlushIntervalMs() {
+            return flushIntervalMs;
+        }
+
+        public void setFlushIntervalMs(long flushIntervalMs) {
+            this.flushIntervalMs = flushIntervalMs;
+        }
+
+        public int getSegmentBytes() {
+            return segmentBytes;
+        }
+
+        public void setSegmentBytes(int segmentBytes) {
+            this.segmentBytes = segmentBytes;
+        }
+
+        public int getMaxSegments() {
+            return maxSegments;
+        }
+
+        public void setMaxSegments(int maxSegments) {
+            this.maxSegments = maxSegments;
+        }
+    }
+
+    /**
+     * Token buckets per client IP and endpoint for {@code /api}: reads that would call an upstream, and every
+     * non-GET request (control commands). Reads answered from a snapshot are not counted.
+     */
+    public static class RateLimit {
+        private boolean enabled = true;
+        private double readPerSecond = 2;
+        private int readBurst = 20;
+        private double writePerSecond = 5;
+        private int writeBurst = 20;
+        private boolean trustForwardedFor = false;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public double getReadPerSecond() {
+            return readPerSecond;
+        }
+
+        public void setReadPerSecond(double readPerSecond) {
+            this.readPerSecond = readPerSecond;
+        }
+
+        public int getReadBurst() {
+            return readBurst;
+        }
+
+        public void setReadBurst(int readBurst) {
+            this.readBurst = readBurst;
+        }
+
+        public double getWritePerSecond() {
+            return writePerSecond;
+        }
+
+        public void setWritePerSecond(double writePerSecond) {
+            this.writePerSecond = writePerSecond;
+        }
+
+        public int getWriteBurst() {
+            return writeBurst;
+        }
+
+        public void setWriteBurst(int writeBurst) {
+            this.writeBurst = writeBurst;
+        }
+
+        public boolean isTrustForwardedFor() {
+            return trustForwardedFor;
+        }
+
+        public void setTrustForwardedFor(boolean trustForwardedFor) {
+            this.trustForwardedFor = trustForwardedFor;
+        }
+    }
+
+    /** Devices from the kernel's neighbor (ARP) table, with reverse-DNS names; works without UniFi. */
+    public static class Neighbors {
+        private boolean enabled = true;
+        private boolean fallback = true;
+        private String arpFile = "/proc/net/arp";
+        private int refreshSeconds = 15;
+        private boolean resolveHostnames = true;
+        private long resolveTimeoutMs = 300;
+        private int dnsCacheSize = 1024;
+        private int dnsTtlSeconds = 600;
+        private int dnsThreads = 8;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public boolean isFallback() {
+            return fallback;
+        }
+
+        public void setFallback(boolean fallback) {
+            this.fallback = fallback;
+        }
+
+        public String getArpFile() {
+            return arpFile;
+        }
+
+        public void setArpFile(String arpFile) {
+            this.arpFile = arpFile;
+        }
+
+        public int getRefreshSeconds() {
+            return refreshSeconds;
+        }
+
+        public void setRefreshSeconds(int refreshSeconds) {
+            this.refreshSeconds = refreshSeconds;
+        }
+
+        public boolean isResolveHostnames() {
+            return resolveHostnames;
+        }
+
+        public void setResolveHostnames(boolean resolveHostnames) {
+            this.resolveHostnames = resolveHostnames;
+        }
+
+        public long getResolveTimeoutMs() {
+            return resolveTimeoutMs;
+        }
+
+        public void setResolveTimeoutMs(long resolveTimeoutMs) {
+            this.resolveTimeoutMs = resolveTimeoutMs;
+        }
+
+        public int getDnsCacheSize() {
+            return dnsCacheSize;
+        }
+
+        public void setDnsCacheSize(int dnsCacheSize) {
+            this.dnsCacheSize = dnsCacheSize;
+        }
+
+        public int getDnsTtlSeconds() {
+            return dnsTtlSeconds;
+        }
+
+        public void setDnsTtlSeconds(int dnsTtlSeconds) {
+            this.dnsTtlSeconds = dnsTtlSeconds;
+        }
+
+        public int getDnsThreads() {
+            return dnsThreads;
+        }
+
+        public void setDnsThreads(int dnsThreads) {
+            this.dnsThreads = dnsThreads;
+        }
+    }
+
+    public static class Persistence {
+        private boolean enabled = true;
+        private long flushDelayMs = 5000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getFlushDelayMs() {
+            return flushDelayMs;
+        }
+
+        public void setFlushDelayMs(long flushDelayMs) {
+            this.flushDelayMs = flushDelayMs;
+        }
+    }
+
     public static class Govee {
         private boolean enabled;
         private String apiKey;
         private boolean lanDiscoveryEnabled = true;
+        private List<String> lanInterfaces = new ArrayList<>();
+        private Map<String, List<String>> groups = new LinkedHashMap<>();
+        private long batchTimeoutMs = 5000;
+        /** Start the other device-list endpoint if the preferred one has not answered after this long; negative waits for it to fail. */
+        private long cloudHedgeDelayMs = 1000;
+        /** Longest a device-list refresh waits for any endpoint; the previous list is kept after that. */
+        private long cloudTimeoutMs = 3000;
+        private String openApiBaseUrl = "https://openapi.api.govee.com";
+        private String legacyBaseUrl = "https://developer-api.govee.com";
+        private int dailyQuota = 10000;
+        private int controlReserve = 1000;
+        private int minCloudRefreshSeconds = 10;
+        private int maxCloudRefreshSeconds = 3600;
 
         public boolean isEnabled() {
             return enabled;
@@ -72,6 +613,94 @@ public class HomelabProperties {
         public void setLanDiscoveryEnabled(boolean lanDiscoveryEnabled) {
             this.lanDiscoveryEnabled = lanDiscoveryEnabled;
         }
+
+        public List<String> getLanInterfaces() {
+            return lanInterfaces;
+        }
+
+        public void setLanInterfaces(List<String> lanInterfaces) {
+            this.lanInterfaces = lanInterfaces;
+        }
+
+        public Map<String, List<String>> getGroups() {
+            return groups;
+        }
+
+        public void setGroups(Map<String, List<String>> groups) {
+            this.groups = groups;
+        }
+
+        public long getBatchTimeoutMs() {
+            return batchTimeoutMs;
+        }
+
+        public void setBatchTimeoutMs(long batchTimeoutMs) {
+            this.batchTimeoutMs = batchTimeoutMs;
+        }
+
+        public long getCloudHedgeDelayMs() {
+            return cloudHedgeDelayMs;
+        }
+
+        public void setCloudHedgeDelayMs(long cloudHedgeDelayMs) {
+            this.cloudHedgeDelayMs = cloudHedgeDelayMs;
+        }
+
+        public long getCloudTimeoutMs() {
+            return cloudTimeoutMs;
+        }
+
+        public void setCloudTimeoutMs(long cloudTimeoutMs) {
+            this.cloudTimeoutMs = cloudTimeoutMs;
+        }
+
+        public String getOpenApiBaseUrl() {
+            return openApiBaseUrl;
+        }
+
+        public void setOpenApiBaseUrl(String openApiBaseUrl) {
+            this.openApiBaseUrl = openApiBaseUrl;
+        }
+
+        public String getLegacyBaseUrl() {
+            return legacyBaseUrl;
+        }
+
+        public void setLegacyBaseUrl(String legacyBaseUrl) {
+            this.legacyBaseUrl = legacyBaseUrl;
+        }
+
+        public int getDailyQuota() {
+            return dailyQuota;
+        }
+
+        public void setDailyQuota(int dailyQuota) {
+            this.dailyQuota = dailyQuota;
+        }
+
+        public int getControlReserve() {
+            return controlReserve;
+        }
+
+        public void setControlReserve(int controlReserve) {
+            this.controlReserve = controlReserve;
+        }
+
+        public int getMinCloudRefreshSeconds() {
+            return minCloudRefreshSeconds;
+        }
+
+        public void setMinCloudRefreshSeconds(int minCloudRefreshSeconds) {
+            this.minCloudRefreshSeconds = minCloudRefreshSeconds;
+        }
+
+        public int getMaxCloudRefreshSeconds() {
+            return maxCloudRefreshSeconds;
+        }
+
+        public void setMaxCloudRefreshSeconds(int maxCloudRefreshSeconds) {
+            this.maxCloudRefreshSeconds = maxCloudRefreshSeconds;
+        }
     }
 
     public static class Unifi {
@@ -80,6 +709,15 @@ public class HomelabProperties {
         private String username;
         private String password;
         private boolean useUnifiOs;
+        private List<String> sites = new ArrayList<>(List.of("default"));
+        private List<Controller> controllers = new ArrayList<>();
+        private long siteTimeoutMs = 4000;
+        /** Session lifetime when the login response does not say when the cookie expires. */
+        private long sessionTtlSeconds = 24 * 60 * 60;
+        /** Log in again in the background this long before the session expires. */
+        private long renewBeforeSeconds = 300;
+        /** After a failed login, fail fast for this long instead of trying again (controllers lock out repeated failures). */
+        private long loginRetrySeconds = 30;
 
         public boolean isEnabled() {
             return enabled;
@@ -120,5 +758,111 @@ public class HomelabProperties {
         public void setUseUnifiOs(boolean useUnifiOs) {
             this.useUnifiOs = useUnifiOs;
         }
+
+        public List<String> getSites() {
+            return sites;
+        }
+
+        public void setSites(List<String> sites) {
+            this.sites = sites;
+        }
+
+        public List<Controller> getControllers() {
+            return controllers;
+        }
+
+        public void setControllers(List<Controller> controllers) {
+            this.controllers = controllers;
+        }
+
+        public long getSiteTimeoutMs() {
+            return siteTimeoutMs;
+        }
+
+        public void setSiteTimeoutMs(long siteTimeoutMs) {
+            this.siteTimeoutMs = siteTimeoutMs;
+        }
+
+        public long getSessionTtlSeconds() {
+            return sessionTtlSeconds;
+        }
+
+        public void setSessionTtlSeconds(long sessionTtlSeconds) {
+            this.sessionTtlSeconds = sessionTtlSeconds;
+        }
+
+        public long getRenewBeforeSeconds() {
+            return renewBeforeSeconds;
+        }
+
+        public void setRenewBeforeSeconds(long renewBeforeSeconds) {
+            this.renewBeforeSeconds = renewBeforeSeconds;
+        }
+
+        public long getLoginRetrySeconds() {
+            return loginRetrySeconds;
+        }
+
+        public void setLoginRetrySeconds(long loginRetrySeconds) {
+            this.loginRetrySeconds = loginRetrySeconds;
+        }
+    }
+
+    /** One UniFi controller and the sites to poll on it. When none are listed, the single-controller fields of {@link Unifi} are used. */
+    public static class Controller {
+        private String name;
+        private String baseUrl;
+        private String username;
+        private String password;
+        private boolean useUnifiOs;
+        private List<String> sites = new ArrayList<>(List.of("default"));
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getBaseUrl() {
+            return baseUrl;
+        }
+
+        public void setBaseUrl(String baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+
+        public boolean isUseUnifiOs() {
+            return useUnifiOs;
+        }
+
+        public void setUseUnifiOs(boolean useUnifiOs) {
+            this.useUnifiOs = useUnifiOs;
+        }
+
+        public List<String> getSites() {
+            return sites;
+        }
+
+        public void setSites(List<String> sites) {
+            this.sites = sites;
+        }
     }
 }
@@ -0,0 +1,56 @@
+package com.homelab.config;
+
+import com.homelab.web.SendfileResourceHttpMessageConverter;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.handler.AbstractUrlHandlerMapping;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
+import org.springframework.web.servlet.resource.ResourceHttpRequestHandler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dashboard static files. The build ({@code AssetBundler}) emits content-hashed {@code /assets/app.<hash>.css|js}
+ * plus {@code .gz}/{@code .br} variants; those are served precompressed (picked by {@code Accept-Encoding}) with
+ * a one-year immutable {@code Cache-Control}, so wall tablets only re-download them when the content changes.
+ * {@code index.html} is also served precompressed but revalidated on every load, since it names the current hashes.
+ */
+@Configuration
+public class StaticResourceConfig implements WebMvcConfigurer {
+
+    @Override
+    public void addResourceHandlers(ResourceHandlerRegistry registry) {
+        registry.addResourceHandler("/assets/**")
+                .addResourceLocations("classpath:/static/assets/")
+                .setCacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable())
+                .resourceChain(true)
+                .addResolver(new EncodedResourceResolver());
+        registry.addResourceHandler("/**")
+                .addResourceLocations("classpath:/static/")
+                .setCacheControl(CacheControl.noCache())
+                .resourceChain(true)
+                .addResolver(new EncodedResourceResolver());
+    }
+
+    /** Give every resource handler the sendfile-aware converter once the resource handler mapping is built. */
+    @Bean
+    static BeanPostProcessor sendfileResourceConverter() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if ("resourceHandlerMapping".equals(beanName) && bean instanceof AbstractUrlHandlerMapping mapping) {
+                    for (Object handler : mapping.getHandlerMap().values()) {
+                        if (handler instanceof ResourceHttpRequestHandler resources) {
+                            resources.setResourceHttpMessageConverter(new SendfileResourceHttpMessageConverter());
+                        }
+                    }
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,27 @@
+package com.homelab.controller;
+
+import com.homelab.service.AgentService;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api")
+public class AgentWireController {
+
+    private final AgentService agentService;
+
+    public AgentWireController(AgentService agentService) {
+        this.agentService = agentService;
+    }
+
+    /**
+     * Bytes on the wire and decode time per agent poll, split by encoding (CBOR/JSON) and full vs delta payloads.
+     */
+    @GetMapping("/agents/wire-stats")
+    public Map<String, Object> getWireStats() {
+        return agentService.wireStats();
+    }
+}
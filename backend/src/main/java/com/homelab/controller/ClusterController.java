@@ -0,0 +1,25 @@
+package com.homelab.controller;
+
+import com.homelab.cluster.ClusterNode;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api")
+public class ClusterController {
+
+    private final ClusterNode cluster;
+
+    public ClusterController(ClusterNode cluster) {
+        this.cluster = cluster;
+    }
+
+    /** This node's role, the current leader, peer connections and when each member last sent a heartbeat. */
+    @GetMapping("/cluster")
+    public Map<String, Object> status() {
+        return cluster.status();
+    }
+}
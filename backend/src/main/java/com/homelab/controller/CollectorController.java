@@ -0,0 +1,25 @@
+package com.homelab.controller;
+
+import com.homelab.collect.CollectorRegistry;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api")
+public class CollectorController {
+
+    private final CollectorRegistry collectors;
+
+    public CollectorController(CollectorRegistry collectors) {
+        this.collectors = collectors;
+    }
+
+    /** Per data source: whether it is collecting, healthy or failing, its last error and timing, and its schedule. */
+    @GetMapping("/collectors")
+    public Map<String, Object> health() {
+        return collectors.health();
+    }
+}
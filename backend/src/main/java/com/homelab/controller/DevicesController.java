@@ -1,31 +1,67 @@
 package com.homelab.controller;
 
-import com.homelab.service.UnifiService;
+import com.homelab.collect.CollectorRegistry;
+import com.homelab.config.HomelabProperties;
+import com.homelab.store.DeviceDeltas;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.function.Function;
 
 @RestController
 @RequestMapping("/api")
 public class DevicesController {
 
-    private final UnifiService unifiService;
+    private static final Function<Map<String, Object>, String> BY_MAC =
+            d -> d.get("mac") instanceof String mac && !mac.isEmpty() ? mac : d.get("ip") + "/" + d.get("name");
 
-    public DevicesController(UnifiService unifiService) {
-        this.unifiService = unifiService;
+    private final CollectorRegistry collectors;
+    private final DeviceDeltas deltas;
+    private final HomelabProperties properties;
+
+    public DevicesController(CollectorRegistry collectors, DeviceDeltas deltas, HomelabProperties properties) {
+        this.collectors = collectors;
+        this.deltas = deltas;
+        this.properties = properties;
     }
 
+    /**
+     * UniFi clients. With {@code since} (a {@code version} from an earlier response) only what changed since then,
+     * see {@link DeviceDeltas}. Clients are keyed by MAC. Without UniFi data the kernel neighbor table is used
+     * instead ({@code source: "neighbors"}) unless {@code homelab.neighbors.fallback} is off.
+     */
     @GetMapping("/devices")
-    public Map<String, Object> getDevices() {
-        Map<String, Object> real = unifiService.getDevices();
+    public Map<String, Object> getDevices(@RequestParam(required = false) Long since) {
+        Map<String, Object> real = collectors.get("unifi");
         if (real != null) {
-            return real;
+            return deltas.respond("unifi", real, since, BY_MAC);
+        }
+        Map<String, Object> neighbors = properties.getNeighbors().isFallback() ? collectors.get("neighbors") : null;
+        if (neighbors != null) {
+            Map<String, Object> out = new LinkedHashMap<>(neighbors);
+            out.put("source", "neighbors");
+            return deltas.respond("neighbors", out, since, BY_MAC);
         }
         return Map.of(
                 "error", true,
                 "message", "UniFi unreachable. Enable UniFi in config and check base URL and credentials."
         );
     }
+
+    /** Hosts in this machine's neighbor (ARP) table, shaped like {@code /api/devices}; {@code since} as there. */
+    @GetMapping("/neighbor-devices")
+    public Map<String, Object> getNeighborDevices(@RequestParam(required = false) Long since) {
+        Map<String, Object> neighbors = collectors.get("neighbors");
+        if (neighbors != null) {
+            return deltas.respond("neighbors", neighbors, since, BY_MAC);
+        }
+        return Map.of(
+                "error", true,
+                "message", "Neighbor table unavailable. Set homelab.neighbors.enabled=true; needs Linux (/proc/net/arp)."
+        );
+    }
 }
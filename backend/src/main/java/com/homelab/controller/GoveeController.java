@@ -1,8 +1,19 @@
 package com.homelab.controller;
 
+import com.homelab.collect.CollectorRegistry;
+import com.homelab.config.HomelabProperties;
+import com.homelab.service.GoveeQuotaTracker;
 import com.homelab.service.GoveeService;
+import com.homelab.store.ControlAuditLog;
+import com.homelab.store.DeviceDeltas;
+import com.homelab.web.AdmissionFilter;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -10,16 +21,32 @@ import java.util.Map;
 public class GoveeController {
 
     private final GoveeService goveeService;
+    private final CollectorRegistry collectors;
+    private final GoveeQuotaTracker quota;
+    private final HomelabProperties properties;
+    private final DeviceDeltas deltas;
+    private final ControlAuditLog audit;
 
-    public GoveeController(GoveeService goveeService) {
+    public GoveeController(GoveeService goveeService, CollectorRegistry collectors, GoveeQuotaTracker quota,
+                           HomelabProperties properties, DeviceDeltas deltas, ControlAuditLog audit) {
         this.goveeService = goveeService;
+        this.collectors = collectors;
+        this.quota = quota;
+        this.properties = properties;
+        this.deltas = deltas;
+        this.audit = audit;
     }
 
+    /** Cloud and LAN devices; {@code since} as for {@code /api/devices}. Devices are keyed by device id. */
     @GetMapping("/govee-devices")
-    public Map<String, Object> getGoveeDevices() {
-        Map<String, Object> result = goveeService.getDevices();
+    public Map<String, Object> getGoveeDevices(@RequestParam(required = false) Long since) {
+        Map<String, Object> result = collectors.get("govee");
         if (result != null) {
-            return result;
+            return deltas.respond("govee", result, since,
+                    d -> d.get("device") instanceof String id && !id.isBlank() ? id : d.get("model") + "/" + d.get("name"));
+        }
+        if (properties.getGovee().isEnabled()) {
+            return Map.of("error", true, "message", "Govee discovery has not finished yet. Try again in a few seconds.");
         }
         return Map.of(
                 "error", true,
@@ -27,13 +54,22 @@ public class GoveeController {
         );
     }
 
+    /**
+     * Cloud API budget: calls used today per endpoint, remaining daily/per-minute quota, and the current
+     * device-list refresh interval derived from them.
+     */
+    @GetMapping("/govee-devices/budget")
+    public Map<String, Object> getBudget() {
+        return quota.snapshot();
+    }
+
     /**
      * Control a Govee device (Control You Device API).
      * Body: { "device": "mac", "model": "H6089", "cmd": { "name": "turn", "value": "on" } }
-     * turn: "on" | "off"; brightness: 0-100; color: { r, g, b }; colorTem: 2000-9000
+     * turn: "on" | "off"; brightness: 1-100; color: { r, g, b }; colorTem: 2000-9000
      */
     @PostMapping("/govee-devices/control")
-    public Map<String, Object> control(@RequestBody Map<String, Object> body) {
+    public Map<String, Object> control(@RequestBody Map<String, Object> body, HttpServletRequest request) {
         String device = (String) body.get("device");
         String model = (String) body.get("model");
         Object cmd = body.get("cmd");
@@ -47,10 +83,102 @@ public class GoveeController {
         if (name == null) {
             return Map.of("error", true, "message", "Missing cmd.name");
         }
+        long start = System.nanoTime();
         Map<String, Object> result = goveeService.control(device, model, name, value);
-        if (Boolean.TRUE.equals(result.get("success"))) {
+        boolean success = Boolean.TRUE.equals(result.get("success"));
+        audit.record(new ControlAuditLog.Entry(System.currentTimeMillis(), clientIp(request), device, model, name,
+                value != null ? String.valueOf(value) : null, "cloud", success,
+                (int) ((System.nanoTime() - start) / 1_000_000), string(result.get("message"))));
+        if (success) {
             return Map.of("success", true);
         }
         return Map.of("error", true, "message", result.get("message") != null ? result.get("message") : "Control failed");
     }
+
+    /**
+     * Control several devices at once, over LAN where discovered and the cloud API otherwise, all in parallel.
+     * Body: { "group": "living-room", "cmd": { "name": "turn", "value": "off" } } for a group from
+     * homelab.govee.groups, or { "commands": [ { "device", "model", "cmd": { "name", "value" } }, ... ] }.
+     * Optional "timeoutMs" (default homelab.govee.batch-timeout-ms) bounds the whole batch.
+     * Returns { success, elapsedMs, results: [ { device, via: lan|cloud, success, message?, elapsedMs } ] }.
+     */
+    @PostMapping("/govee-devices/batch")
+    public Map<String, Object> controlBatch(@RequestBody Map<String, Object> body, HttpServletRequest request) {
+        List<Map<String, Object>> commands;
+        if (body.get("group") instanceof String group) {
+            if (!(body.get("cmd") instanceof Map<?, ?> cmd) || !(cmd.get("name") instanceof String name)) {
+                return Map.of("error", true, "message", "Missing cmd.name");
+            }
+            commands = goveeService.groupCommands(group, name, cmd.get("value"));
+            if (commands == null) {
+                return Map.of("error", true, "message", "Unknown group: " + group);
+            }
+        } else if (body.get("commands") instanceof List<?> list) {
+            commands = new ArrayList<>();
+            for (Object o : list) {
+                if (!(o instanceof Map<?, ?> c) || !(c.get("device") instanceof String device)
+                        || !(c.get("cmd") instanceof Map<?, ?> cmd) || !(cmd.get("name") instanceof String name)) {
+                    return Map.of("error", true, "message", "Each command needs device and cmd.name");
+                }
+                Map<String, Object> command = new HashMap<>();
+                command.put("device", device);
+                command.put("model", c.get("model"));
+                command.put("name", name);
+                command.put("value", cmd.get("value"));
+                commands.add(command);
+            }
+        } else {
+            return Map.of("error", true, "message", "Missing group or commands");
+        }
+        if (commands.isEmpty()) {
+            return Map.of("error", true, "message", "No devices to control");
+        }
+        long timeoutMs = body.get("timeoutMs") instanceof Number n ? n.longValue() : properties.getGovee().getBatchTimeoutMs();
+        Map<String, Object> out = goveeService.controlBatch(commands, timeoutMs);
+        if (out.get("results") instanceof List<?> results) {
+            String client = clientIp(request);
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < results.size() && i < commands.size(); i++) {
+                if (!(results.get(i) instanceof Map<?, ?> r)) continue;
+                Map<String, Object> c = commands.get(i);
+                Object value = c.get("value");
+                audit.record(new ControlAuditLog.Entry(now, client, string(c.get("device")), string(c.get("model")),
+                        string(c.get("name")), value != null ? String.valueOf(value) : null, String.valueOf(r.get("via")),
+                        Boolean.TRUE.equals(r.get("success")), r.get("elapsedMs") instanceof Number ms ? ms.intValue() : 0,
+                        r.get("message") != null ? String.valueOf(r.get("message")) : null));
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Control commands sent through this instance, newest first: {@code device} to filter by one device, [from, to)
+     * in epoch ms (default the last 7 days), at most {@code limit}. Each entry has client, device, model, command,
+     * value, via (cloud or lan), success, latencyMs and the error message if it failed.
+     */
+    @GetMapping("/govee-devices/audit")
+    public Map<String, Object> getAudit(@RequestParam(required = false) String device,
+                                        @RequestParam(required = false) Long from,
+                                        @RequestParam(required = false) Long to,
+                                        @RequestParam(defaultValue = "500") int limit) {
+        long end = to != null ? to : System.currentTimeMillis() + 1;
+        long start = from != null ? from : end - 7 * 24 * 60 * 60 * 1000L;
+        List<Map<String, Object>> entries = audit.query(device, start, end, Math.max(1, Math.min(limit, 100_000)));
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("from", start);
+        out.put("to", end);
+        out.put("entries", entries);
+        out.put("total", entries.size());
+        out.put("log", audit.stats());
+        return out;
+    }
+
+    /** Command fields come straight from the request body; anything but a string is recorded as absent. */
+    private static String string(Object value) {
+        return value instanceof String s ? s : null;
+    }
+
+    private String clientIp(HttpServletRequest request) {
+        return AdmissionFilter.clientIp(request, properties.getRateLimit());
+    }
 }
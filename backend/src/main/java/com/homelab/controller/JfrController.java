@@ -0,0 +1,86 @@
+package com.homelab.controller;
+
+import com.homelab.trace.RecordingManager;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Flight Recorder control: start/stop the in-process recording, dump its current window, download dumps.
+ * Open a dump in JDK Mission Control or run {@code jfr print --events homelab.UpstreamCall <file>}.
+ */
+@RestController
+@RequestMapping("/api")
+public class JfrController {
+
+    private final RecordingManager recordings;
+
+    public JfrController(RecordingManager recordings) {
+        this.recordings = recordings;
+    }
+
+    @GetMapping("/jfr")
+    public Map<String, Object> status() {
+        return recordings.status();
+    }
+
+    /**
+     * Body (all optional): { "settings": "default" | "profile", "maxAgeMinutes": 60, "maxSizeMb": 64 }.
+     */
+    @PostMapping("/jfr/start")
+    public Map<String, Object> start(@RequestBody(required = false) Map<String, Object> body) {
+        Map<String, Object> b = body != null ? body : Map.of();
+        try {
+            return recordings.start(
+                    b.get("settings") instanceof String s ? s : null,
+                    b.get("maxAgeMinutes") instanceof Number n ? n.intValue() : null,
+                    b.get("maxSizeMb") instanceof Number n ? n.intValue() : null);
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            return Map.of("error", true, "message", e.getMessage());
+        }
+    }
+
+    /** Stops the recording after dumping it; the dump's file name is returned. */
+    @PostMapping("/jfr/stop")
+    public Map<String, Object> stop() {
+        try {
+            Path file = recordings.stop();
+            if (file == null) return Map.of("error", true, "message", "No recording running");
+            return Map.of("stopped", true, "file", file.getFileName().toString());
+        } catch (Exception e) {
+            return Map.of("error", true, "message", "Dump failed: " + e.getMessage());
+        }
+    }
+
+    @PostMapping("/jfr/dump")
+    public Map<String, Object> dump() {
+        try {
+            Path file = recordings.dump();
+            if (file == null) return Map.of("error", true, "message", "No recording running");
+            return Map.of("file", file.getFileName().toString());
+        } catch (Exception e) {
+            return Map.of("error", true, "message", "Dump failed: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/jfr/dumps/{name}")
+    public ResponseEntity<Resource> download(@PathVariable String name) {
+        Path file = recordings.dumpFile(name);
+        if (file == null) return ResponseEntity.notFound().build();
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getFileName() + "\"")
+                .body(new FileSystemResource(file));
+    }
+}
@@ -0,0 +1,29 @@
+package com.homelab.controller;
+
+import com.homelab.metrics.HomelabMetricsExporter;
+import com.homelab.metrics.OpenMetricsWriter;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+
+/**
+ * Prometheus scrape target for the homelab data itself (not the backend's own health). Served from the
+ * latest snapshots only; see {@link HomelabMetricsExporter}.
+ */
+@RestController
+public class MetricsController {
+
+    private final HomelabMetricsExporter exporter;
+
+    public MetricsController(HomelabMetricsExporter exporter) {
+        this.exporter = exporter;
+    }
+
+    @GetMapping("/metrics/homelab")
+    public void metrics(HttpServletResponse response) throws IOException {
+        response.setContentType(OpenMetricsWriter.CONTENT_TYPE);
+        exporter.write(response.getOutputStream());
+    }
+}
@@ -0,0 +1,32 @@
+package com.homelab.controller;
+
+import com.homelab.service.ProbeService;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api")
+public class ProbeController {
+
+    private final ProbeService probeService;
+
+    public ProbeController(ProbeService probeService) {
+        this.probeService = probeService;
+    }
+
+    /** Every known device with its reachability, RTT and when it was last seen up, plus the last sweep's stats. */
+    @GetMapping("/probe")
+    public Map<String, Object> getProbe() {
+        Map<String, Object> results = probeService.getResults();
+        if (results != null) {
+            return results;
+        }
+        return Map.of(
+                "error", true,
+                "message", "Probing is disabled. Set homelab.probe.enabled to true."
+        );
+    }
+}
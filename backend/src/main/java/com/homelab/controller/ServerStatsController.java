@@ -1,6 +1,6 @@
 package com.homelab.controller;
 
-import com.homelab.service.AgentService;
+import com.homelab.collect.CollectorRegistry;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -11,15 +11,15 @@ import java.util.Map;
 @RequestMapping("/api")
 public class ServerStatsController {
 
-    private final AgentService agentService;
+    private final CollectorRegistry collectors;
 
-    public ServerStatsController(AgentService agentService) {
-        this.agentService = agentService;
+    public ServerStatsController(CollectorRegistry collectors) {
+        this.collectors = collectors;
     }
 
     @GetMapping("/server-stats")
     public Map<String, Object> getServerStats() {
-        Map<String, Object> real = agentService.getServerStats();
+        Map<String, Object> real = collectors.get("server-stats");
         if (real != null && !real.containsKey("error")) {
             return real;
         }
@@ -1,31 +1,125 @@
 package com.homelab.controller;
 
+import com.homelab.collect.CollectorRegistry;
 import com.homelab.service.SpeedTestService;
+import com.homelab.store.SpeedTestHistory;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.util.List;
 import java.util.Map;
 
 @RestController
 @RequestMapping("/api")
 public class SpeedTestController {
 
-    private final SpeedTestService speedTestService;
+    private static final long DAY_MS = 24 * 60 * 60 * 1000L;
+    private static final long STREAM_TIMEOUT_MS = 5 * 60 * 1000L; // both CLI attempts at their 120s limit, plus slack
+    private static final String UNAVAILABLE = "Speed test unavailable. Install Ookla Speedtest CLI (speedtest -f json) on the server.";
 
-    public SpeedTestController(SpeedTestService speedTestService) {
-        this.speedTestService = speedTestService;
+    private final CollectorRegistry collectors;
+    private final SpeedTestService speedTest;
+    private final SpeedTestHistory history;
+
+    public SpeedTestController(CollectorRegistry collectors, SpeedTestService speedTest, SpeedTestHistory history) {
+        this.collectors = collectors;
+        this.speedTest = speedTest;
+        this.history = history;
     }
 
     @GetMapping("/speed-test")
     public Map<String, Object> getSpeedTest() {
-        Map<String, Object> result = speedTestService.getSpeedTest();
+        Map<String, Object> result = collectors.get("speedtest");
         if (result != null) {
             return result;
         }
         return Map.of(
                 "error", true,
-                "message", "Speed test unavailable. Install Ookla Speedtest CLI (speedtest -f json) on the server."
+                "message", UNAVAILABLE
         );
     }
+
+    /**
+     * Server-sent events of a speed test: {@code progress} (phase, progress, ping/download/upload so far) while it
+     * runs, then one {@code result} or {@code failed}, after which the stream ends. Starts a run unless the last
+     * result is still fresh, in which case that result is sent straight away. Everyone connected during a run
+     * shares it.
+     */
+    @GetMapping(path = "/speed-test/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream() {
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MS);
+        StreamListener listener = new StreamListener(emitter);
+        emitter.onCompletion(() -> speedTest.unsubscribe(listener));
+        emitter.onTimeout(() -> speedTest.unsubscribe(listener));
+        emitter.onError(e -> speedTest.unsubscribe(listener));
+        speedTest.subscribe(listener);
+        if (!collectors.refresh("speedtest")) {
+            // Fresh result, follower, or no CLI: nothing will run for this stream
+            Map<String, Object> result = collectors.get("speedtest");
+            if (result != null) listener.onEvent("result", result);
+            else listener.onEvent("failed", Map.of("error", true, "message", UNAVAILABLE));
+        }
+        return emitter;
+    }
+
+    /**
+     * Past runs in [from, to) (epoch ms). Defaults to the last 7 days; at most {@code limit} newest runs.
+     */
+    @GetMapping("/speed-test/history")
+    public Map<String, Object> getHistory(@RequestParam(required = false) Long from,
+                                          @RequestParam(required = false) Long to,
+                                          @RequestParam(defaultValue = "1000") int limit) {
+        long end = to != null ? to : System.currentTimeMillis();
+        long start = from != null ? from : end - 7 * DAY_MS;
+        List<Map<String, Object>> runs = history.range(start, end, Math.max(1, Math.min(limit, 100_000)));
+        return Map.of(
+                "from", start,
+                "to", end,
+                "runs", runs,
+                "total", runs.size()
+        );
+    }
+
+    /**
+     * p5/p50/p95 of download, upload and ping in [from, to) (epoch ms), grouped by hour-of-day or day.
+     * Defaults to the last 30 days grouped by hour.
+     */
+    @GetMapping("/speed-test/history/aggregate")
+    public Map<String, Object> getHistoryAggregate(@RequestParam(required = false) Long from,
+                                                   @RequestParam(required = false) Long to,
+                                                   @RequestParam(defaultValue = "hour") String groupBy) {
+        SpeedTestHistory.GroupBy group;
+        try {
+            group = SpeedTestHistory.GroupBy.valueOf(groupBy.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return Map.of("error", true, "message", "groupBy must be 'hour' or 'day'");
+        }
+        long end = to != null ? to : System.currentTimeMillis();
+        long start = from != null ? from : end - 30 * DAY_MS;
+        return history.aggregate(start, end, group);
+    }
+
+    /** Forwards events to one SSE client and ends its stream after the result or failure. */
+    private static final class StreamListener implements SpeedTestService.ProgressListener {
+        private final SseEmitter emitter;
+
+        StreamListener(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        @Override
+        public void onEvent(String type, Map<String, Object> data) {
+            try {
+                emitter.send(SseEmitter.event().name(type).data(data, MediaType.APPLICATION_JSON));
+                if (!"progress".equals(type)) emitter.complete();
+            } catch (Exception e) {
+                // Client gone or stream already completed
+                emitter.completeWithError(e);
+            }
+        }
+    }
 }
@@ -1,8 +1,10 @@
 package com.homelab.controller;
 
-import com.homelab.service.TailscaleService;
+import com.homelab.collect.CollectorRegistry;
+import com.homelab.store.DeviceDeltas;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.Map;
@@ -11,17 +13,20 @@ import java.util.Map;
 @RequestMapping("/api")
 public class TailscaleController {
 
-    private final TailscaleService tailscaleService;
+    private final CollectorRegistry collectors;
+    private final DeviceDeltas deltas;
 
-    public TailscaleController(TailscaleService tailscaleService) {
-        this.tailscaleService = tailscaleService;
+    public TailscaleController(CollectorRegistry collectors, DeviceDeltas deltas) {
+        this.collectors = collectors;
+        this.deltas = deltas;
     }
 
+    /** Tailnet devices; {@code since} as for {@code /api/devices}. Devices are keyed by their DNS name. */
     @GetMapping("/tailscale-devices")
-    public Map<String, Object> getTailscaleDevices() {
-        Map<String, Object> real = tailscaleService.getDevices();
+    public Map<String, Object> getTailscaleDevices(@RequestParam(required = false) Long since) {
+        Map<String, Object> real = collectors.get("tailscale");
         if (real != null) {
-            return real;
+            return deltas.respond("tailscale", real, since, d -> String.valueOf(d.get("name")));
         }
         return Map.of(
                 "error", true,
@@ -0,0 +1,172 @@
+package com.homelab.metrics;
+
+import com.homelab.store.SnapshotStore;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the collected homelab data (agent metrics, security counters, last speed test, device counts per source)
+ * as OpenMetrics. Everything comes from the latest {@link SnapshotStore} entries, so a scrape never calls an
+ * upstream; values are as fresh as the last dashboard poll, which {@code homelab_snapshot_age_seconds} shows.
+ */
+@Component
+public class HomelabMetricsExporter {
+
+    private static final String[][] AGENTS = {{"server-stats", "server"}, {"desktop-stats", "desktop"}};
+    private static final String[] DEVICE_SOURCES = {"unifi", "neighbors", "tailscale", "govee"};
+    private static final String[] SNAPSHOT_SOURCES = {"server-stats", "desktop-stats", "unifi", "neighbors", "tailscale", "govee", "speedtest"};
+
+    private static final OpenMetricsWriter.Family CPU = OpenMetricsWriter.Family.gauge(
+            "homelab_agent_cpu_percent", "CPU utilisation reported by the agent.");
+    private static final OpenMetricsWriter.Family MEMORY = OpenMetricsWriter.Family.gauge(
+            "homelab_agent_memory_percent", "Memory in use reported by the agent.");
+    private static final OpenMetricsWriter.Family DISK = OpenMetricsWriter.Family.gauge(
+            "homelab_agent_disk_used_percent", "Root filesystem usage reported by the agent.");
+    private static final OpenMetricsWriter.Family GPU = OpenMetricsWriter.Family.gauge(
+            "homelab_agent_gpu_util_percent", "GPU utilisation reported by the agent.");
+    private static final OpenMetricsWriter.Family CPU_WINDOW = OpenMetricsWriter.Family.gauge(
+            "homelab_agent_cpu_window_percent", "CPU utilisation over the agent's sampling window (stat: min, avg, max, p95).");
+    private static final OpenMetricsWriter.Family GPU_WINDOW = OpenMetricsWriter.Family.gauge(
+            "homelab_agent_gpu_util_window_percent", "GPU utilisation over the agent's sampling window (stat: min, avg, max, p95).");
+    private static final String[] WINDOW_STATS = {"min", "avg", "max", "p95"};
+    private static final OpenMetricsWriter.Family UPTIME = OpenMetricsWriter.Family.gauge(
+            "homelab_agent_uptime_seconds", "Host uptime reported by the agent.");
+    private static final OpenMetricsWriter.Family FAILED_SSH = OpenMetricsWriter.Family.gauge(
+            "homelab_security_failed_ssh_logins_24h", "Failed SSH logins in the last 24 hours.");
+    private static final OpenMetricsWriter.Family UPDATES = OpenMetricsWriter.Family.gauge(
+            "homelab_security_updates_pending", "Pending package updates.");
+    private static final OpenMetricsWriter.Family SECURITY_UPDATES = OpenMetricsWriter.Family.gauge(
+            "homelab_security_security_updates_pending", "Pending security updates.");
+    private static final OpenMetricsWriter.Family BANNED = OpenMetricsWriter.Family.gauge(
+            "homelab_security_fail2ban_banned", "Addresses currently banned per fail2ban jail.");
+    private static final OpenMetricsWriter.Family DOWNLOAD = OpenMetricsWriter.Family.gauge(
+            "homelab_speedtest_download_mbps", "Download bandwidth of the last speed test.");
+    private static final OpenMetricsWriter.Family UPLOAD = OpenMetricsWriter.Family.gauge(
+            "homelab_speedtest_upload_mbps", "Upload bandwidth of the last speed test.");
+    private static final OpenMetricsWriter.Family PING = OpenMetricsWriter.Family.gauge(
+            "homelab_speedtest_ping_ms", "Latency of the last speed test.");
+    private static final OpenMetricsWriter.Family JITTER = OpenMetricsWriter.Family.gauge(
+            "homelab_speedtest_jitter_ms", "Jitter of the last speed test.");
+    private static final OpenMetricsWriter.Family SPEEDTEST_TIME = OpenMetricsWriter.Family.gauge(
+            "homelab_speedtest_timestamp_seconds", "When the last speed test ran.");
+    private static final OpenMetricsWriter.Family DEVICES = OpenMetricsWriter.Family.gauge(
+            "homelab_devices", "Devices in the last list per source.");
+    private static final OpenMetricsWriter.Family DEVICES_ONLINE = OpenMetricsWriter.Family.gauge(
+            "homelab_devices_online", "Devices reported online per source (sources with a status).");
+    private static final OpenMetricsWriter.Family SNAPSHOT_AGE = OpenMetricsWriter.Family.gauge(
+            "homelab_snapshot_age_seconds", "Age of the data behind these metrics per source.");
+
+    private final SnapshotStore snapshotStore;
+
+    public HomelabMetricsExporter(SnapshotStore snapshotStore) {
+        this.snapshotStore = snapshotStore;
+    }
+
+    public void write(OutputStream out) throws IOException {
+        OpenMetricsWriter w = new OpenMetricsWriter(out);
+        agentGauge(w, CPU, "cpu_percent");
+        agentGauge(w, MEMORY, "memory_percent");
+        agentGauge(w, DISK, "disk_used_percent");
+        agentGauge(w, GPU, "gpu_util_percent");
+        windowGauge(w, CPU_WINDOW, "cpu_percent");
+        windowGauge(w, GPU_WINDOW, "gpu_util_percent");
+        agentGauge(w, UPTIME, "uptime_seconds");
+        securityGauge(w, FAILED_SSH, "failed_ssh_logins_24h");
+        securityGauge(w, UPDATES, "updates_pending");
+        securityGauge(w, SECURITY_UPDATES, "security_updates_pending");
+        fail2ban(w);
+
+        Map<String, Object> speed = snapshotStore.get("speedtest");
+        if (speed != null) {
+            gauge(w, DOWNLOAD, speed.get("download_mbps"));
+            gauge(w, UPLOAD, speed.get("upload_mbps"));
+            gauge(w, PING, speed.get("ping_ms"));
+            gauge(w, JITTER, speed.get("jitter_ms"));
+            if (speed.get("timestamp") instanceof Number ts) w.sample(SPEEDTEST_TIME).value(ts.longValue() / 1000);
+        }
+
+        for (String source : DEVICE_SOURCES) {
+            if (devices(source) instanceof List<?> list) w.sample(DEVICES).label("source", source).value(list.size());
+        }
+        for (String source : DEVICE_SOURCES) {
+            if (!(devices(source) instanceof List<?> list) || list.isEmpty()) continue;
+            if (!(list.get(0) instanceof Map<?, ?> first) || !first.containsKey("status")) continue;
+            long online = 0;
+            for (Object d : list) {
+                if (d instanceof Map<?, ?> m && "online".equals(m.get("status"))) online++;
+            }
+            w.sample(DEVICES_ONLINE).label("source", source).value(online);
+        }
+
+        long now = System.currentTimeMillis();
+        for (String source : SNAPSHOT_SOURCES) {
+            long savedAt = snapshotStore.savedAt(source);
+            if (savedAt > 0) w.sample(SNAPSHOT_AGE).label("source", source).value((now - savedAt) / 1000.0);
+        }
+        w.finish();
+    }
+
+    private void agentGauge(OpenMetricsWriter w, OpenMetricsWriter.Family family, String field) throws IOException {
+        for (String[] agent : AGENTS) {
+            Map<String, Object> stats = snapshotStore.get(agent[0]);
+            if (stats != null && stats.get(field) instanceof Number n) {
+                w.sample(family).label("agent", agent[1]).label("host", host(stats)).value(n.doubleValue());
+            }
+        }
+    }
+
+    /** min/avg/max/p95 from the agent's {@code window} block, one sample per stat. */
+    private void windowGauge(OpenMetricsWriter w, OpenMetricsWriter.Family family, String field) throws IOException {
+        for (String[] agent : AGENTS) {
+            Map<String, Object> stats = snapshotStore.get(agent[0]);
+            if (stats == null || !(stats.get("window") instanceof Map<?, ?> window)) continue;
+            if (!(window.get(field) instanceof Map<?, ?> summary)) continue;
+            for (String stat : WINDOW_STATS) {
+                if (summary.get(stat) instanceof Number n) {
+                    w.sample(family).label("agent", agent[1]).label("host", host(stats)).label("stat", stat).value(n.doubleValue());
+                }
+            }
+        }
+    }
+
+    private void securityGauge(OpenMetricsWriter w, OpenMetricsWriter.Family family, String field) throws IOException {
+        for (String[] agent : AGENTS) {
+            Map<String, Object> stats = snapshotStore.get(agent[0]);
+            if (stats != null && stats.get("security") instanceof Map<?, ?> security && security.get(field) instanceof Number n) {
+                w.sample(family).label("agent", agent[1]).label("host", host(stats)).value(n.longValue());
+            }
+        }
+    }
+
+    private void fail2ban(OpenMetricsWriter w) throws IOException {
+        for (String[] agent : AGENTS) {
+            Map<String, Object> stats = snapshotStore.get(agent[0]);
+            if (stats == null || !(stats.get("security") instanceof Map<?, ?> security)
+                    || !(security.get("fail2ban") instanceof Map<?, ?> f2b) || !(f2b.get("jails") instanceof List<?> jails)) {
+                continue;
+            }
+            for (Object o : jails) {
+                if (o instanceof Map<?, ?> jail && jail.get("name") instanceof String name && jail.get("currently_banned") instanceof Number n) {
+                    w.sample(BANNED).label("agent", agent[1]).label("host", host(stats)).label("jail", name).value(n.longValue());
+                }
+            }
+        }
+    }
+
+    private static void gauge(OpenMetricsWriter w, OpenMetricsWriter.Family family, Object value) throws IOException {
+        if (value instanceof Number n) w.sample(family).value(n.doubleValue());
+    }
+
+    private Object devices(String source) {
+        Map<String, Object> snapshot = snapshotStore.get(source);
+        return snapshot != null ? snapshot.get("devices") : null;
+    }
+
+    private static String host(Map<String, Object> stats) {
+        return stats.get("hostname") instanceof String h ? h : "";
+    }
+}
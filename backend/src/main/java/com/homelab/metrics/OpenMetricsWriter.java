@@ -0,0 +1,188 @@
+package com.homelab.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streaming OpenMetrics text encoder. Samples are written straight into a byte buffer that is flushed to the
+ * output stream as it fills: metric names and family headers are pre-encoded ({@link Family}), label values
+ * are UTF-8 encoded and escaped char by char, and numbers are formatted in place, so a scrape allocates nothing
+ * per sample.
+ * <p>
+ * {@code w.sample(CPU).label("agent", "server").value(12.5); ... w.finish();} The {@code # TYPE}/{@code # HELP}
+ * header is written before the first sample of each family; samples of one family must be consecutive.
+ */
+public final class OpenMetricsWriter {
+
+    public static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    private static final byte[] EOF = "# EOF\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NAN = "NaN".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] POS_INF = "+Inf".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NEG_INF = "-Inf".getBytes(StandardCharsets.US_ASCII);
+    /** Fractional digits written for non-integral values. */
+    private static final int DECIMALS = 6;
+    private static final long SCALE = 1_000_000L;
+
+    private final OutputStream out;
+    private final byte[] buf = new byte[8192];
+    private int pos;
+    private Family current;
+    private boolean inLabels;
+
+    public OpenMetricsWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /** A metric family: name plus its pre-encoded {@code # TYPE} and {@code # HELP} lines. */
+    public static final class Family {
+        final byte[] name;
+        final byte[] header;
+
+        private Family(String name, String type, String help) {
+            this.name = name.getBytes(StandardCharsets.US_ASCII);
+            this.header = ("# TYPE " + name + " " + type + "\n# HELP " + name + " " + help + "\n").getBytes(StandardCharsets.UTF_8);
+        }
+
+        public static Family gauge(String name, String help) {
+            return new Family(name, "gauge", help);
+        }
+    }
+
+    public OpenMetricsWriter sample(Family family) throws IOException {
+        if (family != current) {
+            write(family.header);
+            current = family;
+        }
+        write(family.name);
+        inLabels = false;
+        return this;
+    }
+
+    /** Label with a value from the data; null is written as an empty string. */
+    public OpenMetricsWriter label(String name, String value) throws IOException {
+        put(inLabels ? (byte) ',' : (byte) '{');
+        inLabels = true;
+        for (int i = 0; i < name.length(); i++) put((byte) name.charAt(i));
+        put((byte) '=');
+        put((byte) '"');
+        if (value != null) escaped(value);
+        put((byte) '"');
+        return this;
+    }
+
+    public void value(long v) throws IOException {
+        endLabels();
+        writeLong(v);
+        put((byte) '\n');
+    }
+
+    public void value(double v) throws IOException {
+        endLabels();
+        if (Double.isNaN(v)) {
+            write(NAN);
+        } else if (Double.isInfinite(v)) {
+            write(v > 0 ? POS_INF : NEG_INF);
+        } else if (v == Math.rint(v) && Math.abs(v) < 1e15) {
+            writeLong((long) v);
+        } else if (Math.abs(v) < 1e12) {
+            long scaled = Math.round(Math.abs(v) * SCALE);
+            if (v < 0) put((byte) '-');
+            writeLong(scaled / SCALE);
+            long frac = scaled % SCALE;
+            if (frac != 0) {
+                put((byte) '.');
+                int digits = DECIMALS;
+                while (frac % 10 == 0) {
+                    frac /= 10;
+                    digits--;
+                }
+                for (long div = pow10(digits - 1); div > 0; div /= 10) put((byte) ('0' + (frac / div) % 10));
+            }
+        } else {
+            writeLong(Math.round(v));
+        }
+        put((byte) '\n');
+    }
+
+    /** Terminates the exposition ({@code # EOF}) and flushes. */
+    public void finish() throws IOException {
+        write(EOF);
+        out.write(buf, 0, pos);
+        pos = 0;
+        out.flush();
+    }
+
+    private void endLabels() throws IOException {
+        if (inLabels) put((byte) '}');
+        inLabels = false;
+        put((byte) ' ');
+    }
+
+    private void writeLong(long v) throws IOException {
+        if (v < 0) {
+            put((byte) '-');
+            v = -Math.max(v, -Long.MAX_VALUE);
+        }
+        long div = 1;
+        while (div <= v / 10) div *= 10;
+        for (; div > 0; div /= 10) put((byte) ('0' + (v / div) % 10));
+    }
+
+    private void escaped(String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' || c == '"') {
+                put((byte) '\\');
+                put((byte) c);
+            } else if (c == '\n') {
+                put((byte) '\\');
+                put((byte) 'n');
+            } else if (c < 0x80) {
+                put((byte) c);
+            } else if (c < 0x800) {
+                put((byte) (0xc0 | (c >> 6)));
+                put((byte) (0x80 | (c & 0x3f)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                put((byte) (0xf0 | (cp >> 18)));
+                put((byte) (0x80 | ((cp >> 12) & 0x3f)));
+                put((byte) (0x80 | ((cp >> 6) & 0x3f)));
+                put((byte) (0x80 | (cp & 0x3f)));
+            } else if (Character.isSurrogate(c)) {
+                put((byte) '?');
+            } else {
+                put((byte) (0xe0 | (c >> 12)));
+                put((byte) (0x80 | ((c >> 6) & 0x3f)));
+                put((byte) (0x80 | (c & 0x3f)));
+            }
+        }
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        for (int off = 0; off < bytes.length; ) {
+            if (pos == buf.length) drain();
+            int n = Math.min(bytes.length - off, buf.length - pos);
+            System.arraycopy(bytes, off, buf, pos, n);
+            pos += n;
+            off += n;
+        }
+    }
+
+    private void put(byte b) throws IOException {
+        if (pos == buf.length) drain();
+        buf[pos++] = b;
+    }
+
+    private void drain() throws IOException {
+        out.write(buf, 0, pos);
+        pos = 0;
+    }
+
+    private static long pow10(int n) {
+        long p = 1;
+        for (int i = 0; i < n; i++) p *= 10;
+        return p;
+    }
+}
@@ -0,0 +1,273 @@
+package com.homelab.probe;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reachability probe for many hosts at once, driven by one NIO selector on the calling thread.
+ * <p>
+ * Each host gets a non-blocking TCP connect to its first port; further ports are only tried while the host is
+ * still undecided. An accepted connection ({@code tcp-open}) or a refusal ({@code tcp-refused}: the host's kernel
+ * answered with a RST, so it is up) both count as reachable, with the connect time as RTT. A host whose attempts
+ * all time out or fail with unreachable errors is down. At most {@code maxSockets} connects are in flight, so file
+ * descriptors stay bounded however many hosts are probed. With {@code icmp} on, hosts still down after the TCP
+ * pass get {@link InetAddress#isReachable} (ICMP echo when the JVM may send it, else TCP port 7) on a small pool.
+ */
+public final class ProbeEngine {
+
+    private final int[] ports;
+    private final long timeoutMs;
+    private final int maxSockets;
+    private final boolean icmp;
+
+    public ProbeEngine(int[] ports, long timeoutMs, int maxSockets, boolean icmp) {
+        if (ports.length == 0) throw new IllegalArgumentException("No probe ports");
+        this.ports = ports.clone();
+        this.timeoutMs = timeoutMs;
+        this.maxSockets = Math.max(1, maxSockets);
+        this.icmp = icmp;
+    }
+
+    /** Outcome for one host. {@code port} is only set when reachable over TCP. */
+    public static final class Result {
+        private final InetAddress address;
+        private boolean reachable;
+        private String via = "timeout";
+        private int port;
+        private double rttMs = -1;
+        private int nextPort;
+        private final List<Attempt> open = new ArrayList<>(2);
+
+        Result(InetAddress address) {
+            this.address = address;
+        }
+
+        public InetAddress address() {
+            return address;
+        }
+
+        public boolean reachable() {
+            return reachable;
+        }
+
+        /** tcp-open, tcp-refused, icmp, timeout or unreachable. */
+        public String via() {
+            return via;
+        }
+
+        public int port() {
+            return port;
+        }
+
+        public double rttMs() {
+            return rttMs;
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("reachable", reachable);
+            m.put("via", via);
+            if (port > 0) m.put("port", port);
+            if (rttMs >= 0) m.put("rttMs", Math.round(rttMs * 100) / 100.0);
+            return m;
+        }
+    }
+
+    private static final class Attempt {
+        final Result host;
+        final int port;
+        final long startNanos;
+        final long deadlineNanos;
+        SocketChannel channel;
+
+        Attempt(Result host, int port, long startNanos, long deadlineNanos) {
+            this.host = host;
+            this.port = port;
+            this.startNanos = startNanos;
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+
+    public List<Result> probe(List<InetAddress> hosts) throws IOException {
+        List<Result> results = new ArrayList<>(hosts.size());
+        for (InetAddress h : hosts) results.add(new Result(h));
+        try (Sweep sweep = new Sweep(results)) {
+            sweep.run();
+        }
+        if (icmp) icmpPass(results);
+        return results;
+    }
+
+    /** State of one {@link #probe} call. */
+    private final class Sweep implements AutoCloseable {
+        private final Selector selector = Selector.open();
+        /** Hosts with ports left to try, round-robin: everyone's first port before anyone's second. */
+        private final ArrayDeque<Result> queue;
+        /** Open attempts in start order, which is also deadline order (one timeout for all). */
+        private final ArrayDeque<Attempt> byDeadline = new ArrayDeque<>();
+        private final long timeoutNanos = timeoutMs * 1_000_000L;
+        private int inFlight;
+
+        Sweep(List<Result> results) throws IOException {
+            this.queue = new ArrayDeque<>(results);
+        }
+
+        void run() throws IOException {
+            while (!queue.isEmpty() || inFlight > 0) {
+                while (inFlight < maxSockets && !queue.isEmpty()) {
+                    Result host = queue.poll();
+                    if (host.reachable) continue;
+                    int port = ports[host.nextPort++];
+                    if (host.nextPort < ports.length) queue.add(host);
+                    start(new Attempt(host, port, System.nanoTime(), System.nanoTime() + timeoutNanos));
+                }
+                Attempt head = firstOpen();
+                long waitMs = head == null ? 1 : Math.max(1, (head.deadlineNanos - System.nanoTime()) / 1_000_000L);
+                boolean canStartMore = inFlight < maxSockets && !queue.isEmpty();
+                int ready = canStartMore ? selector.selectNow() : selector.select(waitMs);
+                if (ready > 0) {
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        finish((Attempt) key.attachment());
+                    }
+                }
+                long now = System.nanoTime();
+                while ((head = firstOpen()) != null && head.deadlineNanos <= now) close(head);
+            }
+        }
+
+        private void start(Attempt a) {
+            SocketChannel ch = null;
+            try {
+                ch = SocketChannel.open();
+                ch.configureBlocking(false);
+                // RST on close: no TIME_WAIT left behind per probed port
+                ch.setOption(StandardSocketOptions.SO_LINGER, 0);
+                a.channel = ch;
+                inFlight++;
+                a.host.open.add(a);
+                if (ch.connect(new InetSocketAddress(a.host.address, a.port))) {
+                    reachable(a, "tcp-open");
+                } else {
+                    ch.register(selector, SelectionKey.OP_CONNECT, a);
+                    byDeadline.add(a);
+                }
+            } catch (IOException e) {
+                failed(a, e);
+                if (a.channel == null && ch != null) {
+                    try {
+                        ch.close();
+                    } catch (IOException ignored) { }
+                }
+            }
+        }
+
+        private void finish(Attempt a) {
+            if (a.channel == null) return;
+            try {
+                if (a.channel.finishConnect()) reachable(a, "tcp-open");
+            } catch (IOException e) {
+                failed(a, e);
+            }
+        }
+
+        /** Decide the host and release every socket it still holds. */
+        private void reachable(Attempt a, String via) {
+            Result h = a.host;
+            if (!h.reachable) {
+                h.reachable = true;
+                h.via = via;
+                h.port = a.port;
+                h.rttMs = (System.nanoTime() - a.startNanos) / 1e6;
+            }
+            for (Attempt other : new ArrayList<>(h.open)) close(other);
+        }
+
+        private void failed(Attempt a, IOException e) {
+            if (e instanceof ConnectException && e.getMessage() != null && e.getMessage().contains("refused")) {
+                reachable(a, "tcp-refused");
+                return;
+            }
+            if (!a.host.reachable) a.host.via = "unreachable";
+            close(a);
+        }
+
+        private void close(Attempt a) {
+            if (a.channel == null) return;
+            try {
+                a.channel.close();
+            } catch (IOException ignored) { }
+            a.channel = null;
+            a.host.open.remove(a);
+            inFlight--;
+        }
+
+        private Attempt firstOpen() {
+            while (!byDeadline.isEmpty() && byDeadline.peek().channel == null) byDeadline.poll();
+            return byDeadline.peek();
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (Attempt a : byDeadline) close(a);
+            selector.close();
+        }
+    }
+
+    private void icmpPass(List<Result> results) {
+        List<Result> down = new ArrayList<>();
+        for (Result r : results) if (!r.reachable) down.add(r);
+        if (down.isEmpty()) return;
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(32, down.size()), r -> {
+            Thread t = new Thread(r, "probe-icmp");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Result r : down) {
+                futures.add(pool.submit(() -> {
+                    long start = System.nanoTime();
+                    try {
+                        if (r.address.isReachable((int) timeoutMs)) {
+                            synchronized (r) {
+                                r.reachable = true;
+                                r.via = "icmp";
+                                r.rttMs = (System.nanoTime() - start) / 1e6;
+                            }
+                        }
+                    } catch (IOException ignored) {
+                        // not permitted or no route: stays down
+                    }
+                }));
+            }
+            for (Future<?> f : futures) {
+                try {
+                    f.get(timeoutMs * 2, TimeUnit.MILLISECONDS);
+                } catch (Exception ignored) {
+                    // counted as down
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
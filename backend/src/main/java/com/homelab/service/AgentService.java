@@ -1,52 +1,297 @@
 package com.homelab.service;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.homelab.collect.Collector;
 import com.homelab.config.HomelabProperties;
+import com.homelab.trace.UpstreamTraceInterceptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
 import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
+/**
+ * Polls the Python agents' {@code /stats}.
+ * <p>
+ * The request asks for CBOR ({@code Accept: application/cbor, application/json;q=0.9}; JSON is ranked lower
+ * because agents, like most servers, pick their own first choice on a tie) and, once a full payload has
+ * been seen, sends its version in {@code X-Stats-Since}. An agent that still has that version answers with only
+ * the difference ({@code X-Stats-Delta-Base} set, body {@code {"set": {...}, "unset": [[path...], ...]}}), which
+ * is merged into the last payload here. Agents that predate this just keep sending full JSON. Bytes on the wire
+ * and decode/merge time are counted per agent, see {@link #wireStats()}.
+ * <p>
+ * Agents sample CPU (and GPU) several times a second and report min/avg/max/p95 over a window under
+ * {@code window}, with the top-level value being the window's average. Each poll asks for the window since this
+ * agent's previous poll ({@code window_ms}), so consecutive snapshots cover the time between them without gaps.
+ * <p>
+ * Each agent is its own {@link Collector} ({@link #serverStats()}, {@link #desktopStats()}).
+ */
 @Service
 public class AgentService {
 
+    private static final Logger log = LoggerFactory.getLogger(AgentService.class);
+    private static final MediaType CBOR = MediaType.parseMediaType("application/cbor");
+    private static final MediaType JSON_FALLBACK = MediaType.parseMediaType("application/json;q=0.9");
+    private static final String VERSION_HEADER = "X-Stats-Version";
+    private static final String SINCE_HEADER = "X-Stats-Since";
+    private static final String DELTA_BASE_HEADER = "X-Stats-Delta-Base";
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
+
     private final HomelabProperties properties;
     private final RestTemplate restTemplate;
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+    private final ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+    private final Map<String, AgentWire> wire = new ConcurrentHashMap<>();
+    private final Map<String, SlowTier> slowTiers = new ConcurrentHashMap<>();
+    private final Collector serverStats;
+    private final Collector desktopStats;
 
     public AgentService(HomelabProperties properties, RestTemplateBuilder builder) {
         this.properties = properties;
+        this.serverStats = new AgentCollector("server-stats", properties::getServerAgentUrl, true);
+        this.desktopStats = new AgentCollector("desktop-stats", properties::getDesktopAgentUrl, false);
         this.restTemplate = builder
                 .setConnectTimeout(Duration.ofSeconds(3))
                 .setReadTimeout(Duration.ofSeconds(4))
+                .additionalInterceptors(new UpstreamTraceInterceptor("agent"))
                 .build();
     }
 
     /**
-     * Fetch server stats from the server agent. Returns null if URL not set or request fails.
+     * Server stats from the server agent; disabled while no URL is set.
      */
-    @SuppressWarnings("unchecked")
-    public Map<String, Object> getServerStats() {
-        String url = properties.getServerAgentUrl();
-        if (url == null || url.isBlank()) return null;
-        try {
-            return restTemplate.getForObject(url + "/stats", Map.class);
-        } catch (Exception e) {
-            return null;
+    public Collector serverStats() {
+        return serverStats;
+    }
+
+    /**
+     * Desktop stats from the desktop agent; disabled while no URL is set.
+     */
+    public Collector desktopStats() {
+        return desktopStats;
+    }
+
+    /**
+     * Per agent: polls, how many were answered with a delta and in CBOR, bytes received (total and average per
+     * poll) and the average time spent decoding and merging a response.
+     */
+    public Map<String, Object> wireStats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        wire.forEach((key, w) -> out.put(key, w.stats()));
+        return out;
+    }
+
+    /**
+     * {@code tiered}: the agent serves cheap metrics at {@code /stats?tier=fast} and its cached security block at
+     * {@code /stats/security}; the latter is only re-read every {@code homelab.agents.security-refresh-seconds}.
+     */
+    private final class AgentCollector implements Collector {
+        private final String key;
+        private final Supplier<String> url;
+        private final boolean tiered;
+
+        AgentCollector(String key, Supplier<String> url, boolean tiered) {
+            this.key = key;
+            this.url = url;
+            this.tiered = tiered;
+        }
+
+        @Override
+        public String name() {
+            return key;
+        }
+
+        @Override
+        public boolean enabled() {
+            String u = url.get();
+            return u != null && !u.isBlank();
+        }
+
+        @Override
+        public Map<String, Object> collect() throws IOException {
+            String base = url.get();
+            AgentWire w = wireFor(key);
+            String statsUrl = base + (tiered ? "/stats?tier=fast" : "/stats");
+            long windowMs = w.sinceLastPollMs();
+            if (windowMs > 0) statsUrl += (tiered ? "&" : "?") + "window_ms=" + windowMs;
+            Map<String, Object> stats = poll(w, statsUrl, true);
+            if (stats != null && tiered && !stats.containsKey("error")) stats = withSecurityTier(key, base, stats);
+            return stats;
+        }
+    }
+
+    /**
+     * Fast tier merged with the last security tier, plus {@code tier_timestamps} saying when each was collected.
+     * An agent without tiers ignores {@code tier=fast} and already includes its security block; that is returned as is.
+     */
+    private Map<String, Object> withSecurityTier(String key, String url, Map<String, Object> fast) {
+        if (fast.containsKey("security")) return fast;
+        SlowTier tier = slowTiers.computeIfAbsent(key, k -> new SlowTier());
+        long now = System.currentTimeMillis();
+        long refreshMs = properties.getAgents().getSecurityRefreshSeconds() * 1000L;
+        if (now - tier.fetchedAt >= refreshMs && tier.refreshing.compareAndSet(false, true)) {
+            try {
+                Map<String, Object> security = poll(wireFor(key + ":security"), url + "/stats/security", true);
+                if (security != null) tier.data = security;
+            } catch (Exception e) {
+                log.debug("Agent {}: security tier failed: {}", url, e.getMessage());
+            } finally {
+                // Also after a failure: keep serving the last block and try again next interval
+                tier.fetchedAt = now;
+                tier.refreshing.set(false);
+            }
         }
+        Map<String, Object> security = tier.data;
+        Map<String, Object> merged = new LinkedHashMap<>(fast);
+        if (security != null && security.get("security") instanceof Map<?, ?> block && !block.isEmpty()) {
+            merged.put("security", block);
+        }
+        Map<String, Object> timestamps = new LinkedHashMap<>();
+        timestamps.put("fast", fast.get("timestamp"));
+        timestamps.put("security", security != null ? security.get("timestamp") : null);
+        merged.put("tier_timestamps", timestamps);
+        return merged;
+    }
+
+    private AgentWire wireFor(String key) {
+        return wire.computeIfAbsent(key, k -> new AgentWire());
+    }
+
+    private Map<String, Object> poll(AgentWire w, String statsUrl, boolean allowDelta) throws IOException {
+        HomelabProperties.Agents cfg = properties.getAgents();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(cfg.isCbor() ? List.of(CBOR, JSON_FALLBACK) : List.of(MediaType.APPLICATION_JSON));
+        String since = w.version;
+        if (cfg.isDelta() && allowDelta && since != null) headers.set(SINCE_HEADER, since);
+
+        ResponseEntity<byte[]> response = restTemplate.exchange(statsUrl, HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+        byte[] body = response.getBody();
+        if (body == null) return null;
+        long start = System.nanoTime();
+        HttpHeaders rh = response.getHeaders();
+        boolean isCbor = CBOR.isCompatibleWith(rh.getContentType());
+        Map<String, Object> decoded = (isCbor ? cborMapper : jsonMapper).readValue(body, MAP_TYPE);
+        String deltaBase = rh.getFirst(DELTA_BASE_HEADER);
+
+        Map<String, Object> stats = null;
+        synchronized (w) {
+            if (deltaBase != null && (!deltaBase.equals(w.version) || w.last == null)) {
+                // Raced with another poll that moved the version on; ask again for a full payload below
+                log.debug("Agent {}: delta against unknown version {}, refetching", statsUrl, deltaBase);
+                w.version = null;
+            } else {
+                stats = deltaBase != null ? applyDelta(w.last, decoded) : decoded;
+                w.version = rh.getFirst(VERSION_HEADER);
+                w.last = stats;
+                w.record(body.length, deltaBase != null, isCbor, System.nanoTime() - start);
+            }
+        }
+        if (stats == null && allowDelta) return poll(w, statsUrl, false);
+        return stats;
     }
 
     /**
-     * Fetch desktop stats from the desktop agent. Returns null if URL not set or request fails.
+     * Returns a new map: {@code base} with the delta's {@code set} merged in (nested maps merged key by key,
+     * anything else replaced) and its {@code unset} paths removed. Unchanged branches are shared with {@code base}.
      */
     @SuppressWarnings("unchecked")
-    public Map<String, Object> getDesktopStats() {
-        String url = properties.getDesktopAgentUrl();
-        if (url == null || url.isBlank()) return null;
-        try {
-            return restTemplate.getForObject(url + "/stats", Map.class);
-        } catch (Exception e) {
-            return null;
+    private static Map<String, Object> applyDelta(Map<String, Object> base, Map<String, Object> delta) {
+        Map<String, Object> out = merge(base, delta.get("set") instanceof Map<?, ?> set ? (Map<String, Object>) set : Map.of());
+        if (delta.get("unset") instanceof List<?> unset) {
+            for (Object path : unset) {
+                if (path instanceof List<?> p && !p.isEmpty()) out = remove(out, p, 0);
+            }
+        }
+        return out;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> merge(Map<String, Object> base, Map<String, Object> set) {
+        if (set.isEmpty()) return base;
+        Map<String, Object> out = new LinkedHashMap<>(base);
+        for (Map.Entry<String, Object> e : set.entrySet()) {
+            Object old = out.get(e.getKey());
+            if (e.getValue() instanceof Map<?, ?> change && old instanceof Map<?, ?> oldMap) {
+                out.put(e.getKey(), merge((Map<String, Object>) oldMap, (Map<String, Object>) change));
+            } else {
+                out.put(e.getKey(), e.getValue());
+            }
+        }
+        return out;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> remove(Map<String, Object> base, List<?> path, int i) {
+        String key = String.valueOf(path.get(i));
+        if (!base.containsKey(key)) return base;
+        Map<String, Object> out = new LinkedHashMap<>(base);
+        if (i == path.size() - 1) {
+            out.remove(key);
+        } else if (out.get(key) instanceof Map<?, ?> child) {
+            out.put(key, remove((Map<String, Object>) child, path, i + 1));
+        }
+        return out;
+    }
+
+    /** Last security-tier response for one agent and when it was fetched. */
+    private static final class SlowTier {
+        private volatile Map<String, Object> data;
+        private volatile long fetchedAt;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+    }
+
+    /** Negotiation state and wire counters for one agent endpoint. */
+    private static final class AgentWire {
+        private String version;
+        private Map<String, Object> last;
+        private long polls;
+        private long deltas;
+        private long cborPolls;
+        private long bytes;
+        private long decodeNanos;
+        private volatile long lastPollAt;
+
+        /** Time since the last successful poll, 0 before the first. */
+        long sinceLastPollMs() {
+            long last = lastPollAt;
+            return last == 0 ? 0 : System.currentTimeMillis() - last;
+        }
+
+        void record(int size, boolean delta, boolean cbor, long nanos) {
+            lastPollAt = System.currentTimeMillis();
+            polls++;
+            if (delta) deltas++;
+            if (cbor) cborPolls++;
+            bytes += size;
+            decodeNanos += nanos;
+        }
+
+        synchronized Map<String, Object> stats() {
+            Map<String, Object> out = new LinkedHashMap<>();
+            out.put("polls", polls);
+            out.put("deltaPolls", deltas);
+            out.put("cborPolls", cborPolls);
+            out.put("bytes", bytes);
+            out.put("avgBytesPerPoll", polls == 0 ? 0 : bytes / polls);
+            out.put("avgDecodeMicros", polls == 0 ? 0 : decodeNanos / polls / 1000);
+            out.put("version", version);
+            return out;
         }
     }
 }
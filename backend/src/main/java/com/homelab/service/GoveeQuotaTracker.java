@@ -0,0 +1,226 @@
+package com.homelab.service;
+
+import com.homelab.config.HomelabProperties;
+import com.homelab.store.SnapshotStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Tracks Govee cloud API usage against the account's daily and per-minute quotas and decides how often the
+ * device list may be re-read from the cloud.
+ * <p>
+ * Every cloud call is counted per endpoint. The rate-limit response headers, when present, override the local
+ * estimate: {@code API-RateLimit-*} carries the daily budget and {@code X-RateLimit-*} the per-minute one
+ * ({@code -Limit}, {@code -Remaining}, {@code -Reset} as epoch seconds). The device-list refresh interval is
+ * then the time left in the day spread evenly over the calls still affordable, after holding back
+ * {@code control-reserve} calls so lights stay switchable, and accounting for how many calls one refresh costs
+ * (1 with the Open API, 3 when it falls back to both legacy endpoints). Counters survive restarts via
+ * {@link SnapshotStore}.
+ */
+@Component
+public class GoveeQuotaTracker {
+
+    private static final Logger log = LoggerFactory.getLogger(GoveeQuotaTracker.class);
+    private static final String SNAPSHOT_KEY = "govee-quota";
+    private static final long DAY_MS = 24 * 60 * 60 * 1000L;
+
+    private final HomelabProperties properties;
+    private final SnapshotStore snapshotStore;
+
+    private final Map<String, Long> callsToday = new TreeMap<>();
+    private long windowResetAt;
+    private int headerDailyLimit = -1;
+    private int headerDailyRemaining = -1;
+    private int callsSinceHeader;
+    private int minuteRemaining = -1;
+    private long minuteResetAt;
+    private double callsPerRefresh = 1.0;
+
+    public GoveeQuotaTracker(HomelabProperties properties, SnapshotStore snapshotStore) {
+        this.properties = properties;
+        this.snapshotStore = snapshotStore;
+        restore();
+    }
+
+    /**
+     * Count one cloud call and pick up the rate-limit headers of its response (null when the call failed without one).
+     */
+    public synchronized void record(String endpoint, HttpHeaders headers) {
+        long now = System.currentTimeMillis();
+        rollWindow(now);
+        callsToday.merge(endpoint, 1L, Long::sum);
+        if (headers != null) {
+            int dailyLimit = intHeader(headers, "API-RateLimit-Limit");
+            int dailyRemaining = intHeader(headers, "API-RateLimit-Remaining");
+            long dailyReset = resetHeader(headers, "API-RateLimit-Reset", now);
+            if (dailyLimit > 0) headerDailyLimit = dailyLimit;
+            if (dailyRemaining >= 0) {
+                headerDailyRemaining = dailyRemaining;
+                callsSinceHeader = 0;
+            } else {
+                callsSinceHeader++;
+            }
+            if (dailyReset > now) windowResetAt = dailyReset;
+            int minute = intHeader(headers, "X-RateLimit-Remaining");
+            long minuteReset = resetHeader(headers, "X-RateLimit-Reset", now);
+            if (minute >= 0) {
+                minuteRemaining = minute;
+                minuteResetAt = minuteReset > now ? minuteReset : now + 60_000;
+            }
+        } else {
+            callsSinceHeader++;
+        }
+        persist();
+    }
+
+    /** A 429 from Govee: nothing more this minute (or until Retry-After), whatever the counters say. */
+    public synchronized void recordRateLimited(String endpoint, HttpHeaders headers) {
+        record(endpoint, headers);
+        long now = System.currentTimeMillis();
+        long retryAfter = headers != null ? intHeader(headers, HttpHeaders.RETRY_AFTER) : -1;
+        minuteRemaining = 0;
+        minuteResetAt = Math.max(minuteResetAt, now + (retryAfter > 0 ? retryAfter * 1000 : 60_000));
+        log.warn("Govee: rate limited on {}, cloud reads paused for {}s", endpoint, (minuteResetAt - now) / 1000);
+    }
+
+    /** Number of cloud calls the last device-list refresh needed; smoothed so one fallback does not swing the interval. */
+    public synchronized void recordRefresh(int calls) {
+        if (calls > 0) callsPerRefresh = 0.7 * callsPerRefresh + 0.3 * calls;
+    }
+
+    /**
+     * True if the cloud device list may be re-read now, given when it was last fetched.
+     */
+    public synchronized boolean cloudReadAllowed(long lastFetchAt) {
+        long now = System.currentTimeMillis();
+        rollWindow(now);
+        if (minuteRemaining == 0 && now < minuteResetAt) return false;
+        if (readBudget() <= 0) return false;
+        return now - lastFetchAt >= refreshIntervalMs(now);
+    }
+
+    /** Control commands may use the reserve, but not a quota Govee has already reported as exhausted. */
+    public synchronized boolean controlAllowed() {
+        long now = System.currentTimeMillis();
+        rollWindow(now);
+        if (minuteRemaining == 0 && now < minuteResetAt) return false;
+        return dailyRemaining() > 0;
+    }
+
+    public synchronized Map<String, Object> snapshot() {
+        long now = System.currentTimeMillis();
+        rollWindow(now);
+        HomelabProperties.Govee g = properties.getGovee();
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("dailyLimit", dailyLimit());
+        out.put("dailyUsed", used());
+        out.put("dailyRemaining", dailyRemaining());
+        out.put("remainingFromHeaders", headerDailyRemaining >= 0);
+        out.put("controlReserve", g.getControlReserve());
+        out.put("resetAt", windowResetAt);
+        out.put("minuteRemaining", minuteRemaining);
+        out.put("minuteResetAt", minuteResetAt);
+        out.put("callsPerRefresh", Math.round(callsPerRefresh * 100) / 100.0);
+        out.put("cloudRefreshSeconds", refreshIntervalMs(now) / 1000);
+        out.put("callsByEndpoint", new TreeMap<>(callsToday));
+        return out;
+    }
+
+    private long refreshIntervalMs(long now) {
+        HomelabProperties.Govee g = properties.getGovee();
+        long min = g.getMinCloudRefreshSeconds() * 1000L;
+        long max = g.getMaxCloudRefreshSeconds() * 1000L;
+        long budget = readBudget();
+        if (budget <= 0) return max;
+        long timeLeft = Math.max(0, windowResetAt - now);
+        long interval = (long) (timeLeft * callsPerRefresh / budget);
+        return Math.max(min, Math.min(max, interval));
+    }
+
+    private long readBudget() {
+        return dailyRemaining() - properties.getGovee().getControlReserve();
+    }
+
+    private long dailyLimit() {
+        return headerDailyLimit > 0 ? headerDailyLimit : properties.getGovee().getDailyQuota();
+    }
+
+    /** Remaining from the last header, minus calls made since without one; otherwise the configured quota minus our count. */
+    private long dailyRemaining() {
+        if (headerDailyRemaining >= 0) {
+            return Math.max(0, headerDailyRemaining - callsSinceHeader);
+        }
+        return Math.max(0, dailyLimit() - used());
+    }
+
+    private long used() {
+        long n = 0;
+        for (long c : callsToday.values()) n += c;
+        return n;
+    }
+
+    private void rollWindow(long now) {
+        if (now < windowResetAt) return;
+        if (windowResetAt > 0 && !callsToday.isEmpty()) {
+            log.info("Govee: quota window reset after {} cloud call(s)", used());
+        }
+        callsToday.clear();
+        headerDailyRemaining = -1;
+        callsSinceHeader = 0;
+        // Govee does not document when the daily window starts; assume UTC midnight until a Reset header says otherwise
+        windowResetAt = LocalDate.ofEpochDay(now / DAY_MS + 1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+    }
+
+    private void persist() {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("windowResetAt", windowResetAt);
+        state.put("calls", new TreeMap<>(callsToday));
+        state.put("headerDailyLimit", headerDailyLimit);
+        state.put("headerDailyRemaining", headerDailyRemaining);
+        snapshotStore.put(SNAPSHOT_KEY, state);
+    }
+
+    private void restore() {
+        Map<String, Object> state = snapshotStore.get(SNAPSHOT_KEY);
+        if (state == null || !(state.get("windowResetAt") instanceof Number reset)) return;
+        if (reset.longValue() <= System.currentTimeMillis()) return;
+        windowResetAt = reset.longValue();
+        if (state.get("calls") instanceof Map<?, ?> calls) {
+            calls.forEach((k, v) -> {
+                if (v instanceof Number n) callsToday.put(String.valueOf(k), n.longValue());
+            });
+        }
+        if (state.get("headerDailyLimit") instanceof Number n) headerDailyLimit = n.intValue();
+        if (state.get("headerDailyRemaining") instanceof Number n) headerDailyRemaining = n.intValue();
+    }
+
+    private static int intHeader(HttpHeaders headers, String name) {
+        String v = headers.getFirst(name);
+        if (v == null) return -1;
+        try {
+            return Integer.parseInt(v.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /** Reset headers are epoch seconds; small values are treated as seconds from now. */
+    private static long resetHeader(HttpHeaders headers, String name, long now) {
+        String v = headers.getFirst(name);
+        if (v == null) return -1;
+        try {
+            long n = Long.parseLong(v.trim());
+            return n > 1_000_000_000L ? n * 1000 : now + n * 1000;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
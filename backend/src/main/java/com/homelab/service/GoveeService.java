@@ -1,7 +1,12 @@
 package com.homelab.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.homelab.collect.Collector;
 import com.homelab.config.HomelabProperties;
+import com.homelab.store.DeviceTable;
+import com.homelab.store.SnapshotStore;
+import com.homelab.trace.UpstreamCallEvent;
+import com.homelab.trace.UpstreamTraceInterceptor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpEntity;
@@ -10,43 +15,107 @@ import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.RestTemplate;
 
 import jakarta.annotation.PostConstruct;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
+import jakarta.annotation.PreDestroy;
+import java.net.Inet4Address;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
 import java.nio.charset.StandardCharsets;
-import java.util.*;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 /**
  * Fetches Govee devices: cloud API (if API key set) and/or LAN discovery (UDP multicast per Govee WLAN guide).
  */
 @Service
-public class GoveeService {
+public class GoveeService implements Collector {
 
     private static final Logger log = LoggerFactory.getLogger(GoveeService.class);
     /** Current Govee Open API – single call for all devices and capabilities. */
-    private static final String OPENAPI_DEVICES_URL = "https://openapi.api.govee.com/router/api/v1/user/devices";
+    private static final String OPENAPI_DEVICES_PATH = "/router/api/v1/user/devices";
     /** Control You Device – https://developer.govee.com/reference/control-you-devices */
-    private static final String OPENAPI_CONTROL_URL = "https://openapi.api.govee.com/router/api/v1/device/control";
+    private static final String OPENAPI_CONTROL_PATH = "/router/api/v1/device/control";
     /** Legacy endpoints (fallback if openapi fails). */
-    private static final String LEGACY_LIGHTS_URL = "https://developer-api.govee.com/v1/devices";
-    private static final String LEGACY_APPLIANCES_URL = "https://developer-api.govee.com/v1/appliance/devices";
-    private static final String LEGACY_CONTROL_URL = "https://developer-api.govee.com/v1/devices/control";
+    private static final String LEGACY_LIGHTS_PATH = "/v1/devices";
+    private static final String LEGACY_APPLIANCES_PATH = "/v1/appliance/devices";
+    private static final String LEGACY_CONTROL_PATH = "/v1/devices/control";
     private static final String LAN_MULTICAST = "239.255.255.250";
     private static final int LAN_MULTICAST_PORT = 4001;
     private static final int LAN_LISTEN_PORT = 4002;
     private static final String LAN_SCAN_JSON = "{\"msg\":{\"cmd\":\"scan\",\"data\":{\"account_topic\":\"reserve\"}}}";
     private static final int LAN_RECEIVE_TIMEOUT_MS = 5000;
+    private static final int LAN_CONTROL_PORT = 4003;
+    private static final String SNAPSHOT_KEY = "govee";
+    private static final int CONTROL_THREADS = 8;
+    private static final int CONTROL_QUEUE = 256;
+    /** Enough for both endpoints at once (the legacy one is two calls), plus fetches that lost and are still running. */
+    private static final int READ_THREADS = 4;
+    private static final int READ_QUEUE = 4;
 
     private final HomelabProperties properties;
+    private final SnapshotStore snapshotStore;
+    private final GoveeQuotaTracker quota;
     private final RestTemplate restTemplate = new RestTemplate();
     private final ObjectMapper objectMapper = new ObjectMapper();
 
-    public GoveeService(HomelabProperties properties) {
+    /** Last cloud device list; re-read only as often as {@link GoveeQuotaTracker} allows. */
+    private volatile List<Map<String, Object>> cloudDevices = List.of();
+    private volatile long cloudFetchedAt;
+    private final AtomicBoolean cloudRefreshing = new AtomicBoolean();
+    /** Endpoint that last returned devices, and the API key it did so for; tried first on the next refresh. */
+    private volatile CloudEndpoint preferredEndpoint = CloudEndpoint.OPENAPI;
+    private volatile String preferredFor;
+    private volatile long hedgesStarted;
+    private volatile long hedgesWon;
+    private volatile long fallbacks;
+    private volatile long lastCloudFetchMs = -1;
+    private final DeviceTable table = new DeviceTable();
+    /** Device ID to LAN IP, from the last discovery; LAN-reachable devices are controlled directly over UDP. */
+    private final Map<String, String> lanAddresses = new ConcurrentHashMap<>();
+    /**
+     * Cloud commands of a batch run here. Bounded, so a large batch queues behind {@value #CONTROL_THREADS} calls
+     * instead of starting a thread per device; beyond {@value #CONTROL_QUEUE} waiting calls, commands are rejected.
+     */
+    private final ThreadPoolExecutor controlExecutor = daemonPool("govee-control", CONTROL_THREADS, CONTROL_QUEUE);
+    /** Device-list reads, kept apart from control so a large batch cannot crowd out a refresh. */
+    private final ThreadPoolExecutor readExecutor = daemonPool("govee-read", READ_THREADS, READ_QUEUE);
+
+    public GoveeService(HomelabProperties properties, SnapshotStore snapshotStore, GoveeQuotaTracker quota) {
         this.properties = properties;
+        this.snapshotStore = snapshotStore;
+        this.quota = quota;
+        restTemplate.getInterceptors().add(new UpstreamTraceInterceptor("govee"));
     }
 
     @PostConstruct
@@ -60,38 +129,60 @@ public class GoveeService {
         log.info("Govee: enabled (cloud={}, LAN discovery={})", cloud, g.isLanDiscoveryEnabled());
     }
 
+    @Override
+    public String name() {
+        return SNAPSHOT_KEY;
+    }
+
+    @Override
+    public boolean enabled() {
+        return properties.getGovee().isEnabled();
+    }
+
+    /** A LAN scan listens for {@value #LAN_RECEIVE_TIMEOUT_MS} ms; a cloud read (at most {@code cloud-timeout-ms}) may come on top. */
+    @Override
+    public Duration timeout() {
+        return Duration.ofMillis(LAN_RECEIVE_TIMEOUT_MS + cloudTimeoutMs());
+    }
+
+    /** Which cloud endpoint is tried first, and how often the other one was hedged or fallen back to. */
+    @Override
+    public Map<String, Object> details() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("cloudEndpoint", preferredFor != null ? preferredEndpoint.label : "unknown");
+        out.put("hedgesStarted", hedgesStarted);
+        out.put("hedgesWon", hedgesWon);
+        out.put("fallbacks", fallbacks);
+        out.put("lastCloudFetchMs", lastCloudFetchMs);
+        return out;
+    }
+
+    private long cloudTimeoutMs() {
+        return Math.max(500, properties.getGovee().getCloudTimeoutMs());
+    }
+
     /**
-     * Fetch all Govee devices: cloud (if API key set) + LAN discovery (if enabled). Returns null only if Govee is disabled.
+     * Fetch all Govee devices: cloud (if API key set) + LAN discovery (if enabled).
      */
-    @SuppressWarnings("unchecked")
-    public Map<String, Object> getDevices() {
+    @Override
+    public Map<String, Object> collect() {
         HomelabProperties.Govee g = properties.getGovee();
-        if (!g.isEnabled()) {
-            return null;
-        }
 
         List<Map<String, Object>> allDevices = new ArrayList<>();
         Set<String> seenDeviceIds = new HashSet<>();
 
-        // Cloud API (try current Open API first, then legacy)
+        // Cloud API (the endpoint that worked last, hedged with the other one), at most as often as the quota allows
         if (g.getApiKey() != null && !g.getApiKey().isBlank()) {
-            try {
-                HttpHeaders headers = new HttpHeaders();
-                headers.set("Govee-API-Key", g.getApiKey());
-                headers.set("Content-Type", "application/json");
-                HttpEntity<Void> entity = new HttpEntity<>(headers);
-                List<Map<String, Object>> cloud = fetchDevicesCloud(OPENAPI_DEVICES_URL, entity, "cloud");
-                if (cloud == null || cloud.isEmpty()) {
-                    List<Map<String, Object>> lights = fetchDevicesCloud(LEGACY_LIGHTS_URL, entity, "light");
-                    if (lights != null) for (Map<String, Object> d : lights) addIfNew(d, allDevices, seenDeviceIds);
-                    List<Map<String, Object>> appliances = fetchDevicesCloud(LEGACY_APPLIANCES_URL, entity, "appliance");
-                    if (appliances != null) for (Map<String, Object> d : appliances) addIfNew(d, allDevices, seenDeviceIds);
-                } else {
-                    for (Map<String, Object> d : cloud) addIfNew(d, allDevices, seenDeviceIds);
+            if (quota.cloudReadAllowed(cloudFetchedAt) && cloudRefreshing.compareAndSet(false, true)) {
+                try {
+                    refreshCloudDevices(g.getApiKey());
+                } catch (Exception e) {
+                    log.warn("Govee cloud API failed: {}", e.getMessage());
+                } finally {
+                    cloudRefreshing.set(false);
                 }
-            } catch (Exception e) {
-                log.warn("Govee cloud API failed: {}", e.getMessage());
             }
+            for (Map<String, Object> d : cloudDevices) addIfNew(d, allDevices, seenDeviceIds);
         }
 
         // LAN discovery (same network, LAN enabled in Govee app)
@@ -105,19 +196,357 @@ public class GoveeService {
         }
 
         log.info("Govee: {} devices total", allDevices.size());
+        // Unchanged devices keep last poll's map instance (and the list itself if nothing changed)
+        DeviceTable.Builder devices = table.builder();
+        for (int i = 0; i < allDevices.size(); i++) {
+            Map<String, Object> d = allDevices.get(i);
+            String id = d.get("device") instanceof String s && !s.isBlank() ? s : "#" + i;
+            devices.add(id, d);
+        }
+        List<Map<String, Object>> list = devices.build();
         return Map.of(
-                "devices", allDevices,
-                "total", allDevices.size(),
+                "devices", list,
+                "total", list.size(),
                 "timestamp", System.currentTimeMillis()
         );
     }
 
+    /**
+     * Reads the cloud device list, first from the endpoint that last worked for this API key (the Open API to begin
+     * with). If that answers without devices the other one is asked; if it is merely slow, the other one is started
+     * as well after {@code cloud-hedge-delay-ms} and whichever returns devices first wins. The legacy lights and
+     * appliances lists are always fetched concurrently. A fetch that loses is cancelled, which stops it from being
+     * used but not the HTTP call itself; every call started counts towards the quota. If nothing answers within
+     * {@code cloud-timeout-ms}, or the reads cannot be queued, the previous list is kept.
+     */
+    private void refreshCloudDevices(String apiKey) {
+        HomelabProperties.Govee g = properties.getGovee();
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Govee-API-Key", apiKey);
+        headers.set("Content-Type", "application/json");
+        HttpEntity<Void> entity = new HttpEntity<>(headers);
+
+        CloudEndpoint first = apiKey.equals(preferredFor) ? preferredEndpoint : CloudEndpoint.OPENAPI;
+        CloudEndpoint second = first == CloudEndpoint.OPENAPI ? CloudEndpoint.LEGACY : CloudEndpoint.OPENAPI;
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(cloudTimeoutMs());
+        long hedgeDelayMs = g.getCloudHedgeDelayMs();
+        long hedgeAt = start + TimeUnit.MILLISECONDS.toNanos(Math.max(0, hedgeDelayMs));
+
+        List<CloudFetch> running = new ArrayList<>();
+        running.add(fetchCloud(first, entity));
+        int calls = running.get(0).calls();
+        boolean failed = false;
+        boolean secondStarted = false;
+        boolean hedged = false;
+        CloudFetch winner = null;
+        while (true) {
+            long now = System.nanoTime();
+            long until = !secondStarted && hedgeDelayMs >= 0 && hedgeAt - deadline < 0 ? hedgeAt : deadline;
+            if (!running.isEmpty() && until - now > 0) {
+                try {
+                    CompletableFuture.anyOf(running.stream().map(CloudFetch::future).toArray(CompletableFuture[]::new))
+                            .get(until - now, TimeUnit.NANOSECONDS);
+                } catch (TimeoutException | ExecutionException e) {
+                    // Looked at below
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            for (Iterator<CloudFetch> it = running.iterator(); it.hasNext() && winner == null; ) {
+                CloudFetch f = it.next();
+                if (!f.future().isDone()) continue;
+                it.remove();
+                if (f.future().isCompletedExceptionally()) {
+                    failed = true;
+                    continue;
+                }
+                List<Map<String, Object>> devices = f.future().join();
+                if (!devices.isEmpty()) winner = f;
+            }
+            if (winner != null) break;
+            now = System.nanoTime();
+            if (!secondStarted && (running.isEmpty() || (hedgeDelayMs >= 0 && now - hedgeAt >= 0))) {
+                hedged = !running.isEmpty();
+                if (hedged) hedgesStarted++;
+                else fallbacks++;
+                CloudFetch other = fetchCloud(second, entity);
+                running.add(other);
+                calls += other.calls();
+                secondStarted = true;
+                continue;
+            }
+            if (running.isEmpty() || now - deadline >= 0) break;
+        }
+        for (CloudFetch f : running) f.future().cancel(true);
+        quota.recordRefresh(calls);
+        lastCloudFetchMs = (System.nanoTime() - start) / 1_000_000;
+
+        if (winner != null) {
+            if (hedged && winner.endpoint() == second) hedgesWon++;
+            if (winner.endpoint() != preferredEndpoint || !apiKey.equals(preferredFor)) {
+                log.info("Govee: device list from the {} API for this key", winner.endpoint().label);
+            }
+            preferredEndpoint = winner.endpoint();
+            preferredFor = apiKey;
+            cloudDevices = winner.future().join();
+        } else if (running.isEmpty() && !failed) {
+            // Every endpoint answered, none with devices
+            cloudDevices = List.of();
+        } else if (running.isEmpty()) {
+            log.warn("Govee: cloud device list could not be read (read pool busy), keeping the previous one");
+        } else {
+            log.warn("Govee: no cloud device list within {} ms, keeping the previous one", cloudTimeoutMs());
+        }
+        // Nothing sent (every read rejected): try again on the next poll rather than after a quota-paced interval
+        if (calls > 0) cloudFetchedAt = System.currentTimeMillis();
+    }
+
+    /** Start reading the device list from one endpoint; the legacy lights and appliances calls run side by side. */
+    private CloudFetch fetchCloud(CloudEndpoint endpoint, HttpEntity<Void> entity) {
+        if (endpoint == CloudEndpoint.OPENAPI) {
+            CompletableFuture<List<Map<String, Object>>> devices = async(() -> fetchDevicesCloud(openApiUrl(OPENAPI_DEVICES_PATH), entity, "cloud"));
+            return new CloudFetch(endpoint, devices, started(devices));
+        }
+        CompletableFuture<List<Map<String, Object>>> lights = async(() -> fetchDevicesCloud(legacyUrl(LEGACY_LIGHTS_PATH), entity, "light"));
+        CompletableFuture<List<Map<String, Object>>> appliances = async(() -> fetchDevicesCloud(legacyUrl(LEGACY_APPLIANCES_PATH), entity, "appliance"));
+        return new CloudFetch(endpoint, lights.thenCombine(appliances, (l, a) -> {
+            List<Map<String, Object>> devices = new ArrayList<>();
+            Set<String> seen = new HashSet<>();
+            for (Map<String, Object> d : l) addIfNew(d, devices, seen);
+            for (Map<String, Object> d : a) addIfNew(d, devices, seen);
+            return devices;
+        }), started(lights) + started(appliances));
+    }
+
+    /**
+     * Runs one device-list read on the read pool. A read that cannot be queued (pool full, or shutting down) fails
+     * instead; since the reads themselves never throw, a failed fetch always means no call was made.
+     */
+    private CompletableFuture<List<Map<String, Object>>> async(Supplier<List<Map<String, Object>>> fetch) {
+        try {
+            return CompletableFuture.supplyAsync(fetch, readExecutor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /** 1 if the read was started, 0 if it was rejected. */
+    private static int started(CompletableFuture<?> fetch) {
+        return fetch.isCompletedExceptionally() ? 0 : 1;
+    }
+
+    /** The Open API lists everything in one call; the legacy API needs the lights and the appliances endpoint. */
+    private enum CloudEndpoint {
+        OPENAPI("open"),
+        LEGACY("legacy");
+
+        private final String label;
+
+        CloudEndpoint(String label) {
+            this.label = label;
+        }
+    }
+
+    /** A device-list read from one endpoint, and how many HTTP calls it actually started. */
+    private record CloudFetch(CloudEndpoint endpoint, CompletableFuture<List<Map<String, Object>>> future, int calls) {
+    }
+
+    private String openApiUrl(String path) {
+        return properties.getGovee().getOpenApiBaseUrl().replaceAll("/$", "") + path;
+    }
+
+    private String legacyUrl(String path) {
+        return properties.getGovee().getLegacyBaseUrl().replaceAll("/$", "") + path;
+    }
+
     private void addIfNew(Map<String, Object> device, List<Map<String, Object>> list, Set<String> seen) {
         String id = (String) device.get("device");
         if (id != null && !id.isBlank() && seen.add(id)) list.add(device);
         else if (id == null || id.isBlank()) list.add(device);
     }
 
+    @PreDestroy
+    void shutdown() {
+        controlExecutor.shutdownNow();
+        readExecutor.shutdownNow();
+    }
+
+    /** Fixed pool of daemon threads with a bounded queue; idle threads exit after a minute. */
+    private static ThreadPoolExecutor daemonPool(String name, int threads, int queue) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queue), r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Commands for every device of a configured group ({@code homelab.govee.groups}), or null if there is no such
+     * group. Models are taken from the last device list.
+     */
+    public List<Map<String, Object>> groupCommands(String group, String cmdName, Object cmdValue) {
+        List<String> members = properties.getGovee().getGroups().get(group);
+        if (members == null) return null;
+        Map<String, String> models = new HashMap<>();
+        for (Map<String, Object> d : cloudDevices) models.put(String.valueOf(d.get("device")), String.valueOf(d.get("model")));
+        Map<String, Object> last = snapshotStore.get(SNAPSHOT_KEY);
+        if (last != null && last.get("devices") instanceof List<?> devices) {
+            for (Object o : devices) {
+                if (o instanceof Map<?, ?> d && d.get("device") != null) models.putIfAbsent(String.valueOf(d.get("device")), String.valueOf(d.get("model")));
+            }
+        }
+        List<Map<String, Object>> commands = new ArrayList<>();
+        for (String device : members) {
+            Map<String, Object> c = new HashMap<>();
+            c.put("device", device);
+            c.put("model", models.getOrDefault(device, ""));
+            c.put("name", cmdName);
+            c.put("value", cmdValue);
+            commands.add(c);
+        }
+        return commands;
+    }
+
+    /**
+     * Send several commands at once ({@code device}, {@code model}, {@code name}, {@code value} each) and return one
+     * result per command within {@code timeoutMs} overall. Devices found by LAN discovery get a UDP command right
+     * away, all in one burst; the rest go to the cloud API in parallel. LAN commands are not acknowledged by the
+     * device, so their success only means the datagram was sent.
+     */
+    public Map<String, Object> controlBatch(List<Map<String, Object>> commands, long timeoutMs) {
+        long start = System.nanoTime();
+        long deadline = start + timeoutMs * 1_000_000L;
+        List<Map<String, Object>> results = new ArrayList<>(Collections.nCopies(commands.size(), null));
+        Map<Integer, Future<Map<String, Object>>> cloud = new LinkedHashMap<>();
+
+        // Cloud round trips are slow, so start them first; LAN datagrams then go out while they are in flight
+        List<Integer> lan = new ArrayList<>();
+        for (int i = 0; i < commands.size(); i++) {
+            Map<String, Object> c = commands.get(i);
+            String device = c.get("device") instanceof String d ? d : null;
+            String name = c.get("name") instanceof String n ? n : null;
+            if (device != null && lanAddresses.containsKey(device) && lanCommand(name, c.get("value")) != null) {
+                lan.add(i);
+            } else {
+                String model = c.get("model") instanceof String m ? m : null;
+                Object value = c.get("value");
+                try {
+                    cloud.put(i, controlExecutor.submit(() -> control(device, model, name, value)));
+                } catch (RejectedExecutionException e) {
+                    // Queue full, or shutting down
+                    Map<String, Object> r = result(c, "cloud");
+                    r.put("success", false);
+                    r.put("message", "Too many Govee commands in progress, try again");
+                    r.put("elapsedMs", (System.nanoTime() - start) / 1_000_000);
+                    results.set(i, r);
+                }
+            }
+        }
+        if (!lan.isEmpty()) {
+            UpstreamCallEvent event = UpstreamCallEvent.start("govee-lan", "control");
+            long sent = 0;
+            try (DatagramChannel channel = DatagramChannel.open(StandardProtocolFamily.INET)) {
+                for (int i : lan) {
+                    Map<String, Object> c = commands.get(i);
+                    String device = (String) c.get("device");
+                    Map<String, Object> r = result(c, "lan");
+                    try {
+                        sent += channel.send(ByteBuffer.wrap(lanCommand((String) c.get("name"), c.get("value")).getBytes(StandardCharsets.UTF_8)),
+                                new InetSocketAddress(lanAddresses.get(device), LAN_CONTROL_PORT));
+                        r.put("success", true);
+                    } catch (Exception e) {
+                        r.put("success", false);
+                        r.put("message", e.getMessage());
+                    }
+                    r.put("elapsedMs", (System.nanoTime() - start) / 1_000_000);
+                    results.set(i, r);
+                }
+                event.finish(lan.size() + " sent", sent);
+            } catch (Exception e) {
+                event.fail(e);
+                log.warn("Govee LAN control failed: {}", e.getMessage());
+                for (int i : lan) {
+                    Map<String, Object> r = result(commands.get(i), "lan");
+                    r.put("success", false);
+                    r.put("message", e.getMessage());
+                    results.set(i, r);
+                }
+            }
+        }
+        for (Map.Entry<Integer, Future<Map<String, Object>>> e : cloud.entrySet()) {
+            Map<String, Object> r = result(commands.get(e.getKey()), "cloud");
+            try {
+                Map<String, Object> res = e.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                r.put("success", Boolean.TRUE.equals(res.get("success")));
+                if (res.get("message") != null) r.put("message", res.get("message"));
+            } catch (TimeoutException ex) {
+                e.getValue().cancel(true);
+                r.put("success", false);
+                r.put("message", "No answer within " + timeoutMs + " ms");
+            } catch (Exception ex) {
+                r.put("success", false);
+                r.put("message", ex.getMessage());
+            }
+            r.put("elapsedMs", (System.nanoTime() - start) / 1_000_000);
+            results.set(e.getKey(), r);
+        }
+
+        boolean allOk = results.stream().allMatch(r -> Boolean.TRUE.equals(r.get("success")));
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("success", allOk);
+        out.put("results", results);
+        out.put("elapsedMs", (System.nanoTime() - start) / 1_000_000);
+        return out;
+    }
+
+    private static Map<String, Object> result(Map<String, Object> command, String via) {
+        Map<String, Object> r = new LinkedHashMap<>();
+        r.put("device", command.get("device"));
+        r.put("via", via);
+        return r;
+    }
+
+    /** LAN API message (UDP 4003) for a command, or null if it has no LAN equivalent. */
+    private String lanCommand(String cmdName, Object cmdValue) {
+        if (cmdName == null) return null;
+        Map<String, Object> data = new LinkedHashMap<>();
+        String cmd;
+        switch (cmdName) {
+            case "turn" -> {
+                cmd = "turn";
+                data.put("value", "on".equalsIgnoreCase(String.valueOf(cmdValue)) ? 1 : 0);
+            }
+            case "brightness" -> {
+                cmd = "brightness";
+                data.put("value", brightness(cmdValue));
+            }
+            case "color" -> {
+                int rgb = parseRgb(cmdValue);
+                if (rgb < 0) return null;
+                cmd = "colorwc";
+                data.put("color", Map.of("r", (rgb >> 16) & 0xff, "g", (rgb >> 8) & 0xff, "b", rgb & 0xff));
+                data.put("colorTemInKelvin", 0);
+            }
+            case "colorTem" -> {
+                cmd = "colorwc";
+                data.put("color", Map.of("r", 0, "g", 0, "b", 0));
+                data.put("colorTemInKelvin", Math.max(2000, Math.min(9000, toInt(cmdValue, 4000))));
+            }
+            default -> {
+                return null;
+            }
+        }
+        try {
+            return objectMapper.writeValueAsString(Map.of("msg", Map.of("cmd", cmd, "data", data)));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
     /**
      * Send control command to a Govee device (Control You Device API).
      * Open API format: POST with requestId + payload (sku, device, capability: type/instance/value).
@@ -137,6 +566,10 @@ public class GoveeService {
             out.put("message", "Missing device, model, or command");
             return out;
         }
+        if (!quota.controlAllowed()) {
+            out.put("message", "Govee API quota exhausted, try again after it resets");
+            return out;
+        }
 
         HttpHeaders headers = new HttpHeaders();
         headers.set("Govee-API-Key", g.getApiKey());
@@ -148,10 +581,11 @@ public class GoveeService {
         if (capability != null) {
             try {
                 ResponseEntity<Map> response = restTemplate.exchange(
-                        OPENAPI_CONTROL_URL,
+                        openApiUrl(OPENAPI_CONTROL_PATH),
                         HttpMethod.POST,
                         new HttpEntity<>(openApiControlBody(device, model, capability), headers),
                         Map.class);
+                quota.record("control/openapi", response.getHeaders());
                 Map<String, Object> res = response.getBody();
                 if (res != null && isCode200(res.get("code"))) {
                     out.put("success", true);
@@ -162,6 +596,7 @@ public class GoveeService {
                     log.warn("Govee control (openapi): code={}, message={}, body={}", res.get("code"), lastMessage, res);
                 }
             } catch (Exception e) {
+                recordFailure("control/openapi", e);
                 lastMessage = e.getMessage();
                 log.warn("Govee control (openapi) failed: {}", lastMessage);
             }
@@ -177,7 +612,8 @@ public class GoveeService {
         legacyBody.put("cmd", cmd);
         HttpEntity<Map<String, Object>> legacyEntity = new HttpEntity<>(legacyBody, headers);
         try {
-            ResponseEntity<Map> legacy = restTemplate.exchange(LEGACY_CONTROL_URL, HttpMethod.PUT, legacyEntity, Map.class);
+            ResponseEntity<Map> legacy = restTemplate.exchange(legacyUrl(LEGACY_CONTROL_PATH), HttpMethod.PUT, legacyEntity, Map.class);
+            quota.record("control/legacy", legacy.getHeaders());
             Map<String, Object> leg = legacy.getBody();
             if (leg != null && isCode200(leg.get("code"))) {
                 out.put("success", true);
@@ -188,6 +624,7 @@ public class GoveeService {
                 log.warn("Govee control (legacy) failed: code={}, message={}", leg.get("code"), lastMessage);
             }
         } catch (Exception e) {
+            recordFailure("control/legacy", e);
             if (lastMessage == null) lastMessage = e.getMessage();
             log.warn("Govee control (legacy) failed: {}", e.getMessage());
         }
@@ -222,8 +659,7 @@ public class GoveeService {
                 return cap;
             }
             case "brightness": {
-                int v = toInt(cmdValue, 50);
-                int value = Math.max(0, Math.min(100, v));
+                int value = brightness(cmdValue);
                 Map<String, Object> cap = new HashMap<>();
                 cap.put("type", "devices.capabilities.brightness");
                 cap.put("instance", "brightness");
@@ -253,6 +689,11 @@ public class GoveeService {
         }
     }
 
+    /** Brightness for both LAN and cloud: 1-100 (0 is not a brightness; use turn off), 50 if unreadable. */
+    private static int brightness(Object cmdValue) {
+        return Math.max(1, Math.min(100, toInt(cmdValue, 50)));
+    }
+
     private static int toInt(Object o, int defaultVal) {
         if (o == null) return defaultVal;
         if (o instanceof Number) return ((Number) o).intValue();
@@ -291,58 +732,143 @@ public class GoveeService {
 
     /**
      * Discover Govee devices on LAN via UDP multicast (port 4001). Devices must have LAN enabled in Govee Home app.
+     * <p>
+     * Scans on every LAN interface at once: one UDP channel per interface address, bound to port 4002 on that address
+     * with the multicast scan sent out of that interface, all read through one {@link Selector}. Discovery takes at
+     * most {@link #LAN_RECEIVE_TIMEOUT_MS} in total however many interfaces there are. Replies are de-duplicated by
+     * device ID and each device records the interface it answered on.
      */
-    @SuppressWarnings("unchecked")
     private List<Map<String, Object>> discoverLanDevices() {
-        List<Map<String, Object>> out = new ArrayList<>();
-        try (DatagramSocket socket = new DatagramSocket(LAN_LISTEN_PORT)) {
-            socket.setSoTimeout(LAN_RECEIVE_TIMEOUT_MS);
-            byte[] sendBuf = LAN_SCAN_JSON.getBytes(StandardCharsets.UTF_8);
-            DatagramPacket sendPacket = new DatagramPacket(sendBuf, sendBuf.length, InetAddress.getByName(LAN_MULTICAST), LAN_MULTICAST_PORT);
-            socket.send(sendPacket);
-
-            byte[] recvBuf = new byte[1024];
-            long deadline = System.currentTimeMillis() + LAN_RECEIVE_TIMEOUT_MS;
-            while (System.currentTimeMillis() < deadline) {
-                try {
-                    DatagramPacket recvPacket = new DatagramPacket(recvBuf, recvBuf.length);
-                    socket.receive(recvPacket);
-                    String json = new String(recvPacket.getData(), 0, recvPacket.getLength(), StandardCharsets.UTF_8);
-                    Map<String, Object> root = objectMapper.readValue(json, Map.class);
-                    Object msg = root.get("msg");
-                    if (!(msg instanceof Map)) continue;
-                    Map<String, Object> msgMap = (Map<String, Object>) msg;
-                    if (!"scan".equals(msgMap.get("cmd"))) continue;
-                    Object data = msgMap.get("data");
-                    if (!(data instanceof Map)) continue;
-                    Map<String, Object> dataMap = (Map<String, Object>) data;
-                    String ip = (String) dataMap.get("ip");
-                    String device = (String) dataMap.get("device");
-                    String sku = (String) dataMap.get("sku");
-                    String name = sku != null ? sku : (ip != null ? ip : "Govee (LAN)");
-                    out.add(Map.<String, Object>of(
-                            "device", device != null ? device : "",
-                            "model", sku != null ? sku : "",
-                            "name", name,
-                            "type", "lan",
-                            "ip", ip != null ? ip : "",
-                            "controllable", true,
-                            "supportCmds", List.of()
-                    ));
-                } catch (java.net.SocketTimeoutException e) {
-                    break;
+        List<NetworkInterface> interfaces = lanInterfaces();
+        if (interfaces.isEmpty()) {
+            log.warn("Govee LAN discovery: no usable network interface (configured: {})", properties.getGovee().getLanInterfaces());
+            return Collections.emptyList();
+        }
+        Map<String, Map<String, Object>> found = new LinkedHashMap<>();
+        List<DatagramChannel> channels = new ArrayList<>();
+        UpstreamCallEvent event = UpstreamCallEvent.start("govee-lan", "scan");
+        long received = 0;
+        try (Selector selector = Selector.open()) {
+            InetSocketAddress group = new InetSocketAddress(InetAddress.getByName(LAN_MULTICAST), LAN_MULTICAST_PORT);
+            ByteBuffer scan = ByteBuffer.wrap(LAN_SCAN_JSON.getBytes(StandardCharsets.UTF_8));
+            for (NetworkInterface nic : interfaces) {
+                for (InetAddress addr : Collections.list(nic.getInetAddresses())) {
+                    if (!(addr instanceof Inet4Address)) continue;
+                    DatagramChannel channel = null;
+                    try {
+                        channel = DatagramChannel.open(StandardProtocolFamily.INET);
+                        channels.add(channel);
+                        channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+                        channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, nic);
+                        channel.bind(new InetSocketAddress(addr, LAN_LISTEN_PORT));
+                        channel.configureBlocking(false);
+                        channel.register(selector, SelectionKey.OP_READ, nic.getName());
+                        channel.send(scan.duplicate(), group);
+                    } catch (Exception e) {
+                        log.warn("Govee LAN discovery: cannot scan on {} ({}): {}", nic.getName(), addr.getHostAddress(), e.getMessage());
+                        if (channel != null) channel.close();
+                    }
                 }
             }
-            if (!out.isEmpty()) {
-                log.info("Govee LAN: found {} device(s)", out.size());
+
+            ByteBuffer buf = ByteBuffer.allocate(2048);
+            long deadline = System.nanoTime() + LAN_RECEIVE_TIMEOUT_MS * 1_000_000L;
+            long remainingMs;
+            while (!selector.keys().isEmpty() && (remainingMs = (deadline - System.nanoTime()) / 1_000_000L) > 0) {
+                if (selector.select(remainingMs) == 0) continue;
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    DatagramChannel channel = (DatagramChannel) key.channel();
+                    buf.clear();
+                    while (channel.receive(buf) != null) {
+                        buf.flip();
+                        received += buf.remaining();
+                        Map<String, Object> device = parseLanReply(StandardCharsets.UTF_8.decode(buf).toString(), (String) key.attachment());
+                        if (device != null) {
+                            String id = (String) device.get("device");
+                            found.putIfAbsent(id.isEmpty() ? "ip:" + device.get("ip") : id, device);
+                            if (!id.isEmpty() && !((String) device.get("ip")).isEmpty()) lanAddresses.put(id, (String) device.get("ip"));
+                        }
+                        buf.clear();
+                    }
+                }
             }
+            if (!found.isEmpty()) {
+                log.info("Govee LAN: found {} device(s) on {} interface(s)", found.size(), interfaces.size());
+            }
+            event.finish(found.size() + " found", received);
         } catch (Exception e) {
+            event.fail(e);
             log.warn("Govee LAN discovery failed: {} (is port {} in use? Same network as devices?)", e.getMessage(), LAN_LISTEN_PORT);
             return Collections.emptyList();
+        } finally {
+            for (DatagramChannel channel : channels) {
+                try {
+                    channel.close();
+                } catch (Exception ignored) {
+                    // closing a UDP channel does not fail in practice
+                }
+            }
+        }
+        return new ArrayList<>(found.values());
+    }
+
+    /** Configured interfaces ({@code lan-interfaces}), or every interface that is up, not loopback and supports multicast. */
+    private List<NetworkInterface> lanInterfaces() {
+        List<String> names = properties.getGovee().getLanInterfaces();
+        List<NetworkInterface> out = new ArrayList<>();
+        try {
+            if (names != null && !names.isEmpty()) {
+                for (String name : names) {
+                    NetworkInterface nic = NetworkInterface.getByName(name.trim());
+                    if (nic != null && nic.isUp()) out.add(nic);
+                    else log.warn("Govee LAN discovery: interface {} not found or down", name);
+                }
+            } else {
+                for (NetworkInterface nic : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+                    if (nic.isUp() && !nic.isLoopback() && nic.supportsMulticast()) out.add(nic);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Govee LAN discovery: cannot list network interfaces: {}", e.getMessage());
         }
         return out;
     }
 
+    /** A scan reply as a device map, or null if it is not one. */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> parseLanReply(String json, String iface) {
+        try {
+            Map<String, Object> root = objectMapper.readValue(json, Map.class);
+            Object msg = root.get("msg");
+            if (!(msg instanceof Map)) return null;
+            Map<String, Object> msgMap = (Map<String, Object>) msg;
+            if (!"scan".equals(msgMap.get("cmd"))) return null;
+            Object data = msgMap.get("data");
+            if (!(data instanceof Map)) return null;
+            Map<String, Object> dataMap = (Map<String, Object>) data;
+            String ip = (String) dataMap.get("ip");
+            String device = (String) dataMap.get("device");
+            String sku = (String) dataMap.get("sku");
+            String name = sku != null ? sku : (ip != null ? ip : "Govee (LAN)");
+            return Map.<String, Object>of(
+                    "device", device != null ? device : "",
+                    "model", sku != null ? sku : "",
+                    "name", name,
+                    "type", "lan",
+                    "ip", ip != null ? ip : "",
+                    "interface", iface,
+                    "controllable", true,
+                    "supportCmds", List.of()
+            );
+        } catch (Exception e) {
+            log.debug("Govee LAN: ignoring unparseable reply on {}: {}", iface, e.getMessage());
+            return null;
+        }
+    }
+
     private static boolean isCode200(Object code) {
         if (code == null) return false;
         if (code instanceof Number) return ((Number) code).intValue() == 200;
@@ -350,10 +876,21 @@ public class GoveeService {
         return false;
     }
 
+    /** Count a failed cloud call against the quota if Govee answered at all (4xx/5xx), noting 429s. */
+    private void recordFailure(String endpoint, Exception e) {
+        if (e instanceof HttpClientErrorException.TooManyRequests tooMany) {
+            quota.recordRateLimited(endpoint, tooMany.getResponseHeaders());
+        } else if (e instanceof HttpStatusCodeException status) {
+            quota.record(endpoint, status.getResponseHeaders());
+        }
+    }
+
     @SuppressWarnings("unchecked")
     private List<Map<String, Object>> fetchDevicesCloud(String url, HttpEntity<Void> entity, String type) {
+        String endpoint = "devices/" + type;
         try {
             ResponseEntity<Map> response = restTemplate.exchange(url, HttpMethod.GET, entity, Map.class);
+            quota.record(endpoint, response.getHeaders());
             Map<String, Object> body = response.getBody();
             if (body == null) {
                 log.warn("Govee {}: empty response body", type);
@@ -401,6 +938,7 @@ public class GoveeService {
             }
             return out;
         } catch (Exception e) {
+            recordFailure(endpoint, e);
             log.debug("Govee {} fetch failed: {}", type, e.getMessage());
             return Collections.emptyList();
         }
@@ -0,0 +1,247 @@
+package com.homelab.service;
+
+import com.homelab.collect.Collector;
+import com.homelab.config.HomelabProperties;
+import com.homelab.store.DeviceTable;
+import com.homelab.trace.UpstreamCallEvent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Devices from the kernel's IPv4 neighbor table ({@code homelab.neighbors.arp-file}, normally {@code /proc/net/arp}):
+ * every host this machine has talked to on a directly attached network, with no controller or credentials. Entries
+ * have the same shape as UniFi clients ({@code name, ip, mac, status, site, controller}), with the interface as
+ * {@code site} and {@code "kernel"} as {@code controller}; {@code status} is online while the entry is resolved.
+ * <p>
+ * A poll is one read of a small procfs file. Names come from reverse DNS, looked up concurrently on a few threads
+ * and kept in a bounded cache (negative answers too), so a poll only waits up to {@code resolve-timeout-ms} for
+ * addresses it has not seen before; until a name arrives the IP is shown. Pointing {@code arp-file} at a copy of
+ * the table is enough to run this against fixture data.
+ */
+@Service
+public class NeighborService implements Collector {
+
+    private static final Logger log = LoggerFactory.getLogger(NeighborService.class);
+    private static final String SNAPSHOT_KEY = "neighbors";
+    /** ATF_COM: the entry has a hardware address (incomplete and failed entries do not). */
+    private static final int ATF_COM = 0x2;
+    private static final String NO_MAC = "00:00:00:00:00:00";
+
+    private final HomelabProperties properties;
+    private final DeviceTable table = new DeviceTable();
+    private final ReverseDns dns;
+
+    public NeighborService(HomelabProperties properties) {
+        this.properties = properties;
+        HomelabProperties.Neighbors n = properties.getNeighbors();
+        this.dns = new ReverseDns(Math.max(1, n.getDnsThreads()), Math.max(1, n.getDnsCacheSize()),
+                TimeUnit.SECONDS.toMillis(Math.max(1, n.getDnsTtlSeconds())));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        dns.shutdown();
+    }
+
+    @Override
+    public String name() {
+        return SNAPSHOT_KEY;
+    }
+
+    /** Off when disabled or on a system without the table (not Linux, or no such fixture). */
+    @Override
+    public boolean enabled() {
+        HomelabProperties.Neighbors n = properties.getNeighbors();
+        return n.isEnabled() && Files.isReadable(Path.of(n.getArpFile()));
+    }
+
+    @Override
+    public Duration maxAge() {
+        return Duration.ofSeconds(5);
+    }
+
+    @Override
+    public Duration refreshInterval() {
+        return Duration.ofSeconds(Math.max(1, properties.getNeighbors().getRefreshSeconds()));
+    }
+
+    @Override
+    public Map<String, Object> collect() throws IOException {
+        HomelabProperties.Neighbors n = properties.getNeighbors();
+        String file = n.getArpFile();
+        UpstreamCallEvent event = UpstreamCallEvent.start("neighbors", file);
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(Path.of(file), StandardCharsets.US_ASCII);
+        } catch (IOException e) {
+            event.fail(e);
+            throw e;
+        }
+        List<Entry> entries = parse(lines);
+        event.finish("ok", entries.size());
+
+        Map<String, String> names = n.isResolveHostnames() ? dns.resolve(entries, n.getResolveTimeoutMs()) : Map.of();
+        DeviceTable.Builder devices = table.builder();
+        for (Entry e : entries) {
+            String name = names.get(e.ip());
+            devices.begin(e.mac())
+                    .put("name", name != null ? name : e.ip())
+                    .put("ip", e.ip())
+                    .put("mac", e.mac())
+                    .put("status", e.complete() ? "online" : "offline")
+                    .put("site", e.device())
+                    .put("controller", "kernel")
+                    .end();
+        }
+        List<Map<String, Object>> list = devices.build();
+        return Map.of(
+                "devices", list,
+                "total", list.size(),
+                "timestamp", System.currentTimeMillis()
+        );
+    }
+
+    /**
+     * Rows of {@code /proc/net/arp} ({@code IP address, HW type, Flags, HW address, Mask, Device}) after the header.
+     * Rows without a hardware address are left out: there is nothing to key them by and nothing answered there.
+     */
+    static List<Entry> parse(List<String> lines) {
+        List<Entry> out = new ArrayList<>(Math.max(0, lines.size() - 1));
+        for (int i = 1; i < lines.size(); i++) {
+            String[] f = lines.get(i).trim().split("\\s+");
+            if (f.length < 6) continue;
+            String mac = f[3].toLowerCase();
+            if (mac.equals(NO_MAC) || mac.length() != NO_MAC.length()) continue;
+            int flags;
+            try {
+                flags = Integer.decode(f[2]);
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            out.add(new Entry(f[0], mac, (flags & ATF_COM) != 0, f[5]));
+        }
+        return out;
+    }
+
+    record Entry(String ip, String mac, boolean complete, String device) {
+    }
+
+    /**
+     * Reverse lookups on a fixed pool with an LRU cache of {@code size} addresses, each answer (a name or "none")
+     * kept for {@code ttlMs}. An address is looked up by at most one thread at a time.
+     */
+    private static final class ReverseDns {
+        private final ExecutorService executor;
+        private final int size;
+        private final long ttlMs;
+        /** ip → (name or "" for none, expiry); access order, trimmed to {@link #size}. */
+        private final LinkedHashMap<String, Cached> cache;
+        private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+        ReverseDns(int threads, int size, long ttlMs) {
+            this.size = size;
+            this.ttlMs = ttlMs;
+            this.cache = new LinkedHashMap<>(Math.min(size, 1024) * 2, 0.75f, true);
+            this.executor = Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "neighbor-dns");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+
+        /** Names known for these entries, after waiting up to {@code timeoutMs} for lookups started now. */
+        Map<String, String> resolve(List<Entry> entries, long timeoutMs) {
+            Map<String, String> names = new LinkedHashMap<>();
+            List<String> due = new ArrayList<>();
+            long now = System.currentTimeMillis();
+            synchronized (cache) {
+                for (Entry e : entries) {
+                    Cached c = cache.get(e.ip());
+                    // An expired name is still shown until the new answer is in
+                    if (c != null && !c.name().isEmpty()) names.put(e.ip(), c.name());
+                    if (c == null || c.expiresAt() <= now) due.add(e.ip());
+                }
+            }
+            // Lookups still running from an earlier poll are not waited for again
+            List<String> waiting = new ArrayList<>();
+            List<CompletableFuture<String>> lookups = new ArrayList<>();
+            for (String ip : due) {
+                if (!inFlight.add(ip)) continue;
+                waiting.add(ip);
+                lookups.add(lookup(ip));
+            }
+            if (lookups.isEmpty()) return names;
+            try {
+                CompletableFuture.allOf(lookups.toArray(CompletableFuture[]::new)).get(timeoutMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // The rest keep running and are in the cache for the next poll
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.debug("Reverse DNS failed: {}", e.getMessage());
+            }
+            for (int i = 0; i < waiting.size(); i++) {
+                String name = lookups.get(i).getNow(null);
+                if (name != null) {
+                    if (name.isEmpty()) names.remove(waiting.get(i));
+                    else names.put(waiting.get(i), name);
+                }
+            }
+            return names;
+        }
+
+        private CompletableFuture<String> lookup(String ip) {
+            try {
+                return CompletableFuture.supplyAsync(() -> {
+                    String name = "";
+                    try {
+                        // Literal address: no forward lookup; getCanonicalHostName does the PTR query and returns the IP if none
+                        String host = InetAddress.getByName(ip).getCanonicalHostName();
+                        if (!host.equals(ip)) name = host;
+                    } catch (Exception e) {
+                        log.debug("Reverse DNS for {} failed: {}", ip, e.getMessage());
+                    } finally {
+                        synchronized (cache) {
+                            cache.put(ip, new Cached(name, System.currentTimeMillis() + ttlMs));
+                            if (cache.size() > size) cache.remove(cache.keySet().iterator().next());
+                        }
+                        inFlight.remove(ip);
+                    }
+                    return name;
+                }, executor);
+            } catch (RejectedExecutionException e) {
+                // Shutting down
+                inFlight.remove(ip);
+                return CompletableFuture.completedFuture(null);
+            }
+        }
+
+        void shutdown() {
+            executor.shutdownNow();
+        }
+    }
+
+    private record Cached(String name, long expiresAt) {
+    }
+}
@@ -0,0 +1,201 @@
+package com.homelab.service;
+
+import com.homelab.collect.Collector;
+import com.homelab.config.HomelabProperties;
+import com.homelab.probe.ProbeEngine;
+import com.homelab.store.SnapshotStore;
+import com.homelab.trace.UpstreamCallEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Sweeps every IP the device sources know about (UniFi clients, neighbor-table hosts, Tailscale peers, Govee LAN devices) with
+ * {@link ProbeEngine} every {@code homelab.probe.interval-seconds} and keeps the outcome in the {@code probe}
+ * snapshot, so it is persisted and, in a cluster, replicated. Only the polling node sweeps. Devices come from the
+ * sources' latest snapshots; probing never triggers an upstream call.
+ */
+@Service
+public class ProbeService implements Collector {
+
+    private static final Logger log = LoggerFactory.getLogger(ProbeService.class);
+    private static final String SNAPSHOT_KEY = "probe";
+    private static final List<String> SOURCES = List.of("unifi", "neighbors", "tailscale", "govee");
+
+    private final HomelabProperties properties;
+    private final SnapshotStore snapshotStore;
+
+    public ProbeService(HomelabProperties properties, SnapshotStore snapshotStore) {
+        this.properties = properties;
+        this.snapshotStore = snapshotStore;
+    }
+
+    @Override
+    public String name() {
+        return SNAPSHOT_KEY;
+    }
+
+    @Override
+    public boolean enabled() {
+        return properties.getProbe().isEnabled();
+    }
+
+    @Override
+    public Duration refreshInterval() {
+        return Duration.ofSeconds(Math.max(1, properties.getProbe().getIntervalSeconds()));
+    }
+
+    /**
+     * Every known device with its source and last probe result ({@code reachable}, {@code via}, {@code port},
+     * {@code rttMs}, {@code checkedAt}, {@code lastUpAt}), plus stats of the last sweep. Null when probing is off.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> getResults() {
+        if (!properties.getProbe().isEnabled()) return null;
+        Map<String, Object> snapshot = snapshotStore.get(SNAPSHOT_KEY);
+        Map<String, Object> hosts = snapshot != null && snapshot.get("hosts") instanceof Map<?, ?> h
+                ? (Map<String, Object>) h : Map.of();
+        List<Map<String, Object>> devices = new ArrayList<>();
+        for (String source : SOURCES) {
+            for (Map<String, Object> device : devicesOf(source)) {
+                String ip = ipOf(device);
+                if (ip == null) continue;
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("source", source);
+                entry.put("name", device.get("name"));
+                entry.put("ip", ip);
+                if (hosts.get(ip) instanceof Map<?, ?> result) entry.putAll((Map<String, Object>) result);
+                devices.add(entry);
+            }
+        }
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("devices", devices);
+        if (snapshot != null) {
+            out.put("probed", snapshot.get("probed"));
+            out.put("reachable", snapshot.get("reachable"));
+            out.put("sweepMs", snapshot.get("sweepMs"));
+            out.put("timestamp", snapshot.get("timestamp"));
+        }
+        return out;
+    }
+
+    /** One sweep over all known device IPs. */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> collect() throws Exception {
+        Set<String> ips = new LinkedHashSet<>();
+        for (String source : SOURCES) {
+            for (Map<String, Object> device : devicesOf(source)) {
+                String ip = ipOf(device);
+                if (ip != null) ips.add(ip);
+            }
+        }
+        List<InetAddress> addresses = new ArrayList<>(ips.size());
+        for (String ip : ips) {
+            InetAddress address = literal(ip);
+            if (address != null) addresses.add(address);
+        }
+
+        HomelabProperties.Probe cfg = properties.getProbe();
+        int[] ports = cfg.getPorts().stream().mapToInt(Integer::intValue).toArray();
+        ProbeEngine engine = new ProbeEngine(ports, cfg.getTimeoutMs(), cfg.getMaxSockets(), cfg.isIcmp());
+        UpstreamCallEvent event = UpstreamCallEvent.start("probe", addresses.size() + " hosts");
+        long start = System.nanoTime();
+        List<ProbeEngine.Result> results;
+        try {
+            results = engine.probe(addresses);
+        } catch (Exception e) {
+            event.fail(e);
+            throw e;
+        }
+        long sweepMs = (System.nanoTime() - start) / 1_000_000;
+        event.finish("ok", 0);
+
+        Map<String, Object> previous = snapshotStore.get(SNAPSHOT_KEY);
+        Map<String, Object> previousHosts = previous != null && previous.get("hosts") instanceof Map<?, ?> h
+                ? (Map<String, Object>) h : Map.of();
+        long now = System.currentTimeMillis();
+        Map<String, Object> hosts = new LinkedHashMap<>();
+        int reachable = 0;
+        for (ProbeEngine.Result r : results) {
+            String ip = r.address().getHostAddress();
+            Map<String, Object> entry = r.toMap();
+            entry.put("checkedAt", now);
+            if (r.reachable()) {
+                reachable++;
+                entry.put("lastUpAt", now);
+            } else if (previousHosts.get(ip) instanceof Map<?, ?> old && old.get("lastUpAt") != null) {
+                entry.put("lastUpAt", old.get("lastUpAt"));
+            }
+            hosts.put(ip, entry);
+        }
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("hosts", hosts);
+        snapshot.put("probed", results.size());
+        snapshot.put("reachable", reachable);
+        snapshot.put("sweepMs", sweepMs);
+        snapshot.put("timestamp", now);
+        log.debug("Probe: {} of {} hosts reachable, sweep took {} ms", reachable, results.size(), sweepMs);
+        return snapshot;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> devicesOf(String source) {
+        Map<String, Object> snapshot = snapshotStore.get(source);
+        if (snapshot == null || !(snapshot.get("devices") instanceof List<?> list)) return List.of();
+        List<Map<String, Object>> out = new ArrayList<>(list.size());
+        for (Object o : list) {
+            if (o instanceof Map<?, ?> m) out.add((Map<String, Object>) m);
+        }
+        return out;
+    }
+
+    /** Only literal addresses: a name here would mean a DNS lookup per device per sweep. */
+    private static String ipOf(Map<String, Object> device) {
+        if (!(device.get("ip") instanceof String ip) || ip.isBlank()) return null;
+        return literal(ip.trim()) != null ? ip.trim() : null;
+    }
+
+    /**
+     * The address for a dotted-quad IPv4 or an IPv6 literal, null for anything else; never resolves a name.
+     * IPv4 is parsed here; for a string of hex digits and colons {@link InetAddress#getByName} only ever tries IPv6.
+     */
+    static InetAddress literal(String ip) {
+        try {
+            if (ip.indexOf(':') >= 0) {
+                if (ip.charAt(0) == '.') return null;
+                for (int i = 0; i < ip.length(); i++) {
+                    char c = ip.charAt(i);
+                    if (Character.digit(c, 16) < 0 && c != ':' && c != '.') return null;
+                }
+                return InetAddress.getByName(ip);
+            }
+            String[] parts = ip.split("\\.", -1);
+            if (parts.length != 4) return null;
+            byte[] bytes = new byte[4];
+            for (int i = 0; i < 4; i++) {
+                String part = parts[i];
+                if (part.isEmpty() || part.length() > 3) return null;
+                for (int j = 0; j < part.length(); j++) {
+                    if (part.charAt(j) < '0' || part.charAt(j) > '9') return null;
+                }
+                int value = Integer.parseInt(part);
+                if (value > 255) return null;
+                bytes[i] = (byte) value;
+            }
+            return InetAddress.getByAddress(bytes);
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+}
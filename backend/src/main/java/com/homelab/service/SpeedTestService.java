@@ -2,53 +2,122 @@ package com.homelab.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.homelab.collect.Collector;
+import com.homelab.store.SpeedTestHistory;
+import com.homelab.trace.UpstreamCallEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
-import java.io.InputStream;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * Runs Speedtest CLI and parses JSON. Supports both Ookla CLI (-f json) and Python speedtest-cli (--json).
- * Caches result for 10 minutes.
+ * Runs Speedtest CLI and parses JSON. Supports both Ookla CLI (-f jsonl) and Python speedtest-cli (--json).
+ * A result is served for 10 minutes before the next test; every result is also appended to {@link SpeedTestHistory}.
+ * <p>
+ * Output is read line by line while the process runs. Ookla's progress lines (ping, download, upload) are passed to
+ * {@link #subscribe subscribers} as {@code progress} events, followed by one {@code result} or {@code failed} event.
+ * Runs go through the collector, so any number of subscribers share the one run in flight.
  */
 @Service
-public class SpeedTestService {
+public class SpeedTestService implements Collector {
 
     private static final Logger log = LoggerFactory.getLogger(SpeedTestService.class);
     private static final long CACHE_MS = 10 * 60 * 1000; // 10 minutes
     private static final int PROCESS_TIMEOUT_SEC = 120;
     private static final double BYTES_PER_SEC_TO_MBPS = 1.0 / 125_000; // 1 Mbps = 125000 bytes/s
     private static final double BITS_PER_SEC_TO_MBPS = 1.0 / 1_000_000; // Python CLI uses bits/s
+    private static final String SNAPSHOT_KEY = "speedtest";
 
     private final ObjectMapper objectMapper = new ObjectMapper();
-    private volatile Map<String, Object> cached;
-    private volatile long cacheExpiresAt;
+    private final SpeedTestHistory history;
+    private final List<ProgressListener> listeners = new CopyOnWriteArrayList<>();
+    /** Last progress event of the run in flight, replayed to late subscribers; null between runs. */
+    private volatile Map<String, Object> lastProgress;
+
+    /** Receives {@code progress}, then {@code result} or {@code failed} events; called on the run's thread. */
+    public interface ProgressListener {
+        void onEvent(String type, Map<String, Object> data);
+    }
+
+    public SpeedTestService(SpeedTestHistory history) {
+        this.history = history;
+    }
+
+    @Override
+    public String name() {
+        return SNAPSHOT_KEY;
+    }
+
+    @Override
+    public Duration maxAge() {
+        return Duration.ofMillis(CACHE_MS);
+    }
+
+    @Override
+    public Duration timeout() {
+        return Duration.ofSeconds(PROCESS_TIMEOUT_SEC);
+    }
 
     /**
-     * Run speed test (or return cached result). Returns null if CLI missing or fails.
+     * Run a speed test. Returns null if CLI missing or fails.
      */
-    public Map<String, Object> getSpeedTest() {
-        long now = System.currentTimeMillis();
-        if (cached != null && now < cacheExpiresAt) {
-            return cached;
+    @Override
+    public Map<String, Object> collect() {
+        Map<String, Object> result;
+        try {
+            result = runSpeedTest();
+        } finally {
+            lastProgress = null;
         }
-        Map<String, Object> result = runSpeedTest();
         if (result != null) {
-            cached = result;
-            cacheExpiresAt = now + CACHE_MS;
+            history.append(result);
+            publish("result", result);
+        } else {
+            publish("failed", Map.of("error", true, "message", "Speed test failed or no Speedtest CLI installed"));
         }
         return result;
     }
 
+    /**
+     * Receive the events of the current and following runs until {@link #unsubscribe}. If a run is in flight its
+     * latest progress is delivered straight away.
+     */
+    public void subscribe(ProgressListener listener) {
+        listeners.add(listener);
+        Map<String, Object> progress = lastProgress;
+        if (progress != null) listener.onEvent("progress", progress);
+    }
+
+    public void unsubscribe(ProgressListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void publish(String type, Map<String, Object> data) {
+        for (ProgressListener l : listeners) {
+            try {
+                l.onEvent(type, data);
+            } catch (RuntimeException e) {
+                log.debug("Speedtest listener failed: {}", e.getMessage());
+            }
+        }
+    }
+
     private Map<String, Object> runSpeedTest() {
-        // Try Python speedtest-cli first (--json), then Ookla (-f json)
+        // Try Python speedtest-cli first (--json), then Ookla (-f jsonl, with progress lines)
         String[][] commands = {
                 { "speedtest", "--json" },
-                { "speedtest", "-f", "json" }
+                { "speedtest", "-f", "jsonl", "-p", "yes" }
         };
         for (String[] cmd : commands) {
             Map<String, Object> result = runCommand(cmd);
@@ -60,27 +129,113 @@ public class SpeedTestService {
     private Map<String, Object> runCommand(String[] command) {
         ProcessBuilder pb = new ProcessBuilder(command);
         pb.redirectErrorStream(true);
+        UpstreamCallEvent event = UpstreamCallEvent.start("speedtest", String.join(" ", command));
         try {
             Process p = pb.start();
-            boolean finished = p.waitFor(PROCESS_TIMEOUT_SEC, TimeUnit.SECONDS);
-            if (!finished) {
-                p.destroyForcibly();
+            // Reads below block until output or EOF, so the timeout kills the process, which ends the stream
+            AtomicBoolean timedOut = new AtomicBoolean();
+            CompletableFuture.delayedExecutor(PROCESS_TIMEOUT_SEC, TimeUnit.SECONDS).execute(() -> {
+                if (p.isAlive()) {
+                    timedOut.set(true);
+                    p.destroyForcibly();
+                }
+            });
+            StringBuilder output = new StringBuilder();
+            Map<String, Object> ooklaResult = null;
+            Progress progress = new Progress();
+            long bytes = 0;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    bytes += line.length() + 1;
+                    output.append(line).append('\n');
+                    JsonNode node = parseLine(line);
+                    if (node == null) continue;
+                    String type = node.path("type").asText("");
+                    if ("result".equals(type)) {
+                        ooklaResult = parseOoklaJson(line);
+                    } else if (progress.update(type, node)) {
+                        Map<String, Object> snapshot = progress.toMap();
+                        lastProgress = snapshot;
+                        publish("progress", snapshot);
+                    }
+                }
+            }
+            p.waitFor();
+            if (timedOut.get()) {
+                event.finish("timeout", bytes);
                 log.warn("Speedtest timed out after {}s", PROCESS_TIMEOUT_SEC);
                 return null;
             }
-            String output = new String(p.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            event.finish("exit " + p.exitValue(), bytes);
             if (p.exitValue() != 0) {
                 return null;
             }
-            // Try Ookla format first (ping.latency, download.bandwidth), then Python (top-level download/upload/ping in bits/s)
-            Map<String, Object> result = parseOoklaJson(output);
+            if (ooklaResult != null) return ooklaResult;
+            // Without progress lines: Ookla format (ping.latency, download.bandwidth), then Python (top-level download/upload/ping in bits/s)
+            Map<String, Object> result = parseOoklaJson(output.toString());
             if (result != null) return result;
-            return parsePythonCliJson(output);
+            return parsePythonCliJson(output.toString());
+        } catch (Exception e) {
+            event.fail(e);
+            return null;
+        }
+    }
+
+    private JsonNode parseLine(String line) {
+        if (line.isEmpty() || line.charAt(0) != '{') return null;
+        try {
+            return objectMapper.readTree(line);
         } catch (Exception e) {
             return null;
         }
     }
 
+    /**
+     * Running state of an Ookla run from its jsonl progress lines ({@code type}: ping, download, upload). Earlier
+     * phases keep their last value, so an upload event still carries the download bandwidth.
+     */
+    private static final class Progress {
+        private String phase;
+        private double phaseProgress;
+        private Double pingMs;
+        private Double downloadMbps;
+        private Double uploadMbps;
+
+        /** False for lines that are not progress (testStart, log, ...). */
+        boolean update(String type, JsonNode node) {
+            JsonNode data = node.path(type);
+            switch (type) {
+                case "ping" -> {
+                    if (data.has("latency")) pingMs = data.get("latency").asDouble();
+                }
+                case "download" -> {
+                    if (data.has("bandwidth")) downloadMbps = data.get("bandwidth").asLong() * BYTES_PER_SEC_TO_MBPS;
+                }
+                case "upload" -> {
+                    if (data.has("bandwidth")) uploadMbps = data.get("bandwidth").asLong() * BYTES_PER_SEC_TO_MBPS;
+                }
+                default -> {
+                    return false;
+                }
+            }
+            phase = type;
+            phaseProgress = data.path("progress").asDouble(0);
+            return true;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> out = new LinkedHashMap<>();
+            out.put("phase", phase);
+            out.put("progress", Math.round(phaseProgress * 100) / 100.0);
+            out.put("ping_ms", pingMs != null ? Math.round(pingMs * 10) / 10.0 : null);
+            out.put("download_mbps", downloadMbps != null ? Math.round(downloadMbps * 10) / 10.0 : null);
+            out.put("upload_mbps", uploadMbps != null ? Math.round(uploadMbps * 10) / 10.0 : null);
+            out.put("timestamp", System.currentTimeMillis());
+            return out;
+        }
+    }
+
     /**
      * Parse Ookla CLI JSON: ping.latency (ms), download.bandwidth, upload.bandwidth (bytes/s).
      */
@@ -88,12 +243,14 @@ public class SpeedTestService {
         try {
             JsonNode root = objectMapper.readTree(json);
             double pingMs = 0;
+            double jitterMs = 0;
             double downloadMbps = 0;
             double uploadMbps = 0;
 
             JsonNode ping = root.path("ping");
             if (!ping.isMissingNode()) {
                 pingMs = ping.has("latency") ? ping.get("latency").asDouble() : 0;
+                jitterMs = ping.has("jitter") ? ping.get("jitter").asDouble() : 0;
             }
             JsonNode download = root.path("download");
             if (!download.isMissingNode() && download.has("bandwidth")) {
@@ -111,6 +268,8 @@ public class SpeedTestService {
                     "download_mbps", Math.round(downloadMbps * 10) / 10.0,
                     "upload_mbps", Math.round(uploadMbps * 10) / 10.0,
                     "ping_ms", (int) Math.round(pingMs),
+                    "jitter_ms", Math.round(jitterMs * 10) / 10.0,
+                    "server_id", root.path("server").path("id").asInt(0),
                     "timestamp", System.currentTimeMillis()
             );
         } catch (Exception e) {
@@ -134,6 +293,8 @@ public class SpeedTestService {
                     "download_mbps", Math.round(downloadMbps * 10) / 10.0,
                     "upload_mbps", Math.round(uploadMbps * 10) / 10.0,
                     "ping_ms", (int) Math.round(pingMs),
+                    "jitter_ms", 0.0,
+                    "server_id", root.path("server").path("id").asInt(0),
                     "timestamp", System.currentTimeMillis()
             );
         } catch (Exception e) {
@@ -2,25 +2,43 @@ package com.homelab.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.homelab.collect.Collector;
+import com.homelab.store.DeviceTable;
+import com.homelab.trace.UpstreamCallEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
+import java.time.Duration;
 import java.util.*;
 
 @Service
-public class TailscaleService {
+public class TailscaleService implements Collector {
 
     private static final Logger log = LoggerFactory.getLogger(TailscaleService.class);
+    private static final String SNAPSHOT_KEY = "tailscale";
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final DeviceTable table = new DeviceTable();
+
+    @Override
+    public String name() {
+        return SNAPSHOT_KEY;
+    }
+
+    @Override
+    public Duration timeout() {
+        return Duration.ofSeconds(5);
+    }
 
     /**
      * Fetch Tailscale devices using `tailscale status --json`.
      * Returns null if Tailscale is not available or command fails.
      */
-    public Map<String, Object> getDevices() {
+    @Override
+    public Map<String, Object> collect() {
+        UpstreamCallEvent event = UpstreamCallEvent.start("tailscale", "tailscale status --json");
         try {
             Process process = new ProcessBuilder("tailscale", "status", "--json")
                     .redirectErrorStream(true)
@@ -36,13 +54,14 @@ public class TailscaleService {
             }
             
             int exitCode = process.waitFor();
+            event.finish("exit " + exitCode, output.length());
             if (exitCode != 0) {
                 log.warn("Tailscale status command failed with exit code: {}", exitCode);
                 return null;
             }
             
             JsonNode root = objectMapper.readTree(output.toString());
-            List<Map<String, String>> devices = new ArrayList<>();
+            DeviceTable.Builder devices = table.builder();
             
             // Parse Self (current device)
             if (root.has("Self")) {
@@ -57,7 +76,7 @@ public class TailscaleService {
                 if (self.has("TailscaleIPs") && self.get("TailscaleIPs").isArray() && self.get("TailscaleIPs").size() > 0) {
                     ip = self.get("TailscaleIPs").get(0).asText("");
                 }
-                devices.add(createDeviceMap(dnsName, online, ip, "self"));
+                addDevice(devices, "self", dnsName, online, ip, "self");
             }
             
             // Parse Peers
@@ -73,28 +92,31 @@ public class TailscaleService {
                     if (peer.has("TailscaleIPs") && peer.get("TailscaleIPs").isArray() && peer.get("TailscaleIPs").size() > 0) {
                         ip = peer.get("TailscaleIPs").get(0).asText("");
                     }
-                    devices.add(createDeviceMap(dnsName, online, ip, "peer"));
+                    addDevice(devices, entry.getKey(), dnsName, online, ip, "peer");
                 });
             }
             
+            List<Map<String, Object>> list = devices.build();
             return Map.of(
-                "devices", devices,
-                "total", devices.size(),
+                "devices", list,
+                "total", list.size(),
                 "timestamp", System.currentTimeMillis()
             );
             
         } catch (Exception e) {
+            event.fail(e);
             log.warn("Failed to fetch Tailscale devices: {}", e.getMessage());
             return null;
         }
     }
     
-    private Map<String, String> createDeviceMap(String dnsName, boolean online, String ip, String type) {
-        Map<String, String> device = new HashMap<>();
-        device.put("name", dnsName.isEmpty() ? "Unknown" : dnsName);
-        device.put("ip", ip);
-        device.put("status", online ? "online" : "offline");
-        device.put("type", type);
-        return device;
+    /** Keyed by node key ("self" for this machine) so unchanged devices keep last poll's map instance. */
+    private void addDevice(DeviceTable.Builder devices, String key, String dnsName, boolean online, String ip, String type) {
+        devices.begin(key)
+                .put("name", dnsName.isEmpty() ? "Unknown" : dnsName)
+                .put("ip", ip)
+                .put("status", online ? "online" : "offline")
+                .put("type", type)
+                .end();
     }
 }
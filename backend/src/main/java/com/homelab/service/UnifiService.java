@@ -1,6 +1,10 @@
 package com.homelab.service;
 
+import com.homelab.collect.Collector;
 import com.homelab.config.HomelabProperties;
+import com.homelab.store.DeviceTable;
+import com.homelab.store.SnapshotStore;
+import com.homelab.trace.UpstreamTraceInterceptor;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
 import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
@@ -11,31 +15,101 @@ import org.apache.hc.core5.ssl.SSLContextBuilder;
 import org.springframework.http.*;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import jakarta.annotation.PreDestroy;
 import javax.net.ssl.SSLContext;
+import java.net.HttpCookie;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+/**
+ * Client list from one or more UniFi controllers and sites.
+ * <p>
+ * Every (controller, site) pair is fetched concurrently; a poll waits at most {@code site-timeout-ms} and a site
+ * that has not answered by then contributes its last good list (marked stale in {@code sites}) while its request
+ * keeps running for the next poll. Each controller has a single login session shared by all its sites: only one
+ * login runs at a time and everyone else waits for it, a session is renewed in the background shortly before the
+ * cookie expires, and after a failed login requests fail fast for {@code login-retry-seconds} instead of trying
+ * again, so a wrong password or a restarting controller cannot set off a burst of logins and a lockout.
+ */
 @Service
-public class UnifiService {
+public class UnifiService implements Collector {
 
     private static final Logger log = LoggerFactory.getLogger(UnifiService.class);
-    private static final long SESSION_CACHE_MS = 24 * 60 * 60 * 1000; // 24 hours – avoid login on every poll when left running
+    private static final String SNAPSHOT_KEY = "unifi";
+    private static final String SESSION_KEY_PREFIX = "unifi-session:";
+    /** Key used before multi-controller support; picked up once for the "default" controller. */
+    private static final String LEGACY_SESSION_KEY = "unifi-session";
+    private static final Pattern JWT_EXP = Pattern.compile("\"exp\"\\s*:\\s*(\\d+)");
 
     private final HomelabProperties properties;
+    private final SnapshotStore snapshotStore;
     private final RestTemplate restTemplate;
+    private final Map<String, ControllerSession> sessions = new ConcurrentHashMap<>();
+    private final Map<String, SiteState> sites = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "unifi-poll");
+        t.setDaemon(true);
+        return t;
+    });
 
-    private volatile String cachedCookie;
-    private volatile String cachedCsrf;
-    private volatile long cacheExpiresAt;
-
-    public UnifiService(HomelabProperties properties) {
+    public UnifiService(HomelabProperties properties, SnapshotStore snapshotStore) {
         this.properties = properties;
+        this.snapshotStore = snapshotStore;
         this.restTemplate = createUnifiRestTemplate();
+        restTemplate.getInterceptors().add(new UpstreamTraceInterceptor("unifi"));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /** Reuse the session persisted before the last restart if the controller has not expired it yet. */
+    private ControllerSession restoreSession(String controller) {
+        ControllerSession s = new ControllerSession();
+        Map<String, Object> session = snapshotStore.get(SESSION_KEY_PREFIX + controller);
+        if (session == null && "default".equals(controller)) {
+            session = snapshotStore.get(LEGACY_SESSION_KEY);
+            snapshotStore.remove(LEGACY_SESSION_KEY);
+        }
+        if (session == null || !(session.get("cookie") instanceof String cookie) || cookie.isBlank()) return s;
+        long expiresAt = session.get("expiresAt") instanceof Number n ? n.longValue() : 0;
+        if (expiresAt <= System.currentTimeMillis()) {
+            snapshotStore.remove(SESSION_KEY_PREFIX + controller);
+            return s;
+        }
+        s.restore(new Login(cookie, session.get("csrf") instanceof String csrf ? csrf : null, expiresAt), renewBeforeMs());
+        log.info("UniFi {}: restored persisted session (valid for {} more min)", controller, (expiresAt - System.currentTimeMillis()) / 60_000);
+        return s;
+    }
+
+    private void persistSession(String controller, Login login) {
+        Map<String, Object> session = new HashMap<>();
+        session.put("cookie", login.cookie());
+        session.put("csrf", login.csrf());
+        session.put("expiresAt", login.expiresAt());
+        snapshotStore.put(SESSION_KEY_PREFIX + controller, session);
     }
 
     /** RestTemplate that accepts self-signed certs (for local Unifi controller). Use only for internal homelab. */
@@ -47,6 +121,8 @@ public class UnifiService {
             SSLConnectionSocketFactory sslSocketFactory = new SSLConnectionSocketFactory(ssl, NoopHostnameVerifier.INSTANCE);
             HttpClientConnectionManager cm = PoolingHttpClientConnectionManagerBuilder.create()
                     .setSSLSocketFactory(sslSocketFactory)
+                    .setMaxConnPerRoute(20)
+                    .setMaxConnTotal(100)
                     .build();
             CloseableHttpClient httpClient = HttpClients.custom()
                     .setConnectionManager(cm)
@@ -58,122 +134,273 @@ public class UnifiService {
         }
     }
 
+    @Override
+    public String name() {
+        return SNAPSHOT_KEY;
+    }
+
+    @Override
+    public boolean enabled() {
+        return properties.getUnifi().isEnabled();
+    }
+
+    /** Per controller: whether the session is valid and for how long, and its login count, failures and latency. */
+    @Override
+    public Map<String, Object> details() {
+        if (sessions.isEmpty()) return Map.of();
+        Map<String, Object> out = new LinkedHashMap<>();
+        sessions.forEach((name, s) -> out.put(name, s.stats()));
+        return Map.of("sessions", out);
+    }
+
+    /** Sites are already bounded by {@code site-timeout-ms}; the rest is merging. */
+    @Override
+    public Duration timeout() {
+        return Duration.ofMillis(properties.getUnifi().getSiteTimeoutMs() + 1000);
+    }
+
     /**
-     * Fetch clients from Unifi Controller. Returns null if Unifi is disabled or request fails.
+     * Fetch clients from all configured UniFi controllers and sites. Returns null if no controller is configured or no site returned data.
      */
-    public Map<String, Object> getDevices() {
+    @Override
+    public Map<String, Object> collect() {
         HomelabProperties.Unifi u = properties.getUnifi();
-        if (!u.isEnabled() || u.getBaseUrl() == null || u.getBaseUrl().isBlank()
-                || u.getUsername() == null || u.getUsername().isBlank()
-                || u.getPassword() == null || u.getPassword().isBlank()) {
-            log.warn("UniFi skipped: enabled={}, baseUrl set={}. Create application-local.yml with unifi config.", u.isEnabled(), u.getBaseUrl() != null && !u.getBaseUrl().isBlank());
+        List<HomelabProperties.Controller> controllers = controllers(u);
+        if (controllers.isEmpty()) {
+            log.warn("UniFi skipped: enabled={}, no controller with base URL and credentials. Create application-local.yml with unifi config.", u.isEnabled());
             return null;
         }
-        String base = u.getBaseUrl().replaceAll("/$", "");
-        String clientsPath = u.isUseUnifiOs() ? "/proxy/network/api/s/default/stat/sta" : "/api/s/default/stat/sta";
 
-        try {
-            String cookieHeader = null;
-            String csrfToken = null;
-            long now = System.currentTimeMillis();
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(u.getSiteTimeoutMs());
+        Map<SiteState, CompletableFuture<SiteResult>> polls = new LinkedHashMap<>();
+        for (HomelabProperties.Controller c : controllers) {
+            String name = controllerName(c);
+            ControllerSession session = sessions.computeIfAbsent(name, this::restoreSession);
+            for (String site : c.getSites()) {
+                SiteState state = sites.computeIfAbsent(name + "/" + site, k -> new SiteState(name, site));
+                polls.put(state, state.poll(() -> fetchSite(c, name, session, site, state.table), executor, timeoutNanos));
+            }
+        }
 
-            if (cachedCookie != null && now < cacheExpiresAt) {
-                cookieHeader = cachedCookie;
-                csrfToken = cachedCsrf;
+        long deadline = System.nanoTime() + timeoutNanos;
+        List<Map<String, Object>> devices = new ArrayList<>();
+        List<Map<String, Object>> siteStatus = new ArrayList<>();
+        boolean anyData = false;
+        for (Map.Entry<SiteState, CompletableFuture<SiteResult>> e : polls.entrySet()) {
+            SiteState state = e.getKey();
+            SiteResult result = null;
+            String error = null;
+            // A site known to be slow is not waited for when there is an earlier list to show
+            long wait = state.slow && state.lastGood != null ? 0 : Math.max(0, deadline - System.nanoTime());
+            try {
+                result = e.getValue().get(wait, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException ex) {
+                error = "no answer within " + u.getSiteTimeoutMs() + " ms";
+            } catch (ExecutionException ex) {
+                error = ex.getCause() != null ? ex.getCause().getMessage() : ex.getMessage();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                error = "interrupted";
             }
-            if (cookieHeader == null || cookieHeader.isBlank()) {
-                log.info("UniFi: attempting login to {} (use-unifi-os={})", base, u.isUseUnifiOs());
-                HttpHeaders loginHeaders = new HttpHeaders();
-                loginHeaders.setContentType(MediaType.APPLICATION_JSON);
-                Map<String, String> body = Map.of("username", u.getUsername(), "password", u.getPassword());
-                String[] loginPaths = u.isUseUnifiOs()
-                        ? new String[]{"/api/auth/login", "/proxy/network/api/auth/login"}
-                        : new String[]{"/api/login"};
-                for (String loginPath : loginPaths) {
-                    try {
-                        ResponseEntity<String> loginRespStr = restTemplate.exchange(
-                                base + loginPath,
-                                HttpMethod.POST,
-                                new HttpEntity<>(body, loginHeaders),
-                                String.class
-                        );
-                        HttpHeaders respHeaders = loginRespStr.getHeaders();
-                        List<String> setCookies = respHeaders.get(HttpHeaders.SET_COOKIE);
-                        if (setCookies == null) setCookies = respHeaders.get("Set-Cookie");
-                        if (setCookies == null) setCookies = respHeaders.get("set-cookie");
-                        if (setCookies != null && !setCookies.isEmpty()) {
-                            Map<String, String> cookiePairs = new LinkedHashMap<>();
-                            for (String s : setCookies) {
-                                String nv = s.contains(";") ? s.substring(0, s.indexOf(';')).trim() : s.trim();
-                                int eq = nv.indexOf('=');
-                                if (eq > 0) cookiePairs.put(nv.substring(0, eq).trim(), nv.substring(eq + 1).trim());
-                            }
-                            cookieHeader = cookiePairs.entrySet().stream()
-                                    .map(e -> e.getKey() + "=" + e.getValue())
-                                    .collect(Collectors.joining("; "));
-                            csrfToken = respHeaders.getFirst("X-CSRF-Token");
-                            if (csrfToken == null) csrfToken = respHeaders.getFirst("X-Updated-Csrf-Token");
-                            cachedCookie = cookieHeader;
-                            cachedCsrf = csrfToken;
-                            cacheExpiresAt = now + SESSION_CACHE_MS;
-                            long cacheMin = SESSION_CACHE_MS / 60_000;
-                            log.info("UniFi login ok, session cached for {}", cacheMin >= 60 ? (cacheMin / 60) + " h" : cacheMin + " min");
-                            break;
-                        }
-                    } catch (Exception e) {
-                        log.warn("UniFi login request failed for {}: {}", base + loginPath, e.getMessage());
+            Map<String, Object> status = new LinkedHashMap<>();
+            status.put("controller", state.controller);
+            status.put("site", state.site);
+            SiteResult shown = result != null ? result : state.lastGood;
+            status.put("status", result != null ? "ok" : shown != null ? "stale" : "error");
+            if (shown != null) {
+                devices.addAll(shown.devices());
+                status.put("total", shown.devices().size());
+                status.put("timestamp", shown.fetchedAt());
+                anyData = true;
+            }
+            if (error != null) status.put("message", error);
+            siteStatus.add(status);
+        }
+        if (!anyData) return null;
+
+        return Map.<String, Object>of(
+                "devices", devices,
+                "total", devices.size(),
+                "sites", siteStatus,
+                "timestamp", System.currentTimeMillis()
+        );
+    }
+
+    /** Configured controllers with a base URL and credentials; the single-controller fields count as one named "default". */
+    private static List<HomelabProperties.Controller> controllers(HomelabProperties.Unifi u) {
+        if (!u.isEnabled()) return List.of();
+        List<HomelabProperties.Controller> all = new ArrayList<>(u.getControllers());
+        if (all.isEmpty()) {
+            HomelabProperties.Controller c = new HomelabProperties.Controller();
+            c.setName("default");
+            c.setBaseUrl(u.getBaseUrl());
+            c.setUsername(u.getUsername());
+            c.setPassword(u.getPassword());
+            c.setUseUnifiOs(u.isUseUnifiOs());
+            c.setSites(u.getSites());
+            all.add(c);
+        }
+        all.removeIf(c -> isBlank(c.getBaseUrl()) || isBlank(c.getUsername()) || isBlank(c.getPassword())
+                || c.getSites() == null || c.getSites().isEmpty());
+        return all;
+    }
+
+    private static String controllerName(HomelabProperties.Controller c) {
+        if (!isBlank(c.getName())) return c.getName();
+        String host = URI.create(c.getBaseUrl()).getHost();
+        return host != null ? host : c.getBaseUrl();
+    }
+
+    private static boolean isBlank(String s) {
+        return s == null || s.isBlank();
+    }
+
+    /** One site's client list; on a rejected session logs in again once (shared with the controller's other sites) and retries. */
+    private SiteResult fetchSite(HomelabProperties.Controller c, String name, ControllerSession session, String site, DeviceTable table) {
+        String base = c.getBaseUrl().replaceAll("/$", "");
+        String clientsPath = (c.isUseUnifiOs() ? "/proxy/network/api/s/" : "/api/s/") + site + "/stat/sta";
+        for (int attempt = 0; ; attempt++) {
+            String[] auth = session.current(() -> login(c, name, base), executor, renewBeforeMs(),
+                    TimeUnit.SECONDS.toMillis(properties.getUnifi().getLoginRetrySeconds()));
+            if (auth == null) {
+                throw new IllegalStateException(session.failureMessage(name));
+            }
+            try {
+                HttpHeaders getHeaders = new HttpHeaders();
+                getHeaders.set(HttpHeaders.COOKIE, auth[0]);
+                if (auth[1] != null && !auth[1].isBlank()) {
+                    getHeaders.set("X-CSRF-Token", auth[1]);
+                }
+                ResponseEntity<Map> clientsResp = restTemplate.exchange(
+                        base + clientsPath,
+                        HttpMethod.GET,
+                        new HttpEntity<>(getHeaders),
+                        Map.class
+                );
+                Map<String, Object> data = clientsResp.getBody();
+                if (data == null || !(data.get("data") instanceof List)) {
+                    log.warn("UniFi {}/{} clients response missing data list. Status={}, body={}", name, site, clientsResp.getStatusCode(), data);
+                    throw new IllegalStateException("clients response missing data list");
+                }
+                @SuppressWarnings("unchecked")
+                List<Map<String, Object>> raw = (List<Map<String, Object>>) data.get("data");
+                DeviceTable.Builder devices = table.builder();
+                for (Map<String, Object> d : raw) addDevice(devices, d, name, site);
+                return new SiteResult(devices.build(), System.currentTimeMillis());
+            } catch (HttpClientErrorException e) {
+                if (e.getStatusCode().value() == 403 || e.getStatusCode().value() == 401) {
+                    if (session.invalidate(auth[0])) {
+                        snapshotStore.remove(SESSION_KEY_PREFIX + name);
+                        log.warn("UniFi {} session rejected ({}), cache cleared.", name, e.getStatusCode());
                     }
+                    if (attempt == 0) continue;
                 }
+                log.warn("UniFi {}/{} request failed: {}", name, site, e.getMessage());
+                throw e;
+            } catch (RuntimeException e) {
+                log.warn("UniFi {}/{} request failed: {}", name, site, e.getMessage());
+                throw e;
             }
-            if (cookieHeader == null || cookieHeader.isBlank()) {
-                log.warn("UniFi login returned no cookie from any path. Check credentials and use-unifi-os.");
-                return null;
-            }
+        }
+    }
 
-            HttpHeaders getHeaders = new HttpHeaders();
-            getHeaders.set(HttpHeaders.COOKIE, cookieHeader);
-            if (csrfToken != null && !csrfToken.isBlank()) {
-                getHeaders.set("X-CSRF-Token", csrfToken);
+    private long renewBeforeMs() {
+        return TimeUnit.SECONDS.toMillis(Math.max(0, properties.getUnifi().getRenewBeforeSeconds()));
+    }
+
+    /** Log in to one controller and persist the session; null if no path returned a cookie. Only ever run by {@link ControllerSession}. */
+    private Login login(HomelabProperties.Controller c, String name, String base) {
+        log.info("UniFi: attempting login to {} (use-unifi-os={})", base, c.isUseUnifiOs());
+        HttpHeaders loginHeaders = new HttpHeaders();
+        loginHeaders.setContentType(MediaType.APPLICATION_JSON);
+        Map<String, String> body = Map.of("username", c.getUsername(), "password", c.getPassword());
+        String[] loginPaths = c.isUseUnifiOs()
+                ? new String[]{"/api/auth/login", "/proxy/network/api/auth/login"}
+                : new String[]{"/api/login"};
+        for (String loginPath : loginPaths) {
+            try {
+                ResponseEntity<String> loginRespStr = restTemplate.exchange(
+                        base + loginPath,
+                        HttpMethod.POST,
+                        new HttpEntity<>(body, loginHeaders),
+                        String.class
+                );
+                HttpHeaders respHeaders = loginRespStr.getHeaders();
+                List<String> setCookies = respHeaders.get(HttpHeaders.SET_COOKIE);
+                if (setCookies == null) setCookies = respHeaders.get("Set-Cookie");
+                if (setCookies == null) setCookies = respHeaders.get("set-cookie");
+                if (setCookies != null && !setCookies.isEmpty()) {
+                    Map<String, String> cookiePairs = new LinkedHashMap<>();
+                    for (String s : setCookies) {
+                        String nv = s.contains(";") ? s.substring(0, s.indexOf(';')).trim() : s.trim();
+                        int eq = nv.indexOf('=');
+                        if (eq > 0) cookiePairs.put(nv.substring(0, eq).trim(), nv.substring(eq + 1).trim());
+                    }
+                    String cookie = cookiePairs.entrySet().stream()
+                            .map(e -> e.getKey() + "=" + e.getValue())
+                            .collect(Collectors.joining("; "));
+                    String csrfToken = respHeaders.getFirst("X-CSRF-Token");
+                    if (csrfToken == null) csrfToken = respHeaders.getFirst("X-Updated-Csrf-Token");
+                    long now = System.currentTimeMillis();
+                    long expiresAt = cookieExpiry(setCookies, now);
+                    boolean fromCookie = expiresAt > 0;
+                    if (!fromCookie) expiresAt = now + TimeUnit.SECONDS.toMillis(Math.max(60, properties.getUnifi().getSessionTtlSeconds()));
+                    Login login = new Login(cookie, csrfToken, expiresAt);
+                    persistSession(name, login);
+                    long cacheMin = (expiresAt - now) / 60_000;
+                    log.info("UniFi {} login ok, session valid for {} ({})", name,
+                            cacheMin >= 60 ? (cacheMin / 60) + " h" : cacheMin + " min", fromCookie ? "from cookie" : "session-ttl-seconds");
+                    return login;
+                }
+            } catch (Exception e) {
+                log.warn("UniFi login request failed for {}: {}", base + loginPath, e.getMessage());
             }
-            ResponseEntity<Map> clientsResp = restTemplate.exchange(
-                    base + clientsPath,
-                    HttpMethod.GET,
-                    new HttpEntity<>(getHeaders),
-                    Map.class
-            );
-            Map<String, Object> data = clientsResp.getBody();
-            if (data == null || !(data.get("data") instanceof List)) {
-                log.warn("UniFi clients response missing data list. Status={}, body={}", clientsResp.getStatusCode(), data);
-                return null;
+        }
+        log.warn("UniFi {} login returned no cookie from any path. Check credentials and use-unifi-os.", name);
+        return null;
+    }
+
+    /**
+     * When the session cookies expire, in epoch ms, or 0 if they do not say: the earliest {@code Max-Age} or
+     * {@code Expires} among them, or for UniFi OS the {@code exp} claim of the {@code TOKEN} JWT, whichever is sooner.
+     */
+    static long cookieExpiry(List<String> setCookies, long now) {
+        long earliest = Long.MAX_VALUE;
+        for (String header : setCookies) {
+            List<HttpCookie> cookies;
+            try {
+                cookies = HttpCookie.parse(header);
+            } catch (IllegalArgumentException e) {
+                continue;
             }
-            @SuppressWarnings("unchecked")
-            List<Map<String, Object>> raw = (List<Map<String, Object>>) data.get("data");
-            List<Map<String, String>> devices = raw.stream()
-                    .map(this::toDevice)
-                    .filter(Objects::nonNull)
-                    .toList();
-            return Map.<String, Object>of(
-                    "devices", devices,
-                    "total", devices.size(),
-                    "timestamp", System.currentTimeMillis()
-            );
-        } catch (org.springframework.web.client.HttpClientErrorException e) {
-            if (e.getStatusCode().value() == 403 || e.getStatusCode().value() == 401) {
-                cachedCookie = null;
-                cachedCsrf = null;
-                cacheExpiresAt = 0;
-                log.warn("UniFi session rejected ({}), cache cleared. Will re-login on next request.", e.getStatusCode());
-            } else {
-                log.warn("UniFi request failed: {}", e.getMessage());
+            for (HttpCookie cookie : cookies) {
+                if (cookie.getValue() == null || cookie.getValue().isEmpty()) continue;
+                // HttpCookie turns Expires into a max-age as well; -1 means neither was given, 0 deletes the cookie
+                if (cookie.getMaxAge() > 0) earliest = Math.min(earliest, now + cookie.getMaxAge() * 1000);
+                if ("TOKEN".equalsIgnoreCase(cookie.getName())) {
+                    long exp = jwtExpiry(cookie.getValue());
+                    if (exp > now) earliest = Math.min(earliest, exp);
+                }
             }
-            return null;
-        } catch (Exception e) {
-            log.warn("UniFi request failed: {}", e.getMessage());
-            return null;
         }
+        return earliest == Long.MAX_VALUE ? 0 : earliest;
     }
 
-    private Map<String, String> toDevice(Map<String, Object> raw) {
+    /** {@code exp} of a JWT in epoch ms, without verifying it; 0 if it is not a JWT or has none. */
+    private static long jwtExpiry(String token) {
+        String[] parts = token.split("\\.");
+        if (parts.length != 3) return 0;
+        try {
+            String payload = new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8);
+            Matcher m = JWT_EXP.matcher(payload);
+            return m.find() ? Long.parseLong(m.group(1)) * 1000 : 0;
+        } catch (IllegalArgumentException e) {
+            return 0;
+        }
+    }
+
+    /** Adds the client keyed by MAC; unchanged clients keep last poll's map instance. */
+    private void addDevice(DeviceTable.Builder devices, Map<String, Object> raw, String controller, String site) {
         try {
             String mac = raw.get("mac") != null ? raw.get("mac").toString() : "";
             String ip = raw.get("ip") != null ? raw.get("ip").toString() : "";
@@ -188,9 +415,190 @@ public class UnifiService {
                 online = (nowSec - seen) < 300; // within 5 min
             }
             String status = online ? "online" : "offline";
-            return Map.of("name", name, "ip", ip, "mac", mac, "status", status);
+            devices.begin(mac.isEmpty() ? ip + "/" + name : mac)
+                    .put("name", name).put("ip", ip).put("mac", mac).put("status", status)
+                    .put("site", site).put("controller", controller)
+                    .end();
         } catch (Exception e) {
-            return null;
+            log.debug("UniFi {}/{}: skipping malformed client: {}", controller, site, e.getMessage());
+        }
+    }
+
+    /** Cookie and CSRF token of a successful login and when the cookie expires. */
+    private record Login(String cookie, String csrf, long expiresAt) {
+    }
+
+    /**
+     * Login session of one controller, shared by all its sites. At most one login is in flight at a time; callers
+     * without a valid session wait for it rather than starting their own. Within the renewal window before expiry
+     * the current cookie keeps being used while a login runs in the background.
+     */
+    private static final class ControllerSession {
+        private String cookie;
+        private String csrf;
+        private long expiresAt;
+        private long renewAt;
+        private CompletableFuture<Boolean> login;
+        private long failedAt;
+        private long logins;
+        private long loginFailures;
+        private long renewals;
+        private long lastLoginMs = -1;
+        private long totalLoginMs;
+        private long lastLoginAt;
+
+        synchronized void restore(Login l, long renewBeforeMs) {
+            apply(l, System.currentTimeMillis(), renewBeforeMs);
+        }
+
+        /**
+         * Cookie and CSRF token, waiting for a login (the one in flight, or a new one) if there is no valid session;
+         * null if that login failed or one failed less than {@code retryMs} ago.
+         */
+        String[] current(Supplier<Login> doLogin, Executor executor, long renewBeforeMs, long retryMs) {
+            CompletableFuture<Boolean> pending;
+            synchronized (this) {
+                long now = System.currentTimeMillis();
+                if (valid(now)) {
+                    if (now >= renewAt && login == null && now - failedAt >= retryMs) {
+                        renewals++;
+                        start(doLogin, executor, renewBeforeMs);
+                    }
+                    return new String[]{cookie, csrf};
+                }
+                if (login == null) {
+                    if (now - failedAt < retryMs) return null;
+                    start(doLogin, executor, renewBeforeMs);
+                }
+                pending = login;
+            }
+            try {
+                pending.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException e) {
+                return null;
+            }
+            synchronized (this) {
+                return valid(System.currentTimeMillis()) ? new String[]{cookie, csrf} : null;
+            }
+        }
+
+        /** Drop the session if it is still the one that was rejected; false if another site already replaced it. */
+        synchronized boolean invalidate(String rejectedCookie) {
+            if (!Objects.equals(cookie, rejectedCookie)) return false;
+            cookie = null;
+            csrf = null;
+            expiresAt = 0;
+            return true;
+        }
+
+        synchronized String failureMessage(String name) {
+            return failedAt > 0 ? "login to " + name + " failed, next attempt after login-retry-seconds"
+                    : "login to " + name + " returned no session cookie";
+        }
+
+        synchronized Map<String, Object> stats() {
+            long now = System.currentTimeMillis();
+            Map<String, Object> out = new LinkedHashMap<>();
+            out.put("state", login != null ? "logging-in" : valid(now) ? "valid" : failedAt > 0 ? "failed" : "none");
+            if (valid(now)) out.put("expiresInSeconds", (expiresAt - now) / 1000);
+            out.put("logins", logins);
+            out.put("loginFailures", loginFailures);
+            out.put("renewals", renewals);
+            out.put("lastLoginMs", lastLoginMs);
+            out.put("avgLoginMs", logins > 0 ? totalLoginMs / logins : -1);
+            out.put("lastLoginAt", lastLoginAt);
+            if (failedAt > 0) out.put("lastFailureAt", failedAt);
+            return out;
+        }
+
+        private boolean valid(long now) {
+            return cookie != null && !cookie.isBlank() && now < expiresAt;
+        }
+
+        /** Run a login on the executor; called with the lock held. */
+        private void start(Supplier<Login> doLogin, Executor executor, long renewBeforeMs) {
+            CompletableFuture<Boolean> f = new CompletableFuture<>();
+            login = f;
+            try {
+                executor.execute(() -> {
+                    long t0 = System.nanoTime();
+                    Login result = null;
+                    try {
+                        result = doLogin.get();
+                    } finally {
+                        finish(result, (System.nanoTime() - t0) / 1_000_000, renewBeforeMs);
+                        f.complete(result != null);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Shutting down
+                login = null;
+                f.complete(false);
+            }
+        }
+
+        private synchronized void finish(Login result, long elapsedMs, long renewBeforeMs) {
+            long now = System.currentTimeMillis();
+            logins++;
+            lastLoginMs = elapsedMs;
+            totalLoginMs += elapsedMs;
+            lastLoginAt = now;
+            login = null;
+            if (result != null) {
+                apply(result, now, renewBeforeMs);
+                failedAt = 0;
+            } else {
+                // A failed renewal leaves the current, still valid session in place
+                loginFailures++;
+                failedAt = now;
+            }
+        }
+
+        /** Renew {@code renewBeforeMs} ahead of expiry, or in the last fifth of a short session. */
+        private void apply(Login l, long now, long renewBeforeMs) {
+            cookie = l.cookie();
+            csrf = l.csrf();
+            expiresAt = l.expiresAt();
+            renewAt = expiresAt - Math.min(renewBeforeMs, Math.max(0, expiresAt - now) / 5);
+        }
+    }
+
+    private record SiteResult(List<Map<String, Object>> devices, long fetchedAt) {
+    }
+
+    /** Per (controller, site): the request in flight, if any, the last list that came back, and whether it is slow. */
+    private static final class SiteState {
+        private final String controller;
+        private final String site;
+        private final DeviceTable table = new DeviceTable();
+        private CompletableFuture<SiteResult> inflight;
+        private long inflightSince;
+        private volatile SiteResult lastGood;
+        /** The last fetch took longer than the site timeout (or is still running past it). */
+        private volatile boolean slow;
+
+        SiteState(String controller, String site) {
+            this.controller = controller;
+            this.site = site;
+        }
+
+        /** Start a fetch unless one is still running (a slow site is not asked twice), and return it. */
+        synchronized CompletableFuture<SiteResult> poll(Supplier<SiteResult> fetch, ExecutorService executor, long timeoutNanos) {
+            if (inflight == null || inflight.isDone()) {
+                long start = System.nanoTime();
+                inflightSince = start;
+                inflight = CompletableFuture.supplyAsync(fetch, executor);
+                inflight.whenComplete((r, err) -> {
+                    if (r != null) lastGood = r;
+                    slow = System.nanoTime() - start > timeoutNanos;
+                });
+            } else if (System.nanoTime() - inflightSince > timeoutNanos) {
+                slow = true;
+            }
+            return inflight;
         }
     }
 }
@@ -0,0 +1,371 @@
+package com.homelab.store;
+
+import com.homelab.config.HomelabProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Who sent which device control command, how it went and how long it took, in {@code <data-dir>/audit/}.
+ * <p>
+ * {@link #record} only puts the entry on a lock-free queue, so the control path pays for one allocation and a CAS.
+ * A single writer thread drains the queue every {@code homelab.audit.flush-interval-ms} and appends the batch to
+ * the current segment, a preallocated file of {@code segment-bytes} mapped into memory, then forces the written
+ * range to disk once. A full segment is closed and a new one started; only the newest {@code max-segments} are
+ * kept. If the writer falls far behind, entries beyond {@link #MAX_QUEUED} are dropped and counted.
+ * <p>
+ * Segment layout: 16-byte header (magic, version, segment size, reserved), then records
+ * {@code [int length][long timestamp][int latencyMs][byte success][byte reserved][6 strings]}, each string a
+ * {@code short} byte count and UTF-8 bytes (client, device, model, command, value, via/message), little-endian.
+ * A length of 0 marks the end of the written part, which is how the end is found again after a restart. Each record's
+ * length is written only after its body and after zeroing the length slot behind it, so a record cut off by a crash
+ * is never read back.
+ */
+@Component
+public class ControlAuditLog {
+
+    private static final Logger log = LoggerFactory.getLogger(ControlAuditLog.class);
+    private static final String DIR = "audit";
+    private static final String PREFIX = "control-";
+    private static final String SUFFIX = ".seg";
+    private static final int MAGIC = 0x48_4C_41_55; // "HLAU"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int FIXED_SIZE = Long.BYTES + Integer.BYTES + 2;
+    private static final int MAX_STRING_BYTES = 512;
+    static final int MAX_QUEUED = 65_536;
+
+    private final HomelabProperties properties;
+    private final Queue<Entry> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    /** Oldest first; the last one is being written. */
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "audit-writer");
+        t.setDaemon(true);
+        return t;
+    });
+    private Path dir;
+    private int segmentBytes;
+    /** Only touched by the writer thread (and by close, after it stopped). */
+    private Segment active;
+
+    public ControlAuditLog(HomelabProperties properties) {
+        this.properties = properties;
+    }
+
+    /** One control command as sent; {@code via} is lan or cloud, {@code message} the error if it failed. */
+    public record Entry(long timestamp, String client, String device, String model, String command, String value,
+                        String via, boolean success, int latencyMs, String message) {
+
+        Map<String, Object> toMap() {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("timestamp", timestamp);
+            m.put("client", client);
+            m.put("device", device);
+            m.put("model", model);
+            m.put("command", command);
+            m.put("value", value);
+            m.put("via", via);
+            m.put("success", success);
+            m.put("latencyMs", latencyMs);
+            if (message != null && !message.isEmpty()) m.put("message", message);
+            return m;
+        }
+    }
+
+    @PostConstruct
+    public void open() {
+        HomelabProperties.Audit a = properties.getAudit();
+        if (!a.isEnabled()) return;
+        dir = Path.of(properties.getDataDir()).toAbsolutePath().resolve(DIR);
+        segmentBytes = Math.max(64 * 1024, a.getSegmentBytes());
+        try {
+            Files.createDirectories(dir);
+            try (Stream<Path> files = Files.list(dir)) {
+                files.filter(p -> p.getFileName().toString().startsWith(PREFIX) && p.getFileName().toString().endsWith(SUFFIX))
+                        .sorted()
+                        .forEach(this::loadSegment);
+            }
+            if (!segments.isEmpty()) {
+                Segment last = segments.get(segments.size() - 1);
+                if (last.end + Integer.BYTES < last.size) active = last.mapForWrite();
+            }
+            log.info("Control audit log: {} segment(s) in {}", segments.size(), dir);
+        } catch (IOException e) {
+            log.warn("Control audit log unavailable ({}): {}", dir, e.getMessage());
+            dir = null;
+            return;
+        }
+        long interval = Math.max(50, a.getFlushIntervalMs());
+        writer.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void close() {
+        writer.shutdownNow();
+        try {
+            writer.awaitTermination(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (dir != null) flush();
+    }
+
+    /** Queue an entry for the next batch; never blocks and never does I/O. */
+    public void record(Entry entry) {
+        if (dir == null) return;
+        if (queued.incrementAndGet() > MAX_QUEUED) {
+            queued.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+        queue.offer(entry);
+    }
+
+    /**
+     * Entries with {@code from <= timestamp < to}, for one device if {@code device} is set, newest first and at most
+     * {@code limit}. Only segments whose time span overlaps the range are read.
+     */
+    public List<Map<String, Object>> query(String device, long from, long to, int limit) {
+        List<Map<String, Object>> out = new ArrayList<>();
+        if (dir == null || from >= to || limit <= 0) return out;
+        List<Segment> snapshot = List.copyOf(segments);
+        for (int i = snapshot.size() - 1; i >= 0 && out.size() < limit; i--) {
+            Segment s = snapshot.get(i);
+            if (s.end <= HEADER_SIZE || s.lastTs < from || s.firstTs >= to) continue;
+            List<Map<String, Object>> matches = new ArrayList<>();
+            try {
+                ByteBuffer buf = s.read();
+                while (buf.position() + Integer.BYTES <= buf.limit()) {
+                    int length = buf.getInt();
+                    if (length <= 0 || buf.position() + length > buf.limit()) break;
+                    int next = buf.position() + length;
+                    long ts = buf.getLong(buf.position());
+                    if (ts >= from && ts < to) {
+                        Entry e = decode(buf);
+                        if (device == null || device.equals(e.device())) matches.add(e.toMap());
+                    }
+                    buf.position(next);
+                }
+            } catch (IOException e) {
+                log.warn("Control audit log: reading {} failed: {}", s.path.getFileName(), e.getMessage());
+            }
+            for (int j = matches.size() - 1; j >= 0 && out.size() < limit; j--) out.add(matches.get(j));
+        }
+        return out;
+    }
+
+    /** Segments, bytes written, entries waiting for the writer and entries dropped because it fell behind. */
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", dir != null);
+        out.put("segments", segments.size());
+        out.put("bytes", segments.stream().mapToLong(s -> s.end).sum());
+        out.put("queued", queued.get());
+        out.put("dropped", dropped.get());
+        return out;
+    }
+
+    private void flush() {
+        Segment s = active;
+        int batchStart = s != null ? s.end : 0;
+        int count = 0;
+        try {
+            Entry e;
+            while ((e = queue.poll()) != null) {
+                queued.decrementAndGet();
+                byte[][] strings = strings(e);
+                int length = FIXED_SIZE;
+                for (byte[] b : strings) length += Short.BYTES + b.length;
+                if (s == null || s.end + Integer.BYTES + length + Integer.BYTES > s.size) {
+                    if (s != null) s.force(batchStart);
+                    s = rotate();
+                    batchStart = s.end;
+                }
+                MappedByteBuffer buf = s.mapped;
+                int pos = s.end;
+                // Body first, then a zero length after it (the slot may hold bytes of a record torn by a crash),
+                // and this record's length last: until then the record reads as the end of the segment
+                buf.position(pos + Integer.BYTES);
+                buf.putLong(e.timestamp()).putInt(e.latencyMs()).put((byte) (e.success() ? 1 : 0)).put((byte) 0);
+                for (byte[] b : strings) buf.putShort((short) b.length).put(b);
+                int next = buf.position();
+                buf.putInt(next, 0);
+                buf.putInt(pos, length);
+                if (s.firstTs == Long.MAX_VALUE) s.firstTs = e.timestamp();
+                s.lastTs = Math.max(s.lastTs, e.timestamp());
+                // Readers only look up to end, so publish it after the record is complete
+                s.end = next;
+                count++;
+            }
+            if (count > 0) s.force(batchStart);
+        } catch (IOException e) {
+            log.warn("Control audit log: write failed: {}", e.getMessage());
+        }
+    }
+
+    /** Close the current segment, start the next one and drop the oldest beyond {@code max-segments}. */
+    private Segment rotate() throws IOException {
+        long seq = segments.isEmpty() ? 1 : segments.get(segments.size() - 1).seq + 1;
+        Path file = dir.resolve(String.format("%s%010d%s", PREFIX, seq, SUFFIX));
+        Segment s = new Segment(seq, file, segmentBytes);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            s.mapped = ch.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+        s.mapped.order(ByteOrder.LITTLE_ENDIAN);
+        s.mapped.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, segmentBytes).putInt(12, 0);
+        s.mapped.force(0, HEADER_SIZE);
+        if (active != null) active.mapped = null;
+        active = s;
+        segments.add(s);
+        int keep = Math.max(2, properties.getAudit().getMaxSegments());
+        while (segments.size() > keep) {
+            Segment old = segments.remove(0);
+            Files.deleteIfExists(old.path);
+        }
+        return s;
+    }
+
+    /** Header check and a scan for the end of the records; a segment with a foreign header is left alone. */
+    private void loadSegment(Path file) {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) return;
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+            if (buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION) {
+                log.warn("Control audit log: {} has an unknown header, skipped", file.getFileName());
+                return;
+            }
+            String name = file.getFileName().toString();
+            long seq = Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+            Segment s = new Segment(seq, file, (int) size);
+            int pos = HEADER_SIZE;
+            while (pos + Integer.BYTES <= size) {
+                int length = buf.getInt(pos);
+                // Lengths are written after their record, so a crash mid-record leaves 0 here and the scan stops
+                if (length < FIXED_SIZE || pos + Integer.BYTES + length > size) break;
+                long ts = buf.getLong(pos + Integer.BYTES);
+                if (s.firstTs == Long.MAX_VALUE) s.firstTs = ts;
+                s.lastTs = Math.max(s.lastTs, ts);
+                pos += Integer.BYTES + length;
+            }
+            s.end = pos;
+            segments.add(s);
+        } catch (IOException | NumberFormatException e) {
+            log.warn("Control audit log: could not read {}: {}", file.getFileName(), e.getMessage());
+        }
+    }
+
+    private static Entry decode(ByteBuffer buf) {
+        long ts = buf.getLong();
+        int latency = buf.getInt();
+        boolean success = buf.get() != 0;
+        buf.get();
+        String client = string(buf), device = string(buf), model = string(buf), command = string(buf), value = string(buf);
+        String viaAndMessage = string(buf);
+        int sep = viaAndMessage.indexOf('\n');
+        String via = sep < 0 ? viaAndMessage : viaAndMessage.substring(0, sep);
+        String message = sep < 0 ? null : viaAndMessage.substring(sep + 1);
+        return new Entry(ts, client, device, model, command, value, via, success, latency, message);
+    }
+
+    private static String string(ByteBuffer buf) {
+        int n = buf.getShort() & 0xffff;
+        byte[] b = new byte[n];
+        buf.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private static byte[][] strings(Entry e) {
+        String viaAndMessage = nullToEmpty(e.via()) + (e.message() != null && !e.message().isEmpty() ? "\n" + e.message() : "");
+        return new byte[][]{
+                bytes(e.client()), bytes(e.device()), bytes(e.model()), bytes(e.command()), bytes(e.value()), bytes(viaAndMessage)
+        };
+    }
+
+    private static byte[] bytes(String s) {
+        byte[] b = nullToEmpty(s).getBytes(StandardCharsets.UTF_8);
+        if (b.length <= MAX_STRING_BYTES) return b;
+        // Cut at a character boundary
+        int n = MAX_STRING_BYTES;
+        while (n > 0 && (b[n] & 0xc0) == 0x80) n--;
+        return Arrays.copyOf(b, n);
+    }
+
+    private static String nullToEmpty(String s) {
+        return s != null ? s : "";
+    }
+
+    private static final class Segment {
+        private final long seq;
+        private final Path path;
+        private final int size;
+        /** Offset after the last complete record; written by the writer thread only. */
+        private volatile int end = HEADER_SIZE;
+        private volatile long firstTs = Long.MAX_VALUE;
+        private volatile long lastTs = Long.MIN_VALUE;
+        /** Write mapping while this is the active segment. */
+        private MappedByteBuffer mapped;
+
+        Segment(long seq, Path path, int size) {
+            this.seq = seq;
+            this.path = path;
+            this.size = size;
+        }
+
+        /** Reopen a segment from a previous run for appending. */
+        Segment mapForWrite() throws IOException {
+            try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                mapped = ch.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            return this;
+        }
+
+        /** Records written so far, positioned after the header. */
+        ByteBuffer read() throws IOException {
+            int limit = end;
+            ByteBuffer buf;
+            try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+                buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, limit);
+            }
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+            buf.position(HEADER_SIZE);
+            return buf;
+        }
+
+        /** Written range since {@code from}, plus the zero length that ends it. */
+        void force(int from) {
+            if (mapped != null && end > from) mapped.force(from, end - from + Integer.BYTES);
+        }
+    }
+}
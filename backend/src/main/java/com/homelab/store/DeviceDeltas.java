@@ -0,0 +1,131 @@
+package com.homelab.store;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Versions of each source's device list, so a client that already has one can be sent only what changed.
+ * <p>
+ * Every distinct list a source's snapshot carries under {@code devices} gets the next version number; the last
+ * {@link #HISTORY} versions per source are kept as key → device maps. Given {@code since}, {@link #respond}
+ * answers with the devices that were added or changed ({@code changed: [{key, device}]}) and the keys that went
+ * away ({@code removed}); a version that is unknown (too old, another instance, after a restart) gets the full
+ * list with its {@code keys}. Versions start at a random offset per process, so one from a different backend
+ * instance never matches by accident. Works on whatever snapshot the request is answered with (live, stale or
+ * replica), and unchanged lists cost one comparison because {@link DeviceTable} keeps list instances.
+ */
+@Component
+public class DeviceDeltas {
+
+    /** Versions kept per source; at the dashboard's refresh rate this covers several minutes of changes. */
+    static final int HISTORY = 32;
+
+    private final AtomicLong nextVersion = new AtomicLong(ThreadLocalRandom.current().nextLong(1, 1L << 40));
+    private final Map<String, History> sources = new ConcurrentHashMap<>();
+
+    /**
+     * The snapshot with its device list's {@code version}. With {@code since} (any value) the response is either
+     * a delta against that version ({@code delta: true}, {@code changed}, {@code removed}, no {@code devices}) or
+     * the full list with a parallel {@code keys} array ({@code delta: false}). Snapshots without a device list
+     * (errors) are returned unchanged.
+     *
+     * @param key stable identity of a device within the source (MAC, device id, ...)
+     */
+    public Map<String, Object> respond(String source, Map<String, Object> snapshot, Long since,
+                                       Function<Map<String, Object>, String> key) {
+        if (snapshot == null || !(snapshot.get("devices") instanceof List<?> list)) return snapshot;
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> devices = (List<Map<String, Object>>) list;
+        History history = sources.computeIfAbsent(source, s -> new History());
+        Version current;
+        Version base;
+        synchronized (history) {
+            current = history.current(devices, key);
+            base = since != null ? history.find(since) : null;
+        }
+        Map<String, Object> out = new LinkedHashMap<>(snapshot);
+        out.put("version", current.version);
+        if (since == null) return out;
+        if (base == null) {
+            out.put("delta", false);
+            out.put("keys", current.keys);
+            return out;
+        }
+        out.remove("devices");
+        out.put("delta", true);
+        out.put("since", base.version);
+        List<Map<String, Object>> changed = new ArrayList<>();
+        for (int i = 0; i < current.keys.size(); i++) {
+            String k = current.keys.get(i);
+            Map<String, Object> device = current.list.get(i);
+            Map<String, Object> before = base.byKey.get(k);
+            if (before == device || Objects.equals(before, device)) continue;
+            Map<String, Object> entry = new LinkedHashMap<>(2);
+            entry.put("key", k);
+            entry.put("device", device);
+            changed.add(entry);
+        }
+        List<String> removed = new ArrayList<>();
+        for (String k : base.keys) {
+            if (!current.byKey.containsKey(k)) removed.add(k);
+        }
+        out.put("changed", changed);
+        out.put("removed", removed);
+        return out;
+    }
+
+    private final class History {
+        private final ArrayDeque<Version> versions = new ArrayDeque<>(HISTORY);
+
+        /** Version of this list: the newest one if the list is the same (or equal), otherwise a new one. */
+        Version current(List<Map<String, Object>> devices, Function<Map<String, Object>, String> key) {
+            Version last = versions.peekLast();
+            if (last != null && (last.list == devices || last.list.equals(devices))) return last;
+            Version v = new Version(nextVersion.getAndIncrement(), devices, key);
+            if (versions.size() == HISTORY) versions.removeFirst();
+            versions.addLast(v);
+            return v;
+        }
+
+        Version find(long version) {
+            for (Version v : versions) {
+                if (v.version == version) return v;
+            }
+            return null;
+        }
+    }
+
+    private static final class Version {
+        private final long version;
+        private final List<Map<String, Object>> list;
+        /** Key of each device in {@link #list}, same order; a repeated key gets {@code #n} appended. */
+        private final List<String> keys;
+        private final Map<String, Map<String, Object>> byKey;
+
+        Version(long version, List<Map<String, Object>> list, Function<Map<String, Object>, String> key) {
+            this.version = version;
+            this.list = list;
+            this.keys = new ArrayList<>(list.size());
+            this.byKey = new HashMap<>(list.size() * 2);
+            for (Map<String, Object> device : list) {
+                String k = key.apply(device);
+                if (k == null || k.isEmpty()) k = "?";
+                String unique = k;
+                for (int n = 2; byKey.containsKey(unique); n++) unique = k + "#" + n;
+                keys.add(unique);
+                byKey.put(unique, device);
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.homelab.store;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Builds one source's device list so that consecutive polls share structure: a device whose fields are unchanged
+ * is the same (immutable) map instance as last time, and if nothing at all changed the previous list itself is
+ * returned. Only devices that changed, appeared or moved get new objects, and their string values go through
+ * {@link StringPool#SHARED}, so names/MACs/IPs kept in snapshots are one instance each rather than one per poll.
+ * <p>
+ * Usage per poll: {@code Builder b = table.builder(); b.begin(key).put("name", name).put("ip", ip).end(); ... b.build()}.
+ * One table per source. Builds may overlap (a background refresh and a request); each result is consistent, and
+ * an entry is only ever reused when its values are equal.
+ */
+public final class DeviceTable {
+
+    private final StringPool pool;
+    /** Last entry per key; concurrent so a build can read it while another commits. */
+    private final Map<String, Map<String, Object>> byKey = new ConcurrentHashMap<>();
+    private volatile List<Map<String, Object>> list = List.of();
+
+    public DeviceTable() {
+        this(StringPool.SHARED);
+    }
+
+    public DeviceTable(StringPool pool) {
+        this.pool = pool;
+    }
+
+    public Builder builder() {
+        return new Builder(list);
+    }
+
+    private synchronized List<Map<String, Object>> commit(Builder b) {
+        // The builder only ever compared against the list it started from; another build may have committed since
+        boolean unchanged = b.out == null && b.count == b.previousList.size();
+        if (unchanged && list == b.previousList) return list;
+        List<Map<String, Object>> built = b.out != null ? b.out
+                : unchanged ? b.previousList : new ArrayList<>(b.previousList.subList(0, b.count));
+        if (b.changedKeys != null) {
+            for (int i = 0; i < b.changedKeys.size(); i++) byKey.put(b.changedKeys.get(i), b.changedEntries.get(i));
+        }
+        if (byKey.size() > built.size()) {
+            // Devices went away: drop their entries
+            Set<Map<String, Object>> live = Collections.newSetFromMap(new IdentityHashMap<>());
+            live.addAll(built);
+            byKey.values().removeIf(e -> !live.contains(e));
+        }
+        list = built == b.previousList ? built : Collections.unmodifiableList(built);
+        return list;
+    }
+
+    public final class Builder {
+        private final List<Map<String, Object>> previousList;
+        /** Devices added so far; only materialized once the result stops matching the previous list. */
+        private List<Map<String, Object>> out;
+        private int count;
+        private List<String> changedKeys;
+        private List<Map<String, Object>> changedEntries;
+        /** Fields of the device between {@link #begin} and {@link #end}, reused for every device. */
+        private Object[] row = new Object[16];
+        private int rowLength;
+        private String rowKey;
+
+        private Builder(List<Map<String, Object>> previousList) {
+            this.previousList = previousList;
+        }
+
+        /** Start a device: {@code begin(key).put("name", name).put("ip", ip)...end()}. */
+        public Builder begin(String key) {
+            rowKey = key;
+            rowLength = 0;
+            return this;
+        }
+
+        public Builder put(String field, Object value) {
+            if (rowLength + 2 > row.length) row = Arrays.copyOf(row, row.length * 2);
+            row[rowLength++] = field;
+            row[rowLength++] = value;
+            return this;
+        }
+
+        /** Finish the device; nothing is allocated when the device with this key had exactly these values last time. */
+        public Builder end() {
+            Map<String, Object> prev = byKey.get(rowKey);
+            if (prev != null && sameValues(prev, row, rowLength)) return append(prev);
+            Map<String, Object> entry = new LinkedHashMap<>(rowLength);
+            for (int i = 0; i + 1 < rowLength; i += 2) {
+                entry.put((String) row[i], intern(row[i + 1]));
+            }
+            return changed(rowKey, Collections.unmodifiableMap(entry));
+        }
+
+        /** Add a device that is already a map; the previous instance is kept if it is equal. */
+        public Builder add(String key, Map<String, Object> device) {
+            Map<String, Object> prev = byKey.get(key);
+            if (prev != null && prev.equals(device)) return append(prev);
+            Map<String, Object> entry = new LinkedHashMap<>(device.size() * 2);
+            device.forEach((k, v) -> entry.put(k, intern(v)));
+            return changed(key, Collections.unmodifiableMap(entry));
+        }
+
+        public List<Map<String, Object>> build() {
+            return commit(this);
+        }
+
+        private Builder changed(String key, Map<String, Object> entry) {
+            if (changedKeys == null) {
+                changedKeys = new ArrayList<>();
+                changedEntries = new ArrayList<>();
+            }
+            changedKeys.add(pool.intern(key));
+            changedEntries.add(entry);
+            return append(entry);
+        }
+
+        private Builder append(Map<String, Object> entry) {
+            if (out == null && (count >= previousList.size() || previousList.get(count) != entry)) {
+                out = new ArrayList<>(Math.max(previousList.size(), count + 1));
+                out.addAll(previousList.subList(0, count));
+            }
+            if (out != null) out.add(entry);
+            count++;
+            return this;
+        }
+
+        private Object intern(Object v) {
+            return v instanceof String s ? pool.intern(s) : v;
+        }
+    }
+
+    private static boolean sameValues(Map<String, Object> prev, Object[] fieldsAndValues, int length) {
+        if (prev.size() != length / 2) return false;
+        for (int i = 0; i + 1 < length; i += 2) {
+            if (!Objects.equals(prev.get(fieldsAndValues[i]), fieldsAndValues[i + 1])) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,224 @@
+package com.homelab.store;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.homelab.config.HomelabProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+/**
+ * Last-known snapshot per source (and the UniFi session), persisted to {@code <data-dir>/state.json}.
+ * On startup the file is loaded so the first request for each source can be answered with stale data
+ * while a background refresh fetches the real thing. Writes are coalesced and done off the request path;
+ * the file is replaced atomically (temp file + rename) so a crash never leaves a half-written state.
+ */
+@Component
+public class SnapshotStore {
+
+    private static final Logger log = LoggerFactory.getLogger(SnapshotStore.class);
+    private static final String STATE_FILE = "state.json";
+
+    private final HomelabProperties properties;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    /** Current entries by key: { "savedAt": ms, "data": snapshot }. This is what gets written to disk. */
+    private final Map<String, Map<String, Object>> entries = new ConcurrentHashMap<>();
+    /** Entries loaded from disk that have not yet been replaced by a fresh fetch in this process. */
+    private final Map<String, Map<String, Object>> startup = new ConcurrentHashMap<>();
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(daemon("snapshot-writer"));
+    private final ExecutorService refresher = Executors.newCachedThreadPool(daemon("snapshot-refresh"));
+    private final List<BiConsumer<String, Map<String, Object>>> listeners = new CopyOnWriteArrayList<>();
+
+    public SnapshotStore(HomelabProperties properties) {
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    public void load() {
+        if (!properties.getPersistence().isEnabled()) return;
+        Path file = stateFile();
+        if (!Files.exists(file)) return;
+        try {
+            Map<String, Map<String, Object>> loaded = objectMapper.readValue(file.toFile(), new TypeReference<>() {});
+            for (Map.Entry<String, Map<String, Object>> e : loaded.entrySet()) {
+                if (e.getValue() == null || !(e.getValue().get("data") instanceof Map)) continue;
+                entries.put(e.getKey(), e.getValue());
+                startup.put(e.getKey(), e.getValue());
+            }
+            log.info("Snapshot store: loaded {} entr{} from {}", startup.size(), startup.size() == 1 ? "y" : "ies", file);
+        } catch (Exception e) {
+            log.warn("Snapshot store: could not read {} ({}), starting empty", file, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writer.shutdownNow();
+        refresher.shutdownNow();
+        if (properties.getPersistence().isEnabled()) flush();
+    }
+
+    /**
+     * Record the latest snapshot for a key. The file is rewritten shortly afterwards on a background thread.
+     */
+    public void put(String key, Map<String, Object> data) {
+        if (data == null) return;
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("savedAt", System.currentTimeMillis());
+        entry.put("data", data);
+        entries.put(key, entry);
+        startup.remove(key);
+        scheduleFlush();
+        for (BiConsumer<String, Map<String, Object>> listener : listeners) listener.accept(key, entry);
+    }
+
+    /**
+     * Store a snapshot taken elsewhere (by the cluster leader) with its original time. Listeners are not called,
+     * so a replica is never sent on again.
+     */
+    public void putReplica(String key, long savedAt, Map<String, Object> data) {
+        if (data == null) return;
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("savedAt", savedAt);
+        entry.put("data", data);
+        entries.put(key, entry);
+        startup.remove(key);
+        scheduleFlush();
+    }
+
+    /** Called with (key, { "savedAt", "data" }) after every {@link #put}, on the caller's thread. */
+    public void addListener(BiConsumer<String, Map<String, Object>> listener) {
+        listeners.add(listener);
+    }
+
+    /** All current entries ({ "savedAt", "data" } by key). */
+    public Map<String, Map<String, Object>> entries() {
+        return new TreeMap<>(entries);
+    }
+
+    /** Drop a key (e.g. a UniFi session the controller rejected). */
+    public void remove(String key) {
+        startup.remove(key);
+        if (entries.remove(key) != null) scheduleFlush();
+    }
+
+    /**
+     * Latest snapshot for a key (fresh or loaded from disk), or null.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> get(String key) {
+        Map<String, Object> entry = entries.get(key);
+        return entry != null ? (Map<String, Object>) entry.get("data") : null;
+    }
+
+    /** When the latest snapshot for a key was taken (epoch ms), or 0 if there is none. */
+    public long savedAt(String key) {
+        Map<String, Object> entry = entries.get(key);
+        return entry != null && entry.get("savedAt") instanceof Number n ? n.longValue() : 0;
+    }
+
+    /**
+     * If the key still holds a snapshot loaded from disk at startup, return a copy marked
+     * {@code stale: true} and run {@code refresh} in the background (once). Returns null when there is
+     * nothing persisted or the snapshot has already been replaced, so callers take their normal path.
+     * When the refresh finishes without producing a snapshot the persisted one is dropped as well,
+     * so errors surface on the next request instead of stale data being served forever.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> staleSnapshot(String key, Runnable refresh) {
+        Map<String, Object> entry = startup.get(key);
+        if (entry == null) return null;
+        if (refreshing.add(key)) {
+            refresher.execute(() -> {
+                try {
+                    refresh.run();
+                } catch (Exception e) {
+                    log.debug("Background refresh of {} failed: {}", key, e.getMessage());
+                } finally {
+                    startup.remove(key);
+                    refreshing.remove(key);
+                }
+            });
+        }
+        Map<String, Object> stale = new LinkedHashMap<>((Map<String, Object>) entry.get("data"));
+        stale.put("stale", true);
+        stale.put("savedAt", entry.get("savedAt"));
+        return stale;
+    }
+
+    private void scheduleFlush() {
+        if (!properties.getPersistence().isEnabled()) return;
+        if (flushScheduled.compareAndSet(false, true)) {
+            try {
+                writer.schedule(this::flush, properties.getPersistence().getFlushDelayMs(), TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                flushScheduled.set(false);
+            }
+        }
+    }
+
+    private void flush() {
+        flushScheduled.set(false);
+        Path file = stateFile();
+        Path tmp = null;
+        try {
+            Files.createDirectories(file.getParent());
+            byte[] json = objectMapper.writeValueAsBytes(new TreeMap<>(entries));
+            // createTempFile is owner-only on POSIX, which matters because the UniFi cookie lives here
+            tmp = Files.createTempFile(file.getParent(), STATE_FILE, ".tmp");
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ByteBuffer buf = ByteBuffer.wrap(json);
+                while (buf.hasRemaining()) ch.write(buf);
+                ch.force(true);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            tmp = null;
+        } catch (IOException e) {
+            log.warn("Snapshot store: write to {} failed: {}", file, e.getMessage());
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ignored) { }
+            }
+        }
+    }
+
+    private Path stateFile() {
+        return Path.of(properties.getDataDir()).toAbsolutePath().resolve(STATE_FILE);
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,391 @@
+package com.homelab.store;
+
+import com.homelab.config.HomelabProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Append-only history of speed test runs in {@code <data-dir>/speedtest-history.bin}.
+ * <p>
+ * File layout: 16-byte header (magic, version, record size) followed by fixed-width 32-byte records
+ * (timestamp ms, download Mbps, upload Mbps, ping ms, jitter ms, server id, reserved), little-endian.
+ * Records are appended in time order, so range reads binary-search the file instead of scanning it.
+ * <p>
+ * Percentiles come from log-scale histogram rollups kept in memory and rebuilt from the file at startup:
+ * one per local day, and one per (month, hour-of-day). An aggregate query merges the rollups of every
+ * bucket fully inside the range and only reads raw records for the partial buckets at either edge,
+ * so a query over years of runs touches a few thousand small histograms rather than every record.
+ * Reported percentiles are the geometric midpoints of ~11% wide bins, so within about ±5.5% of the exact value.
+ */
+@Component
+public class SpeedTestHistory {
+
+    private static final Logger log = LoggerFactory.getLogger(SpeedTestHistory.class);
+    private static final String HISTORY_FILE = "speedtest-history.bin";
+    private static final int MAGIC = 0x48_4C_53_54; // "HLST"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 32;
+
+    public enum GroupBy { HOUR, DAY }
+
+    private final HomelabProperties properties;
+    private final ZoneId zone = ZoneId.systemDefault();
+    /** epochDay → rollup */
+    private final TreeMap<Long, Rollup> daily = new TreeMap<>();
+    /** monthIndex * 24 + hourOfDay → rollup (monthIndex = year * 12 + month - 1) */
+    private final TreeMap<Long, Rollup> monthlyByHour = new TreeMap<>();
+    private FileChannel channel;
+    private long recordCount;
+
+    public SpeedTestHistory(HomelabProperties properties) {
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    public synchronized void open() {
+        Path file = Path.of(properties.getDataDir()).toAbsolutePath().resolve(HISTORY_FILE);
+        try {
+            Files.createDirectories(file.getParent());
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (channel.size() < HEADER_SIZE) {
+                writeHeader();
+            } else if (!checkHeader()) {
+                log.warn("Speed test history: {} has an unknown header, history disabled", file);
+                channel.close();
+                channel = null;
+                return;
+            }
+            long body = channel.size() - HEADER_SIZE;
+            if (body % RECORD_SIZE != 0) {
+                // Torn write from a crash: drop the partial record
+                channel.truncate(HEADER_SIZE + body - body % RECORD_SIZE);
+            }
+            recordCount = (channel.size() - HEADER_SIZE) / RECORD_SIZE;
+            rebuildRollups();
+            log.info("Speed test history: {} run(s) in {}", recordCount, file);
+        } catch (IOException e) {
+            log.warn("Speed test history unavailable ({}): {}", file, e.getMessage());
+            channel = null;
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException ignored) { }
+        channel = null;
+    }
+
+    /**
+     * Append a speed test result as produced by {@code SpeedTestService} and update the rollups.
+     */
+    public synchronized void append(Map<String, Object> result) {
+        if (channel == null || result == null) return;
+        Run run = new Run(
+                toLong(result.get("timestamp"), System.currentTimeMillis()),
+                (float) toDouble(result.get("download_mbps")),
+                (float) toDouble(result.get("upload_mbps")),
+                (float) toDouble(result.get("ping_ms")),
+                (float) toDouble(result.get("jitter_ms")),
+                (int) toLong(result.get("server_id"), 0));
+        ByteBuffer buf = ByteBuffer.allocate(RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        run.writeTo(buf);
+        buf.flip();
+        try {
+            long pos = HEADER_SIZE + recordCount * RECORD_SIZE;
+            while (buf.hasRemaining()) pos += channel.write(buf, pos);
+            channel.force(false);
+            recordCount++;
+            addToRollups(run);
+        } catch (IOException e) {
+            log.warn("Speed test history: append failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Runs with {@code from <= timestamp < to}, oldest first, at most {@code limit} (the newest ones are kept).
+     */
+    public synchronized List<Map<String, Object>> range(long from, long to, int limit) {
+        List<Map<String, Object>> out = new ArrayList<>();
+        if (channel == null || from >= to) return out;
+        long start = lowerBound(from);
+        long end = lowerBound(to);
+        start = Math.max(start, end - Math.max(limit, 0));
+        forEachRecord(start, end, run -> out.add(run.toMap()));
+        return out;
+    }
+
+    /**
+     * p5/p50/p95 of download, upload and ping for runs in [from, to), grouped by local hour-of-day or day.
+     */
+    public synchronized Map<String, Object> aggregate(long from, long to, GroupBy groupBy) {
+        TreeMap<Long, Rollup> groups = new TreeMap<>();
+        if (channel != null && from < to) {
+            long fullStart = groupBy == GroupBy.DAY ? nextDayStart(from) : nextMonthStart(from);
+            long fullEnd = groupBy == GroupBy.DAY ? dayStart(to) : monthStart(to);
+            if (fullStart < fullEnd) {
+                if (groupBy == GroupBy.DAY) {
+                    for (Map.Entry<Long, Rollup> e : daily.subMap(epochDay(fullStart), epochDay(fullEnd)).entrySet()) {
+                        groups.computeIfAbsent(e.getKey(), k -> new Rollup()).merge(e.getValue());
+                    }
+                } else {
+                    long lo = monthIndex(fullStart) * 24, hi = monthIndex(fullEnd) * 24;
+                    for (Map.Entry<Long, Rollup> e : monthlyByHour.subMap(lo, hi).entrySet()) {
+                        groups.computeIfAbsent(e.getKey() % 24, k -> new Rollup()).merge(e.getValue());
+                    }
+                }
+                scanInto(groups, groupBy, from, fullStart);
+                scanInto(groups, groupBy, fullEnd, to);
+            } else {
+                scanInto(groups, groupBy, from, to);
+            }
+        }
+        List<Map<String, Object>> rows = new ArrayList<>();
+        long total = 0;
+        for (Map.Entry<Long, Rollup> e : groups.entrySet()) {
+            Rollup r = e.getValue();
+            if (r.count == 0) continue;
+            total += r.count;
+            Map<String, Object> row = new LinkedHashMap<>();
+            if (groupBy == GroupBy.DAY) row.put("day", LocalDate.ofEpochDay(e.getKey()).toString());
+            else row.put("hour", e.getKey().intValue());
+            row.put("count", r.count);
+            row.put("download_mbps", r.percentiles(r.down));
+            row.put("upload_mbps", r.percentiles(r.up));
+            row.put("ping_ms", r.percentiles(r.ping));
+            rows.add(row);
+        }
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("from", from);
+        out.put("to", to);
+        out.put("groupBy", groupBy.name().toLowerCase());
+        out.put("zone", zone.getId());
+        out.put("count", total);
+        out.put("groups", rows);
+        return out;
+    }
+
+    public synchronized long size() {
+        return recordCount;
+    }
+
+    private void scanInto(TreeMap<Long, Rollup> groups, GroupBy groupBy, long from, long to) {
+        if (from >= to) return;
+        forEachRecord(lowerBound(from), lowerBound(to), run -> {
+            long key = groupBy == GroupBy.DAY ? epochDay(run.timestamp) : hourOfDay(run.timestamp);
+            groups.computeIfAbsent(key, k -> new Rollup()).add(run);
+        });
+    }
+
+    private void rebuildRollups() {
+        daily.clear();
+        monthlyByHour.clear();
+        forEachRecord(0, recordCount, this::addToRollups);
+    }
+
+    private void addToRollups(Run run) {
+        daily.computeIfAbsent(epochDay(run.timestamp), k -> new Rollup()).add(run);
+        monthlyByHour.computeIfAbsent(monthIndex(run.timestamp) * 24 + hourOfDay(run.timestamp), k -> new Rollup()).add(run);
+    }
+
+    /** Index of the first record with timestamp >= ts. */
+    private long lowerBound(long ts) {
+        long lo = 0, hi = recordCount;
+        ByteBuffer buf = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            while (lo < hi) {
+                long mid = (lo + hi) >>> 1;
+                buf.clear();
+                readFully(buf, HEADER_SIZE + mid * RECORD_SIZE);
+                if (buf.getLong(0) < ts) lo = mid + 1;
+                else hi = mid;
+            }
+        } catch (IOException e) {
+            log.warn("Speed test history: read failed: {}", e.getMessage());
+        }
+        return lo;
+    }
+
+    private void forEachRecord(long start, long end, Consumer<Run> consumer) {
+        ByteBuffer buf = ByteBuffer.allocate(RECORD_SIZE * 1024).order(ByteOrder.LITTLE_ENDIAN);
+        long pos = HEADER_SIZE + start * RECORD_SIZE;
+        long limit = HEADER_SIZE + end * RECORD_SIZE;
+        try {
+            while (pos < limit) {
+                buf.clear();
+                buf.limit((int) Math.min(buf.capacity(), limit - pos));
+                readFully(buf, pos);
+                buf.flip();
+                if (buf.remaining() < RECORD_SIZE) break;
+                while (buf.remaining() >= RECORD_SIZE) consumer.accept(Run.readFrom(buf));
+                pos += buf.position();
+            }
+        } catch (IOException e) {
+            log.warn("Speed test history: read failed: {}", e.getMessage());
+        }
+    }
+
+    /** Fill {@code buf} (from position 0) with bytes starting at file offset {@code pos}, stopping early at EOF. */
+    private void readFully(ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, pos + buf.position()) < 0) break;
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(RECORD_SIZE).putInt(0).flip();
+        channel.truncate(0);
+        channel.write(header, 0);
+        channel.force(true);
+    }
+
+    private boolean checkHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        channel.read(header, 0);
+        return header.getInt(0) == MAGIC && header.getInt(4) == VERSION && header.getInt(8) == RECORD_SIZE;
+    }
+
+    private long epochDay(long ts) {
+        return Instant.ofEpochMilli(ts).atZone(zone).toLocalDate().toEpochDay();
+    }
+
+    private long hourOfDay(long ts) {
+        return Instant.ofEpochMilli(ts).atZone(zone).getHour();
+    }
+
+    private long monthIndex(long ts) {
+        LocalDate d = Instant.ofEpochMilli(ts).atZone(zone).toLocalDate();
+        return d.getYear() * 12L + d.getMonthValue() - 1;
+    }
+
+    private long dayStart(long ts) {
+        return Instant.ofEpochMilli(ts).atZone(zone).toLocalDate().atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    private long nextDayStart(long ts) {
+        long start = dayStart(ts);
+        return start == ts ? ts : LocalDate.ofEpochDay(epochDay(ts) + 1).atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    private long monthStart(long ts) {
+        return Instant.ofEpochMilli(ts).atZone(zone).toLocalDate().withDayOfMonth(1).atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    private long nextMonthStart(long ts) {
+        long start = monthStart(ts);
+        if (start == ts) return ts;
+        LocalDate next = Instant.ofEpochMilli(ts).atZone(zone).toLocalDate().withDayOfMonth(1).plusMonths(1);
+        return next.atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    private static long toLong(Object o, long defaultVal) {
+        return o instanceof Number n ? n.longValue() : defaultVal;
+    }
+
+    private static double toDouble(Object o) {
+        return o instanceof Number n ? n.doubleValue() : 0;
+    }
+
+    private record Run(long timestamp, float down, float up, float ping, float jitter, int serverId) {
+
+        static Run readFrom(ByteBuffer buf) {
+            Run run = new Run(buf.getLong(), buf.getFloat(), buf.getFloat(), buf.getFloat(), buf.getFloat(), buf.getInt());
+            buf.getInt(); // reserved
+            return run;
+        }
+
+        void writeTo(ByteBuffer buf) {
+            buf.putLong(timestamp).putFloat(down).putFloat(up).putFloat(ping).putFloat(jitter).putInt(serverId).putInt(0);
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("timestamp", timestamp);
+            m.put("download_mbps", Math.round(down * 10) / 10.0);
+            m.put("upload_mbps", Math.round(up * 10) / 10.0);
+            m.put("ping_ms", Math.round(ping * 10) / 10.0);
+            m.put("jitter_ms", Math.round(jitter * 10) / 10.0);
+            m.put("server_id", serverId);
+            return m;
+        }
+    }
+
+    /** Log-scale histograms (0.1 .. 100 000, ~11% wide bins) for download, upload and ping. */
+    private static final class Rollup {
+        private static final int BINS = 128;
+        private static final double MIN = 0.1;
+        private static final double LOG_RATIO = Math.log(1_000_000) / BINS;
+
+        int count;
+        final int[] down = new int[BINS];
+        final int[] up = new int[BINS];
+        final int[] ping = new int[BINS];
+
+        void add(Run run) {
+            count++;
+            down[bin(run.down)]++;
+            up[bin(run.up)]++;
+            ping[bin(run.ping)]++;
+        }
+
+        void merge(Rollup other) {
+            count += other.count;
+            for (int i = 0; i < BINS; i++) {
+                down[i] += other.down[i];
+                up[i] += other.up[i];
+                ping[i] += other.ping[i];
+            }
+        }
+
+        Map<String, Object> percentiles(int[] hist) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("p5", percentile(hist, 0.05));
+            m.put("p50", percentile(hist, 0.50));
+            m.put("p95", percentile(hist, 0.95));
+            return m;
+        }
+
+        private double percentile(int[] hist, double p) {
+            long rank = Math.max(1, (long) Math.ceil(p * count));
+            long seen = 0;
+            for (int i = 0; i < BINS; i++) {
+                seen += hist[i];
+                if (seen >= rank) {
+                    double mid = MIN * Math.exp((i + 0.5) * LOG_RATIO);
+                    return Math.round(mid * 10) / 10.0;
+                }
+            }
+            return 0;
+        }
+
+        private static int bin(float v) {
+            if (!(v > MIN)) return 0;
+            int b = (int) (Math.log(v / MIN) / LOG_RATIO);
+            return Math.min(b, BINS - 1);
+        }
+    }
+}
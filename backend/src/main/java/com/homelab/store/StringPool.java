@@ -0,0 +1,35 @@
+package com.homelab.store;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded intern pool for identifiers that repeat across polls (device names, MACs, IPs, models). A fixed-size,
+ * direct-mapped table: a lookup either returns the pooled instance or replaces the slot, so memory stays bounded
+ * no matter how many distinct strings pass through, and the common case (same names every poll) allocates nothing.
+ * Unlike {@link String#intern()} nothing is pinned for the life of the JVM.
+ */
+public final class StringPool {
+
+    /** Shared by all device sources; 4096 slots is ample for a homelab's devices. */
+    public static final StringPool SHARED = new StringPool(4096);
+
+    private final AtomicReferenceArray<String> table;
+    private final int mask;
+
+    public StringPool(int capacity) {
+        int size = Integer.highestOneBit(Math.max(16, capacity - 1) << 1);
+        this.table = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /** The pooled instance equal to {@code s}, or {@code s} itself (now pooled) if there was none. */
+    public String intern(String s) {
+        if (s == null || s.isEmpty()) return s;
+        int h = s.hashCode();
+        int slot = (h ^ (h >>> 16)) & mask;
+        String pooled = table.get(slot);
+        if (pooled != null && pooled.equals(s)) return pooled;
+        table.set(slot, s);
+        return s;
+    }
+}
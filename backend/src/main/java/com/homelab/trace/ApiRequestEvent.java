@@ -0,0 +1,36 @@
+package com.homelab.trace;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Handling of one {@code /api} request, from the servlet filter to the last byte written. */
+@Name("homelab.ApiRequest")
+@Label("API Request")
+@Category({"Homelab", "API"})
+@Description("Handling of a dashboard /api request")
+@StackTrace(false)
+public class ApiRequestEvent extends jdk.jfr.Event {
+
+    @Label("Method")
+    String method;
+
+    @Label("Route")
+    @Description("Matched mapping, e.g. /api/govee-devices/{device}; the raw path if none matched")
+    String route;
+
+    @Label("Status")
+    int status;
+
+    @Label("Bytes")
+    @Description("Response body bytes written")
+    @DataAmount
+    long bytes;
+
+    @Label("Outcome")
+    @Description("ok, error (4xx/5xx) or the exception class")
+    String outcome;
+}
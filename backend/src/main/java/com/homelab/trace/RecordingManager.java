@@ -0,0 +1,167 @@
+package com.homelab.trace;
+
+import com.homelab.config.HomelabProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * One in-process JFR recording with the JDK's {@code default} or {@code profile} settings plus the homelab
+ * events ({@link UpstreamCallEvent}, {@link ApiRequestEvent}) above {@code homelab.jfr.threshold-ms}. It keeps a
+ * rolling window ({@code max-age-minutes}, {@code max-size-mb}) so it can stay on; dumps go to
+ * {@code <data-dir>/jfr/} and only the newest {@code keep-dumps} files are kept.
+ */
+@Component
+public class RecordingManager {
+
+    private static final Logger log = LoggerFactory.getLogger(RecordingManager.class);
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final HomelabProperties properties;
+    private Recording recording;
+    private String settings;
+
+    public RecordingManager(HomelabProperties properties) {
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    void startOnBoot() {
+        HomelabProperties.Jfr cfg = properties.getJfr();
+        if (!cfg.isStartOnBoot()) return;
+        try {
+            start(cfg.getSettings(), null, null);
+        } catch (Exception e) {
+            log.warn("JFR: could not start recording on boot: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    synchronized void shutdown() {
+        if (recording != null) recording.close();
+    }
+
+    /**
+     * Start the recording; null arguments fall back to the configured values.
+     *
+     * @throws IllegalStateException if one is already running
+     * @throws IllegalArgumentException for an unknown settings name
+     */
+    public synchronized Map<String, Object> start(String settingsName, Integer maxAgeMinutes, Integer maxSizeMb) {
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            throw new IllegalStateException("A recording is already running");
+        }
+        HomelabProperties.Jfr cfg = properties.getJfr();
+        String name = settingsName != null ? settingsName : cfg.getSettings();
+        Configuration configuration;
+        try {
+            configuration = Configuration.getConfiguration(name);
+        } catch (IOException | ParseException e) {
+            throw new IllegalArgumentException("Unknown JFR settings '" + name + "' (use default or profile)");
+        }
+        if (recording != null) recording.close();
+        Recording r = new Recording(configuration);
+        r.setName("homelab");
+        r.setToDisk(true);
+        r.setMaxAge(Duration.ofMinutes(maxAgeMinutes != null ? maxAgeMinutes : cfg.getMaxAgeMinutes()));
+        r.setMaxSize((maxSizeMb != null ? maxSizeMb : cfg.getMaxSizeMb()) * 1024L * 1024L);
+        Duration threshold = Duration.ofMillis(cfg.getThresholdMs());
+        r.enable(UpstreamCallEvent.class).withThreshold(threshold);
+        r.enable(ApiRequestEvent.class).withThreshold(threshold);
+        r.start();
+        recording = r;
+        settings = name;
+        log.info("JFR: recording started ({} settings, threshold {} ms)", name, cfg.getThresholdMs());
+        return status();
+    }
+
+    /** Stop the recording, dumping what it holds first. Returns the dump, or null if nothing was running. */
+    public synchronized Path stop() throws IOException {
+        if (recording == null || recording.getState() != RecordingState.RUNNING) return null;
+        Path file = dump();
+        recording.stop();
+        recording.close();
+        recording = null;
+        log.info("JFR: recording stopped, dumped to {}", file);
+        return file;
+    }
+
+    /** Write the current window to a new file. Returns null if nothing is running. */
+    public synchronized Path dump() throws IOException {
+        if (recording == null || recording.getState() != RecordingState.RUNNING) return null;
+        Path dir = dumpDir();
+        Files.createDirectories(dir);
+        Path file = dir.resolve("homelab-" + LocalDateTime.now().format(FILE_TIME) + ".jfr");
+        recording.dump(file);
+        prune(dir);
+        return file;
+    }
+
+    public synchronized Map<String, Object> status() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        boolean running = recording != null && recording.getState() == RecordingState.RUNNING;
+        out.put("running", running);
+        if (running) {
+            out.put("settings", settings);
+            out.put("startedAt", recording.getStartTime().toEpochMilli());
+            out.put("maxAgeMinutes", recording.getMaxAge().toMinutes());
+            out.put("maxSizeMb", recording.getMaxSize() / (1024 * 1024));
+        }
+        out.put("thresholdMs", properties.getJfr().getThresholdMs());
+        out.put("dumps", dumps(dumpDir()).stream().map(p -> p.getFileName().toString()).toList());
+        return out;
+    }
+
+    /** A previous dump by file name, or null if there is none (names outside the dump directory are refused). */
+    public Path dumpFile(String name) {
+        Path dir = dumpDir();
+        Path file = dir.resolve(name).normalize();
+        if (!file.getParent().equals(dir) || !name.endsWith(".jfr") || !Files.isRegularFile(file)) return null;
+        return file;
+    }
+
+    private Path dumpDir() {
+        return Path.of(properties.getDataDir()).toAbsolutePath().normalize().resolve("jfr");
+    }
+
+    private void prune(Path dir) {
+        List<Path> files = dumps(dir);
+        for (int i = properties.getJfr().getKeepDumps(); i < files.size(); i++) {
+            try {
+                Files.deleteIfExists(files.get(i));
+            } catch (IOException e) {
+                log.debug("JFR: could not delete old dump {}: {}", files.get(i), e.getMessage());
+            }
+        }
+    }
+
+    /** Dumps in the directory, newest first. */
+    private static List<Path> dumps(Path dir) {
+        if (!Files.isDirectory(dir)) return List.of();
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.filter(p -> p.getFileName().toString().endsWith(".jfr"))
+                    .sorted(Comparator.comparing((Path p) -> p.getFileName().toString()).reversed())
+                    .toList();
+        } catch (IOException e) {
+            return List.of();
+        }
+    }
+}
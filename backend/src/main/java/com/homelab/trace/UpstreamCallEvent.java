@@ -0,0 +1,68 @@
+package com.homelab.trace;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One interaction with something outside the JVM: an HTTP call to UniFi, Govee or an agent, a Govee LAN
+ * datagram exchange, or a {@code tailscale}/{@code speedtest} process run. Duration is the event's own.
+ * <p>
+ * {@code UpstreamCallEvent e = UpstreamCallEvent.start("unifi", "/api/auth/login"); ... e.finish("200", bytes);}
+ * costs next to nothing while no recording has the event enabled.
+ */
+@Name("homelab.UpstreamCall")
+@Label("Upstream Call")
+@Category({"Homelab", "Upstream"})
+@Description("Call from the backend to an upstream service or process")
+@StackTrace(false)
+public class UpstreamCallEvent extends jdk.jfr.Event {
+
+    @Label("Source")
+    @Description("unifi, govee, govee-lan, agent, tailscale, speedtest, neighbors or probe")
+    String source;
+
+    @Label("Endpoint")
+    @Description("URL path, LAN command or command line")
+    String endpoint;
+
+    @Label("Bytes")
+    @Description("Response bytes received (sent, for fire-and-forget LAN commands); -1 if unknown")
+    @DataAmount
+    long bytes = -1;
+
+    @Label("Outcome")
+    @Description("HTTP status, exit code, ok, timeout or the exception class")
+    String outcome;
+
+    /** Not recorded (transient); makes a later {@link #fail} after {@link #finish} a no-op. */
+    private transient boolean finished;
+
+    public static UpstreamCallEvent start(String source, String endpoint) {
+        UpstreamCallEvent event = new UpstreamCallEvent();
+        if (event.isEnabled()) {
+            event.source = source;
+            event.endpoint = endpoint;
+            event.begin();
+        }
+        return event;
+    }
+
+    public void finish(String outcome, long bytes) {
+        if (!isEnabled() || finished) return;
+        finished = true;
+        end();
+        if (shouldCommit()) {
+            this.outcome = outcome;
+            this.bytes = bytes;
+            commit();
+        }
+    }
+
+    public void fail(Throwable t) {
+        finish(t.getClass().getSimpleName(), -1);
+    }
+}
@@ -0,0 +1,99 @@
+package com.homelab.trace;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Emits an {@link UpstreamCallEvent} per RestTemplate exchange: endpoint is the URL path, outcome the HTTP status,
+ * bytes what was read of the response body. The event ends when RestTemplate closes the response, so it covers
+ * reading the body too. Does nothing (no wrapping) while the event is not being recorded.
+ */
+public class UpstreamTraceInterceptor implements ClientHttpRequestInterceptor {
+
+    private final String source;
+
+    public UpstreamTraceInterceptor(String source) {
+        this.source = source;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        UpstreamCallEvent event = UpstreamCallEvent.start(source, request.getURI().getPath());
+        if (!event.isEnabled()) return execution.execute(request, body);
+        try {
+            return new TracedResponse(execution.execute(request, body), event);
+        } catch (IOException | RuntimeException e) {
+            event.fail(e);
+            throw e;
+        }
+    }
+
+    private static final class TracedResponse implements ClientHttpResponse {
+        private final ClientHttpResponse delegate;
+        private final UpstreamCallEvent event;
+        private long bytes;
+        private InputStream body;
+
+        TracedResponse(ClientHttpResponse delegate, UpstreamCallEvent event) {
+            this.delegate = delegate;
+            this.event = event;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                body = new FilterInputStream(delegate.getBody()) {
+                    @Override
+                    public int read() throws IOException {
+                        int b = super.read();
+                        if (b >= 0) bytes++;
+                        return b;
+                    }
+
+                    @Override
+                    public int read(byte[] buf, int off, int len) throws IOException {
+                        int n = super.read(buf, off, len);
+                        if (n > 0) bytes += n;
+                        return n;
+                    }
+                };
+            }
+            return body;
+        }
+
+        @Override
+        public void close() {
+            String outcome;
+            try {
+                outcome = String.valueOf(delegate.getStatusCode().value());
+            } catch (IOException e) {
+                outcome = e.getClass().getSimpleName();
+            }
+            delegate.close();
+            event.finish(outcome, bytes);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.homelab.web;
+
+import com.homelab.collect.CollectorRegistry;
+import com.homelab.config.HomelabProperties;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rate limit for {@code /api}, per client IP and endpoint, so a few dashboards on a short refresh plus a script
+ * sending Govee commands cannot flood the upstreams. Two classes of requests are counted:
+ * <ul>
+ *     <li>GETs of a source ({@code /api/devices}, {@code /api/govee-devices}, ...) that would start a collect; a GET
+ *     that {@link CollectorRegistry#cached} says is served from the snapshot is let through uncounted, as are
+ *     GETs of purely local data (history, health, metrics);</li>
+ *     <li>every other method (control and batch commands, JFR actions).</li>
+ * </ul>
+ * Each bucket is a token bucket kept as one {@code AtomicLong} (GCRA: the time at which the bucket will be full
+ * again), so admitting a request is a map lookup and one CAS, without locks. A bucket that has refilled completely
+ * carries no state and is dropped by an occasional sweep. Rejected requests get 429 with {@code Retry-After}.
+ */
+@Component
+public class AdmissionFilter extends OncePerRequestFilter {
+
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(30);
+    /** GET endpoints backed by a collector, by path. */
+    private static final Map<String, String> SOURCES = Map.of(
+            "/api/server-stats", "server-stats",
+            "/api/desktop-stats", "desktop-stats",
+            "/api/devices", "unifi",
+            "/api/neighbor-devices", "neighbors",
+            "/api/tailscale-devices", "tailscale",
+            "/api/govee-devices", "govee",
+            "/api/speed-test", "speedtest",
+            "/api/speed-test/stream", "speedtest"
+    );
+
+    private final HomelabProperties properties;
+    private final CollectorRegistry collectors;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong nextSweep = new AtomicLong(System.nanoTime() + SWEEP_INTERVAL_NANOS);
+
+    public AdmissionFilter(HomelabProperties properties, CollectorRegistry collectors) {
+        this.properties = properties;
+        this.collectors = collectors;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !properties.getRateLimit().isEnabled() || !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        HomelabProperties.RateLimit limits = properties.getRateLimit();
+        String path = request.getRequestURI();
+        boolean read = "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod());
+        if (read) {
+            String source = SOURCES.get(path);
+            if (source == null || collectors.cached(source)) {
+                chain.doFilter(request, response);
+                return;
+            }
+        }
+        long now = System.nanoTime();
+        sweepIfDue(now);
+        double perSecond = read ? limits.getReadPerSecond() : limits.getWritePerSecond();
+        int burst = read ? limits.getReadBurst() : limits.getWriteBurst();
+        if (perSecond <= 0) {
+            chain.doFilter(request, response);
+            return;
+        }
+        Bucket bucket = buckets.computeIfAbsent(clientIp(request, limits) + ' ' + request.getMethod() + ' ' + path, k -> new Bucket());
+        long waitNanos = bucket.acquire(now, (long) (1e9 / perSecond), Math.max(1, burst));
+        if (waitNanos == 0) {
+            chain.doFilter(request, response);
+            return;
+        }
+        long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getOutputStream().write(("{\"error\":true,\"message\":\"Too many requests\",\"retryAfterSeconds\":"
+                + retryAfter + "}").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Client address: the peer, or the first {@code X-Forwarded-For} hop when {@code trust-forwarded-for} is set. */
+    public static String clientIp(HttpServletRequest request, HomelabProperties.RateLimit limits) {
+        if (limits.isTrustForwardedFor()) {
+            String forwarded = request.getHeader("X-Forwarded-For");
+            if (forwarded != null && !forwarded.isBlank()) {
+                int comma = forwarded.indexOf(',');
+                return (comma < 0 ? forwarded : forwarded.substring(0, comma)).trim();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    /** Drop buckets that are full again; at most one request per interval does this. */
+    private void sweepIfDue(long now) {
+        long due = nextSweep.get();
+        if (now - due < 0 || !nextSweep.compareAndSet(due, now + SWEEP_INTERVAL_NANOS)) return;
+        buckets.values().removeIf(b -> b.idle(now));
+    }
+
+    /**
+     * Token bucket as GCRA: {@code tat} is the theoretical arrival time, when the bucket would be completely full
+     * again. A request is admitted if that is at most {@code (burst - 1) * interval} ahead of now, and pushes it
+     * one interval further.
+     */
+    private static final class Bucket {
+        private final AtomicLong tat = new AtomicLong(Long.MIN_VALUE);
+
+        /** 0 if admitted, otherwise how long until a token is available. */
+        long acquire(long now, long intervalNanos, int burst) {
+            long tolerance = intervalNanos * (burst - 1L);
+            while (true) {
+                long current = tat.get();
+                long start = current == Long.MIN_VALUE || current - now < 0 ? now : current;
+                long ahead = start - now;
+                if (ahead > tolerance) return ahead - tolerance;
+                if (tat.compareAndSet(current, start + intervalNanos)) return 0;
+            }
+        }
+
+        boolean idle(long now) {
+            long current = tat.get();
+            return current == Long.MIN_VALUE || current - now <= 0;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.homelab.web;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.ResourceHttpMessageConverter;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Resource converter that hands large file-backed resources to Tomcat's sendfile (zero-copy from the page cache
+ * to the socket) instead of copying them through the servlet output stream. Tomcat advertises support with the
+ * {@code org.apache.tomcat.sendfile.support} request attribute (NIO/NIO2 connectors without TLS); the body is
+ * then written by the connector after the response is committed. Everything else, including resources read
+ * from inside the jar, is streamed as usual.
+ */
+public class SendfileResourceHttpMessageConverter extends ResourceHttpMessageConverter {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    /** Same cut-off as Tomcat's DefaultServlet: below this a plain copy is cheaper than setting up sendfile. */
+    private static final long SENDFILE_MIN_BYTES = 48 * 1024;
+
+    @Override
+    protected void writeContent(Resource resource, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        HttpServletRequest request = currentRequest();
+        if (request != null && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT)) && resource.isFile()) {
+            File file = resource.getFile();
+            long length = file.length();
+            if (length >= SENDFILE_MIN_BYTES) {
+                request.setAttribute(SENDFILE_FILENAME, file.getCanonicalPath());
+                request.setAttribute(SENDFILE_START, 0L);
+                request.setAttribute(SENDFILE_END, length);
+                return;
+            }
+        }
+        super.writeContent(resource, outputMessage);
+    }
+
+    private static HttpServletRequest currentRequest() {
+        RequestAttributes attrs = RequestContextHolder.getRequestAttributes();
+        return attrs instanceof ServletRequestAttributes servlet ? servlet.getRequest() : null;
+    }
+}
@@ -0,0 +1,106 @@
+package com.homelab.probe;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs the engine against loopback (open and refused) and a TEST-NET address (RFC 5737, never routed). Networks that
+ * answer for TEST-NET themselves (a transparent proxy, a firewall sending RSTs) skip the timeout cases.
+ */
+class ProbeEngineTest {
+
+    private static final long TIMEOUT_MS = 300;
+    private static final String[] BLACKHOLES = {"192.0.2.1", "192.0.2.3", "198.51.100.1", "203.0.113.1"};
+
+    @Test
+    void listenerIsTcpOpen() throws IOException {
+        try (ServerSocket listener = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            ProbeEngine.Result r = only(new ProbeEngine(new int[]{listener.getLocalPort()}, TIMEOUT_MS, 4, false));
+
+            assertTrue(r.reachable());
+            assertEquals("tcp-open", r.via());
+            assertEquals(listener.getLocalPort(), r.port());
+            assertTrue(r.rttMs() >= 0);
+        }
+    }
+
+    @Test
+    void closedPortIsTcpRefused() throws IOException {
+        int port;
+        try (ServerSocket s = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            port = s.getLocalPort();
+        }
+        ProbeEngine.Result r = only(new ProbeEngine(new int[]{port}, TIMEOUT_MS, 4, false));
+
+        assertTrue(r.reachable());
+        assertEquals("tcp-refused", r.via());
+        assertEquals(port, r.port());
+    }
+
+    @Test
+    void silentHostTimesOutWithinTheDeadline() throws IOException {
+        InetAddress silent = blackhole();
+        ProbeEngine engine = new ProbeEngine(new int[]{80}, TIMEOUT_MS, 4, false);
+
+        long start = System.nanoTime();
+        List<ProbeEngine.Result> results = engine.probe(List.of(silent));
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        ProbeEngine.Result r = results.get(0);
+        assertFalse(r.reachable());
+        assertEquals("timeout", r.via());
+        assertTrue(elapsedMs < TIMEOUT_MS * 2, () -> "took " + elapsedMs + " ms");
+    }
+
+    @Test
+    void maxSocketsBoundsConnectsInFlight() throws IOException {
+        List<InetAddress> hosts = Collections.nCopies(3, blackhole());
+
+        long start = System.nanoTime();
+        new ProbeEngine(new int[]{80}, TIMEOUT_MS, 3, false).probe(hosts);
+        long parallelMs = (System.nanoTime() - start) / 1_000_000;
+
+        start = System.nanoTime();
+        List<ProbeEngine.Result> serial = new ProbeEngine(new int[]{80}, TIMEOUT_MS, 1, false).probe(hosts);
+        long serialMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(3, serial.size());
+        assertTrue(parallelMs < TIMEOUT_MS * 2, () -> "3 at once took " + parallelMs + " ms");
+        assertTrue(serialMs >= TIMEOUT_MS * 3, () -> "one at a time took " + serialMs + " ms");
+    }
+
+    private static ProbeEngine.Result only(ProbeEngine engine) throws IOException {
+        List<ProbeEngine.Result> results = engine.probe(List.of(InetAddress.getLoopbackAddress()));
+        assertEquals(1, results.size());
+        return results.get(0);
+    }
+
+    /** A TEST-NET address whose connects really go unanswered here. */
+    private static InetAddress blackhole() throws IOException {
+        for (String ip : BLACKHOLES) {
+            InetAddress address = InetAddress.getByName(ip);
+            try (Socket s = new Socket()) {
+                s.connect(new InetSocketAddress(address, 80), (int) TIMEOUT_MS);
+            } catch (SocketTimeoutException e) {
+                return address;
+            } catch (IOException e) {
+                // refused or unreachable: something on this network answers for it
+            }
+        }
+        assumeTrue(false, "no TEST-NET address times out on this network");
+        return null;
+    }
+}
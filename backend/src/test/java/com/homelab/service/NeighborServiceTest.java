@@ -0,0 +1,100 @@
+package com.homelab.service;
+
+import com.homelab.config.HomelabProperties;
+import org.junit.jupiter.api.Test;
+
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Runs {@code src/test/resources/neighbors/proc-net-arp}, a captured {@code /proc/net/arp}, through the service. */
+class NeighborServiceTest {
+
+    @Test
+    void parseKeepsRowsWithAHardwareAddress() throws Exception {
+        List<NeighborService.Entry> entries = NeighborService.parse(Files.readAllLines(fixture(), StandardCharsets.US_ASCII));
+
+        assertEquals(List.of(
+                new NeighborService.Entry("192.168.1.1", "74:ac:b9:12:34:56", true, "eth0"),
+                new NeighborService.Entry("192.168.1.20", "dc:a6:32:aa:bb:cc", true, "eth0"),
+                new NeighborService.Entry("192.168.1.78", "3c:22:fb:01:02:03", false, "eth0"),
+                new NeighborService.Entry("172.17.0.2", "02:42:ac:11:00:02", true, "docker0")
+        ), entries);
+    }
+
+    @Test
+    void parseSkipsIncompleteRowsBadFlagsAndTruncatedLines() {
+        List<NeighborService.Entry> entries = NeighborService.parse(List.of(
+                "IP address       HW type     Flags       HW address            Mask     Device",
+                "192.168.1.77     0x1         0x0         00:00:00:00:00:00     *        eth0",
+                "10.0.0.5         0x1         0xZZ        52:54:00:de:ad:be     *        virbr0",
+                "10.0.0.6         0x1         0x2         52:54:00"
+        ));
+
+        assertTrue(entries.isEmpty(), entries::toString);
+    }
+
+    @Test
+    void parseIgnoresTheHeaderOnly() {
+        assertTrue(NeighborService.parse(List.of()).isEmpty());
+        assertTrue(NeighborService.parse(List.of("IP address       HW type     Flags       HW address            Mask     Device")).isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void collectShapesEntriesLikeUnifiClients() throws Exception {
+        NeighborService service = service();
+        try {
+            assertTrue(service.enabled());
+            Map<String, Object> snapshot = service.collect();
+            List<Map<String, Object>> devices = (List<Map<String, Object>>) snapshot.get("devices");
+
+            assertEquals(4, snapshot.get("total"));
+            assertEquals(Map.of(
+                    "name", "192.168.1.20",
+                    "ip", "192.168.1.20",
+                    "mac", "dc:a6:32:aa:bb:cc",
+                    "status", "online",
+                    "site", "eth0",
+                    "controller", "kernel"
+            ), devices.get(1));
+            assertEquals("offline", devices.get(2).get("status"));
+            assertEquals("docker0", devices.get(3).get("site"));
+            for (Map<String, Object> d : devices) {
+                assertEquals(d.get("ip"), d.get("name"), "name falls back to the IP without a reverse DNS answer");
+            }
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void disabledWithoutTheTable() {
+        HomelabProperties properties = new HomelabProperties();
+        properties.getNeighbors().setArpFile("/nonexistent/proc/net/arp");
+        NeighborService service = new NeighborService(properties);
+        try {
+            assertFalse(service.enabled());
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    private static NeighborService service() throws URISyntaxException {
+        HomelabProperties properties = new HomelabProperties();
+        properties.getNeighbors().setArpFile(fixture().toString());
+        properties.getNeighbors().setResolveHostnames(false);
+        return new NeighborService(properties);
+    }
+
+    private static Path fixture() throws URISyntaxException {
+        return Path.of(NeighborServiceTest.class.getResource("/neighbors/proc-net-arp").toURI());
+    }
+}
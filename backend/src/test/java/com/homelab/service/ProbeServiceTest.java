@@ -0,0 +1,38 @@
+package com.homelab.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** {@link ProbeService#literal} must only ever parse, never resolve: anything that is not an address is null. */
+class ProbeServiceTest {
+
+    @Test
+    void dottedQuad() {
+        InetAddress a = ProbeService.literal("192.168.1.10");
+        assertNotNull(a);
+        assertArrayEquals(new byte[]{(byte) 192, (byte) 168, 1, 10}, a.getAddress());
+    }
+
+    @Test
+    void ipv6() {
+        InetAddress a = ProbeService.literal("::1");
+        assertNotNull(a);
+        assertTrue(a.isLoopbackAddress());
+    }
+
+    @Test
+    void notAnAddress() {
+        assertNull(ProbeService.literal("1.2.3"));
+        assertNull(ProbeService.literal("256.1.1.1"));
+        assertNull(ProbeService.literal("1.2.3.4."));
+        assertNull(ProbeService.literal("abc:def"));
+        assertNull(ProbeService.literal("localhost"));
+        assertNull(ProbeService.literal("nas.lan"));
+    }
+}